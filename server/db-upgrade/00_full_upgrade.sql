@@ -554,3 +554,27 @@ CREATE TABLE IF NOT EXISTS bdc.feature_request_vote (
     CONSTRAINT fk_feature_request_vote_request FOREIGN KEY (requestId) REFERENCES feature_request (id) ON DELETE CASCADE,
     CONSTRAINT fk_feature_request_vote_user FOREIGN KEY (userId) REFERENCES user (id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE utf8mb4_bin COMMENT='需求投票记录表';
+
+-- 用户数据库日志压缩快照表：每个 (userId, tblName, recordId) 只保留最新日志，增量同步按版本号范围扫描
+CREATE TABLE IF NOT EXISTS bdc.user_db_snapshot (
+    userId VARCHAR(32) NOT NULL COMMENT '用户ID',
+    tblName VARCHAR(50) NOT NULL COMMENT '表名',
+    recordId VARCHAR(131) NOT NULL COMMENT '记录ID',
+    logId VARCHAR(32) NOT NULL COMMENT '最新一条日志的ID',
+    version INT NOT NULL COMMENT '最新一条日志的版本号',
+    operate VARCHAR(20) NOT NULL COMMENT '操作类型',
+    record TEXT NOT NULL COMMENT '记录内容（JSON格式）',
+    createTime DATETIME NOT NULL COMMENT '创建时间',
+    updateTime DATETIME COMMENT '更新时间',
+    PRIMARY KEY (userId, tblName, recordId),
+    INDEX idx_user_version (userId, version) COMMENT '增量同步按版本号范围扫描'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE utf8mb4_bin COMMENT='用户数据库日志压缩快照表';
+
+-- 用已有的 user_db_log 初始化快照（每条记录取最新的一条日志）
+INSERT INTO bdc.user_db_snapshot (userId, tblName, recordId, logId, version, operate, record, createTime, updateTime)
+SELECT e.userId, e.tblName, e.recordId, e.id, e.version, e.operate, e.record, e.createTime, e.updateTime
+FROM bdc.user_db_log e
+ORDER BY e.version ASC, e.createTime ASC
+ON DUPLICATE KEY UPDATE
+    logId = VALUES(logId), operate = VALUES(operate), record = VALUES(record),
+    createTime = VALUES(createTime), updateTime = VALUES(updateTime), version = VALUES(version);
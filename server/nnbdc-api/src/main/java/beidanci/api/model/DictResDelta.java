@@ -0,0 +1,73 @@
+package beidanci.api.model;
+
+import java.util.List;
+
+/**
+ * 单词书资源的增量包：客户端已有 fromVersion 版本的单词书资源时，只需应用 logs 即可更新到 toVersion
+ */
+public class DictResDelta {
+    private String dictId;
+    private int fromVersion;
+    private int toVersion;
+
+    /**
+     * 无法生成增量（版本过旧、日志已被清理或者不是系统词典），客户端需要重新下载完整的单词书资源
+     */
+    private boolean fullReloadNeeded;
+
+    /**
+     * 与该单词书有关的系统数据日志，按版本号升序排列
+     */
+    private List<SysDbLogDto> logs;
+
+    public DictResDelta() {
+    }
+
+    public DictResDelta(String dictId, int fromVersion, int toVersion, boolean fullReloadNeeded, List<SysDbLogDto> logs) {
+        this.dictId = dictId;
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.fullReloadNeeded = fullReloadNeeded;
+        this.logs = logs;
+    }
+
+    public String getDictId() {
+        return dictId;
+    }
+
+    public void setDictId(String dictId) {
+        this.dictId = dictId;
+    }
+
+    public int getFromVersion() {
+        return fromVersion;
+    }
+
+    public void setFromVersion(int fromVersion) {
+        this.fromVersion = fromVersion;
+    }
+
+    public int getToVersion() {
+        return toVersion;
+    }
+
+    public void setToVersion(int toVersion) {
+        this.toVersion = toVersion;
+    }
+
+    public boolean isFullReloadNeeded() {
+        return fullReloadNeeded;
+    }
+
+    public void setFullReloadNeeded(boolean fullReloadNeeded) {
+        this.fullReloadNeeded = fullReloadNeeded;
+    }
+
+    public List<SysDbLogDto> getLogs() {
+        return logs;
+    }
+
+    public void setLogs(List<SysDbLogDto> logs) {
+        this.logs = logs;
+    }
+}
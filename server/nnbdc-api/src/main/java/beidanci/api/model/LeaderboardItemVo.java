@@ -0,0 +1,143 @@
+package beidanci.api.model;
+
+/**
+ * 排行榜中的一项
+ */
+public class LeaderboardItemVo {
+    /**
+     * 在该排行榜中的排名（从1开始）
+     */
+    private int rank;
+    private String userId;
+    private String displayNickName;
+
+    /**
+     * 总积分
+     */
+    private int score;
+
+    /**
+     * 打卡率
+     */
+    private double dakaRatio;
+
+    /**
+     * 打卡天数
+     */
+    private int dakaDayCount;
+
+    /**
+     * 当前连续打卡天数
+     */
+    private int continuousDakaDayCount;
+
+    /**
+     * 最大连续打卡天数
+     */
+    private int maxContinuousDakaDayCount;
+
+    /**
+     * 已掌握单词数
+     */
+    private int masteredWordCount;
+
+    private Integer level;
+    private String levelName;
+    private String levelFigure;
+
+    public int getRank() {
+        return rank;
+    }
+
+    public void setRank(int rank) {
+        this.rank = rank;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getDisplayNickName() {
+        return displayNickName;
+    }
+
+    public void setDisplayNickName(String displayNickName) {
+        this.displayNickName = displayNickName;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+
+    public double getDakaRatio() {
+        return dakaRatio;
+    }
+
+    public void setDakaRatio(double dakaRatio) {
+        this.dakaRatio = dakaRatio;
+    }
+
+    public int getDakaDayCount() {
+        return dakaDayCount;
+    }
+
+    public void setDakaDayCount(int dakaDayCount) {
+        this.dakaDayCount = dakaDayCount;
+    }
+
+    public int getContinuousDakaDayCount() {
+        return continuousDakaDayCount;
+    }
+
+    public void setContinuousDakaDayCount(int continuousDakaDayCount) {
+        this.continuousDakaDayCount = continuousDakaDayCount;
+    }
+
+    public int getMaxContinuousDakaDayCount() {
+        return maxContinuousDakaDayCount;
+    }
+
+    public void setMaxContinuousDakaDayCount(int maxContinuousDakaDayCount) {
+        this.maxContinuousDakaDayCount = maxContinuousDakaDayCount;
+    }
+
+    public int getMasteredWordCount() {
+        return masteredWordCount;
+    }
+
+    public void setMasteredWordCount(int masteredWordCount) {
+        this.masteredWordCount = masteredWordCount;
+    }
+
+    public Integer getLevel() {
+        return level;
+    }
+
+    public void setLevel(Integer level) {
+        this.level = level;
+    }
+
+    public String getLevelName() {
+        return levelName;
+    }
+
+    public void setLevelName(String levelName) {
+        this.levelName = levelName;
+    }
+
+    public String getLevelFigure() {
+        return levelFigure;
+    }
+
+    public void setLevelFigure(String levelFigure) {
+        this.levelFigure = levelFigure;
+    }
+}
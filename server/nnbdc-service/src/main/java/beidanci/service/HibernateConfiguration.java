@@ -63,6 +63,10 @@ public class HibernateConfiguration {
         properties.put("hibernate.use_sql_comments", useSqlComments);
         properties.put("hibernate.hbm2ddl.auto", ddlAuto);
         properties.put("hibernate.jdbc.batch_size", 50);
+        // 按实体类型对INSERT/UPDATE排序，使同类语句能合并为JDBC批量执行
+        properties.put("hibernate.order_inserts", true);
+        properties.put("hibernate.order_updates", true);
+        properties.put("hibernate.jdbc.batch_versioned_data", true);
         properties.put("hibernate.generate_statistics", generateStatistics);
 
         properties.put("hibernate.cache.use_query_cache", useQueryCache);
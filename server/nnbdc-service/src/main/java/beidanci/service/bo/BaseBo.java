@@ -1,13 +1,19 @@
 package beidanci.service.bo;
 
 import java.io.Serializable;
+import java.sql.Timestamp;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 import javax.annotation.Resource;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
 import org.springframework.transaction.annotation.Transactional;
 
 import beidanci.api.model.PagedResults;
@@ -132,6 +138,39 @@ public abstract class BaseBo<E extends Po> {
         }
     }
 
+    /**
+     * 以只读的前向游标分批遍历原生SQL的查询结果，每次只从数据库取fetchSize行，避免把整个结果集加载到内存
+     *
+     * @param fetchSize  每批从数据库获取的行数
+     * @param rowHandler 每行结果的处理器
+     * @return 遍历的行数
+     */
+    @SafeVarargs
+    protected final int scrollNativeQuery(String sql, int fetchSize, Consumer<Object[]> rowHandler, Pair<String, Object>... parameters) {
+        NativeQuery<?> query = getSession().createNativeQuery(sql);
+        for (Pair<String, Object> param : parameters) {
+            query.setParameter(param.getLeft(), param.getRight());
+        }
+        query.setFetchSize(fetchSize);
+        query.setReadOnly(true);
+
+        int count = 0;
+        try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                rowHandler.accept(results.get());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 把Date转换为JDBC批量写入时使用的Timestamp
+     */
+    protected static Timestamp toTimestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+
     public Session getSession() {
         return sessionFactory.getCurrentSession();
     }
@@ -33,6 +33,7 @@ import beidanci.service.po.LearningDict;
 import beidanci.service.po.LearningDictId;
 import beidanci.service.po.User;
 import beidanci.service.po.Word;
+import beidanci.service.store.DictWordSeqCache;
 import beidanci.service.store.WordCache;
 import beidanci.service.util.BeanUtils;
 import beidanci.service.util.Util;
@@ -59,6 +60,9 @@ public class DictBo extends BaseBo<Dict> {
     @Autowired
     WordCache wordCache;
 
+    @Autowired
+    DictWordSeqCache dictWordSeqCache;
+
     @Autowired
     SysDbLogBo sysDbLogBo;
 
@@ -228,6 +232,7 @@ public class DictBo extends BaseBo<Dict> {
         javax.persistence.Query query = getSession().createQuery(hql);
         query.setParameter("dict", dict);
         query.executeUpdate();
+        dictWordSeqCache.invalidate(dict.getId());
 
         // 重置词书单词数
         dict.setWordCount(0);
@@ -504,6 +509,7 @@ public class DictBo extends BaseBo<Dict> {
                     .setParameter(2, deletedSeq)
                     .executeUpdate();
             }
+            dictWordSeqCache.invalidate(dictId);
             
             // 4. 更新词典的单词数量
             String updateCountSql = "UPDATE dict SET wordCount = (SELECT COUNT(*) FROM dict_word WHERE dictId = ?) WHERE id = ?";
@@ -588,6 +594,7 @@ public class DictBo extends BaseBo<Dict> {
             int deletedDictWords = session.createNativeQuery(deleteDictWordsSql)
                 .setParameter(1, dictId)
                 .executeUpdate();
+            dictWordSeqCache.invalidate(dictId);
             
             // 5. 最后删除词典本身
             String deleteDictSql = "DELETE FROM dict WHERE id = ?";
@@ -666,6 +673,7 @@ public class DictBo extends BaseBo<Dict> {
         Query<?> query = getSession().createNativeQuery(sql);
         query.setParameter("dictId", dictId);
         query.executeUpdate();
+        dictWordSeqCache.invalidate(dictId);
     }
 
     /**
@@ -7,9 +7,11 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.hibernate.Session;
 import org.hibernate.query.NativeQuery;
 import org.hibernate.query.Query;
@@ -30,6 +32,7 @@ import beidanci.service.po.DictWord;
 import beidanci.service.po.DictWordId;
 import beidanci.service.po.User;
 import beidanci.service.po.Word;
+import beidanci.service.store.DictWordSeqCache;
 import beidanci.service.store.WordCache;
 
 @Service
@@ -49,6 +52,9 @@ public class DictWordBo extends BaseBo<DictWord> {
     @Autowired
     LearningDictBo learningDictBo;
 
+    @Autowired
+    DictWordSeqCache dictWordSeqCache;
+
     @PostConstruct
     public void init() {
         setDao(new BaseDao<DictWord>() {
@@ -101,6 +107,30 @@ public class DictWordBo extends BaseBo<DictWord> {
                 "SynonymVo.meaningItem", "SynonymVo.word", "similarWords", "DictVo.dictWords" });
     }
 
+    /**
+     * 从dict_word加载单词书的 序号 -> 单词ID 数组（下标为 序号-1，空缺的序号对应null）
+     */
+    public String[] loadWordIdsBySeq(String dictId) {
+        String sql = "select wordId, seq from dict_word where dictId = :dictId and seq is not null order by seq";
+        Query<?> query = getSession().createNativeQuery(sql);
+        query.setParameter("dictId", dictId);
+        List<?> results = query.list();
+        if (results.isEmpty()) {
+            return new String[0];
+        }
+
+        int maxSeq = ((Number) ((Object[]) results.get(results.size() - 1))[1]).intValue();
+        String[] wordIds = new String[Math.max(maxSeq, 0)];
+        for (Object result : results) {
+            Object[] tuple = (Object[]) result;
+            int seq = ((Number) tuple[1]).intValue();
+            if (seq >= 1) {
+                wordIds[seq - 1] = (String) tuple[0];
+            }
+        }
+        return wordIds;
+    }
+
     public int getWordCountOfDict(String dictName) {
         // 查询记录总数
         Session session = getSession();
@@ -187,6 +217,7 @@ public class DictWordBo extends BaseBo<DictWord> {
             dictWord.setDict(dict);
             // dictWord.setWord(wordBo.findById(wordId));
             createEntity(dictWord);
+            dictWordSeqCache.invalidate(dictId);
 
             dict.setWordCount(dict.getWordCount() + 1);
             dictBo.updateEntity(dict);
@@ -248,6 +279,7 @@ public class DictWordBo extends BaseBo<DictWord> {
         dictWord.setCreateTime(new Timestamp(new Date().getTime()));
         dictWord.setSeq(getMaxSeqNo(dict) + 1);
         createEntity(dictWord);
+        dictWordSeqCache.invalidate(dict.getId());
 
         // 更新词书单词数
         String hql = "update Dict set wordCount=wordCount+1 where id=:dictId";
@@ -288,6 +320,7 @@ public class DictWordBo extends BaseBo<DictWord> {
         query.setParameter("dictId", dictId);
         query.setParameter("seq", seqNo);
         query.executeUpdate();
+        dictWordSeqCache.invalidate(dictId);
 
         // 更新词书单词数
         hql = "update Dict set wordCount=wordCount-1 where id=:dictId";
@@ -315,6 +348,7 @@ public class DictWordBo extends BaseBo<DictWord> {
         for (DictWord word : words) {
             deleteEntity(word);
         }
+        dictWordSeqCache.invalidate(dict.getId());
 
         dict.setWordCount(0);
         dictBo.updateEntity(dict);
@@ -374,29 +408,43 @@ public class DictWordBo extends BaseBo<DictWord> {
      */
     public List<DictWordDto> getDictWordDtosOfUser(String userId) {
         // 查询用户的生词本中的所有单词
-        String sql = "select dw.dictId, dw.wordId, dw.seq, dw.createTime, dw.updateTime " +
-                "from dict_word dw " +
-                "inner join dict d on dw.dictId = d.id " +
-                "where d.ownerId = :userId " +
-                "order by dw.createTime";
-        Query<?> query = getSession().createNativeQuery(sql);
+        Query<?> query = getSession().createNativeQuery(USER_DICT_WORD_DTO_SQL);
         query.setParameter("userId", userId);
         List<?> results = query.list();
 
         List<DictWordDto> dictWordDtos = new ArrayList<>();
         for (Object result : results) {
-            Object[] tuple = (Object[]) result;
-            DictWordDto dictWordDto = new DictWordDto();
-            dictWordDto.setDictId((String) tuple[0]);
-            dictWordDto.setWordId((String) tuple[1]);
-            dictWordDto.setSeq((Integer) tuple[2]);
-            dictWordDto.setCreateTime((Date) tuple[3]);
-            dictWordDto.setUpdateTime((Date) tuple[4]);
-            dictWordDtos.add(dictWordDto);
+            dictWordDtos.add(toDictWordDto((Object[]) result));
         }
         return dictWordDtos;
     }
 
+    /**
+     * 以游标分批遍历用户生词本中的所有单词DTO（用于流式全量同步）
+     *
+     * @return 遍历的记录数
+     */
+    public int scrollDictWordDtosOfUser(String userId, int fetchSize, Consumer<DictWordDto> consumer) {
+        return scrollNativeQuery(USER_DICT_WORD_DTO_SQL, fetchSize, tuple -> consumer.accept(toDictWordDto(tuple)),
+                new ImmutablePair<>("userId", userId));
+    }
+
+    private static final String USER_DICT_WORD_DTO_SQL = "select dw.dictId, dw.wordId, dw.seq, dw.createTime, dw.updateTime " +
+            "from dict_word dw " +
+            "inner join dict d on dw.dictId = d.id " +
+            "where d.ownerId = :userId " +
+            "order by dw.createTime";
+
+    private DictWordDto toDictWordDto(Object[] tuple) {
+        DictWordDto dictWordDto = new DictWordDto();
+        dictWordDto.setDictId((String) tuple[0]);
+        dictWordDto.setWordId((String) tuple[1]);
+        dictWordDto.setSeq((Integer) tuple[2]);
+        dictWordDto.setCreateTime((Date) tuple[3]);
+        dictWordDto.setUpdateTime((Date) tuple[4]);
+        return dictWordDto;
+    }
+
     /**
      * 校验指定用户的生词本序号是否从1开始且连续
      * 若发现问题，返回问题描述字符串，否则返回null
@@ -469,6 +517,7 @@ public class DictWordBo extends BaseBo<DictWord> {
             ins.executeUpdate();
             count++;
         }
+        dictWordSeqCache.invalidate(rawWordDict.getId());
 
         // 更新词书单词数
         String hql = "update Dict set wordCount = :cnt where id=:dictId";
@@ -521,6 +570,7 @@ public class DictWordBo extends BaseBo<DictWord> {
             }
 
             int deletedCount = query.executeUpdate();
+            dictWordSeqCache.invalidate(String.valueOf(filters.get("dictId")));
             System.out.println("批量删除dict_word记录完成，用户ID: " + userId + ", 删除数量: " + deletedCount);
 
         } catch (Exception e) {
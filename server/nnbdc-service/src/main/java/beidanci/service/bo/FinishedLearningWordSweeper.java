@@ -0,0 +1,57 @@
+package beidanci.service.bo;
+
+import java.util.Date;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import beidanci.util.Utils;
+
+/**
+ * 后台清理已学完的单词：删除生命值为0、且最后学习日期早于今天的 learning_word。
+ * 每天过了零点清理一次，生成今日学习单词时就不必再做删除
+ */
+@Service
+public class FinishedLearningWordSweeper {
+    private static final Logger logger = LoggerFactory.getLogger(FinishedLearningWordSweeper.class);
+
+    @Autowired
+    private TransactionTemplate trxTemplate;
+
+    @Autowired
+    private LearningWordBo learningWordBo;
+
+    @Autowired
+    private UserBo userBo;
+
+    /**
+     * 每个用户一个事务，避免长事务锁住大量记录
+     */
+    @Scheduled(cron = "${learningWord.sweepCron:0 5 0 * * ?}")
+    public void sweepAll() {
+        long startTime = System.currentTimeMillis();
+        Date today = Utils.getPureDate(new Date());
+        List<String> userIds = learningWordBo.getUsersWithFinishedLearningWords(today);
+
+        int userCount = 0;
+        int deletedCount = 0;
+        for (String userId : userIds) {
+            try {
+                List<String> deleted = trxTemplate.execute(status -> userBo.purgeFinishedLearningWords(userId, today));
+                if (deleted != null && !deleted.isEmpty()) {
+                    userCount++;
+                    deletedCount += deleted.size();
+                }
+            } catch (Exception e) {
+                logger.error("清理用户[{}]已学完的单词失败: {}", userId, e.getMessage(), e);
+            }
+        }
+        logger.info("已学完单词清理完成, 涉及用户数: {}, 删除单词数: {}, 耗时: {}ms", userCount, deletedCount,
+                System.currentTimeMillis() - startTime);
+    }
+}
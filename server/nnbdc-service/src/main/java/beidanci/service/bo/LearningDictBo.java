@@ -1,15 +1,20 @@
 package beidanci.service.bo;
 
+import java.sql.PreparedStatement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 
 import org.hibernate.Session;
 import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -19,14 +24,27 @@ import beidanci.service.dao.BaseDao;
 import beidanci.service.po.LearningDict;
 import beidanci.service.po.User;
 import beidanci.service.util.Util;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Service
 @Transactional(rollbackFor = Throwable.class)
 public class LearningDictBo extends BaseBo<LearningDict> {
+    @Autowired
+    LearningPositionEngine learningPositionEngine;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Timer positionUpdateTimer;
+
     @PostConstruct
     public void init() {
         setDao(new BaseDao<LearningDict>() {
         });
+        positionUpdateTimer = Timer.builder("nnbdc.learning.dict.position.update")
+                .description("计算并写回单词书当前取词位置的耗时")
+                .register(meterRegistry);
     }
 
     public List<LearningDict> getLearningDictsOfUser(User user) {
@@ -74,12 +92,16 @@ public class LearningDictBo extends BaseBo<LearningDict> {
      * @Param ignoreCurrent 是否忽略当前取词位置，true：从头计算取词位置 false: 从当前取词位置开始计算新的取词位置
      */
     public void updateCurrentPositionForUserDicts(User user, boolean ignoreCurrent) {
-        getSession().flush(); // 调用存储过程前，先把数据flush到db，否则存储过程看不到这些数据
-        String sql = "update learning_dict set currentWordSeq = currPosOfLearningDict(userId, dictId, :ignoreCurrent) where userId = :userId";
-        Query<Integer> query = getSession().createNativeQuery(sql, Integer.class);
-        query.setParameter("userId", user.getId());
-        query.setParameter("ignoreCurrent", ignoreCurrent ? 1 : 0);
-        query.executeUpdate();
+        updateCurrentPositionForUserDicts(user, ignoreCurrent, Collections.emptyList());
+    }
+
+    /**
+     * 更新指定用户的所有单词书的当前已取词位置
+     *
+     * @param pendingLearningWordIds 本事务中刚加入学习的单词
+     */
+    public void updateCurrentPositionForUserDicts(User user, boolean ignoreCurrent, Collection<String> pendingLearningWordIds) {
+        updatePositions(user, user.getLearningDicts(), ignoreCurrent, pendingLearningWordIds);
     }
 
     /**
@@ -88,13 +110,56 @@ public class LearningDictBo extends BaseBo<LearningDict> {
      * @Param ignoreCurrent 是否忽略当前取词位置，true：从头计算取词位置 false: 从当前取词位置开始计算新的取词位置
      */
     public void updateCurrentPositionForUserDict(User user, String dictId, boolean ignoreCurrent) {
-        getSession().flush(); // 调用存储过程前，先把数据flush到db，否则存储过程看不到这些数据
-        String sql = "update learning_dict set currentWordSeq = currPosOfLearningDict(userId, dictId, :ignoreCurrent) where userId = :userId and dictId = :dictId";
-        Query<Integer> query = getSession().createNativeQuery(sql, Integer.class);
-        query.setParameter("userId", user.getId());
-        query.setParameter("dictId", dictId);
-        query.setParameter("ignoreCurrent", ignoreCurrent ? 1 : 0);
-        query.executeUpdate();
+        List<LearningDict> learningDicts = new ArrayList<>(1);
+        for (LearningDict learningDict : user.getLearningDicts()) {
+            if (learningDict.getDict().getId().equals(dictId)) {
+                learningDicts.add(learningDict);
+            }
+        }
+        updatePositions(user, learningDicts, ignoreCurrent, Collections.emptyList());
+    }
+
+    /**
+     * 在内存中计算单词书的新位置（见 {@link LearningPositionEngine}），有变化的一次批量写回数据库
+     */
+    private void updatePositions(User user, List<LearningDict> learningDicts, boolean ignoreCurrent,
+            Collection<String> pendingLearningWordIds) {
+        long startTime = System.nanoTime();
+        Map<LearningDict, Integer> positions = learningPositionEngine.computePositions(user.getId(), learningDicts,
+                ignoreCurrent, pendingLearningWordIds);
+        if (!positions.isEmpty()) {
+            Session session = getSession();
+            // 批量update之前，先把挂起的修改flush到db，否则会被随后的flush覆盖
+            session.flush();
+
+            Date updateTime = new Date();
+            for (Map.Entry<LearningDict, Integer> entry : positions.entrySet()) {
+                entry.getKey().setCurrentWordSeq(entry.getValue());
+                entry.getKey().setUpdateTime(updateTime);
+            }
+            String sql = "update learning_dict set currentWordSeq = ?, updateTime = ? where userId = ? and dictId = ?";
+            session.doWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (Map.Entry<LearningDict, Integer> entry : positions.entrySet()) {
+                        ps.setInt(1, entry.getValue());
+                        ps.setTimestamp(2, toTimestamp(updateTime));
+                        ps.setString(3, entry.getKey().getId().getUserId());
+                        ps.setString(4, entry.getKey().getId().getDictId());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
+
+            // 数据库中已是最新值，重新生成session中实体的快照，避免提交时Hibernate再逐个update
+            for (LearningDict learningDict : positions.keySet()) {
+                if (session.contains(learningDict)) {
+                    session.setReadOnly(learningDict, true);
+                    session.setReadOnly(learningDict, false);
+                }
+            }
+        }
+        positionUpdateTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
     }
 
     @SuppressWarnings("unchecked")
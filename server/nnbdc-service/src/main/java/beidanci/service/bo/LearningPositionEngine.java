@@ -0,0 +1,88 @@
+package beidanci.service.bo;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import beidanci.service.po.LearningDict;
+import beidanci.service.store.DictWordSeqCache;
+import beidanci.service.store.DictWordSeqCache.DictWordSeq;
+import beidanci.service.store.UserWordState;
+import beidanci.service.store.UserWordStateCache;
+import beidanci.service.store.WordOrdinals;
+
+/**
+ * 计算用户学习中单词书的当前取词位置（取代数据库函数 currPosOfLearningDict）<br>
+ * 当前位置之后的单词如果已经在学习或已掌握（单词书取已掌握单词时只看是否在学习），说明已被取出过，位置向后推进，
+ * 直到遇到第一个未取出的单词为止。单词书的序号数组和用户的单词状态都在内存中，一次计算出用户所有单词书的位置
+ */
+@Service
+public class LearningPositionEngine {
+
+    @Autowired
+    DictWordSeqCache dictWordSeqCache;
+
+    @Autowired
+    UserWordStateCache userWordStateCache;
+
+    @Autowired
+    WordOrdinals wordOrdinals;
+
+    /**
+     * 计算单词书的新位置，只返回位置有变化的单词书
+     *
+     * @param learningDicts 用户学习中的单词书
+     * @param ignoreCurrent 是否忽略当前取词位置，true：从头计算取词位置 false: 从当前取词位置开始计算新的取词位置
+     * @param pendingLearningWordIds 本事务中刚加入学习的单词（事务提交后才会反映到单词状态位图中）
+     */
+    public Map<LearningDict, Integer> computePositions(String userId, List<LearningDict> learningDicts,
+            boolean ignoreCurrent, Collection<String> pendingLearningWordIds) {
+        Map<LearningDict, Integer> positions = new LinkedHashMap<>();
+        if (learningDicts.isEmpty()) {
+            return positions;
+        }
+
+        UserWordState wordState = userWordStateCache.getState(userId);
+        BitSet learning = wordState.union(UserWordState.Kind.LEARNING);
+        for (String wordId : pendingLearningWordIds) {
+            learning.set(wordOrdinals.ordinalOf(wordId));
+        }
+        BitSet learningOrMastered = wordState.union(UserWordState.Kind.MASTERED);
+        learningOrMastered.or(learning);
+
+        for (LearningDict learningDict : learningDicts) {
+            Integer currentWordSeq = learningDict.getCurrentWordSeq();
+            int startSeq = ignoreCurrent || currentWordSeq == null ? 0 : currentWordSeq;
+            BitSet taken = Boolean.TRUE.equals(learningDict.getFetchMastered()) ? learning : learningOrMastered;
+            int position = advance(dictWordSeqCache.get(learningDict.getDict().getId()), startSeq, taken);
+            if (!Objects.equals(position, currentWordSeq) && !(currentWordSeq == null && position == 0)) {
+                positions.put(learningDict, position);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * 从指定位置向后扫描，返回连续已取出的最后一个单词的序号（空缺的序号跳过）
+     */
+    static int advance(DictWordSeq dictWordSeq, int startSeq, BitSet taken) {
+        int position = startSeq;
+        for (int seq = startSeq + 1; seq <= dictWordSeq.getMaxSeq(); seq++) {
+            int ordinal = dictWordSeq.getOrdinal(seq);
+            if (ordinal == -1) {
+                continue;
+            }
+            if (!taken.get(ordinal)) {
+                break;
+            }
+            position = seq;
+        }
+        return position;
+    }
+}
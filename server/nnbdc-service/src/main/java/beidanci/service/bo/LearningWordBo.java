@@ -3,25 +3,31 @@ package beidanci.service.bo;
 import javax.annotation.PostConstruct;
 
 import java.io.IOException;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.naming.NamingException;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.lang3.time.DateUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.hibernate.Session;
 import org.hibernate.query.Query;
-import org.hibernate.type.StandardBasicTypes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -40,11 +46,16 @@ import beidanci.service.exception.EmptySpellException;
 import beidanci.service.exception.InvalidMeaningFormatException;
 import beidanci.service.exception.NoEnoughWordException;
 import beidanci.service.exception.ParseException;
+import beidanci.service.po.LearningDict;
 import beidanci.service.po.LearningWord;
 import beidanci.service.po.LearningWordId;
 import beidanci.service.po.User;
 import beidanci.service.po.UserStudyRecord;
 import beidanci.service.po.UserStudyRecordId;
+import beidanci.service.store.DictWordSeqCache;
+import beidanci.service.store.DictWordSeqCache.DictWordSeq;
+import beidanci.service.store.UserWordState;
+import beidanci.service.store.UserWordStateCache;
 import beidanci.service.store.WordCache;
 import beidanci.service.util.Util;
 import beidanci.util.Utils;
@@ -69,37 +80,106 @@ public class LearningWordBo extends BaseBo<LearningWord> {
     @Autowired
     WordCache wordCache;
 
+    @Autowired
+    DictWordSeqCache dictWordSeqCache;
+
+    @Autowired
+    UserWordStateCache userWordStateCache;
+
+    /**
+     * 从用户学习中的单词书取新词：在任意一本高优先级单词书中的单词在前，然后按单词在所有单词书中的最小序号排列。
+     * 候选单词在内存中确定：按序号扫描各单词书当前位置之后的单词，用用户的单词状态位图排除正在学习的单词
+     * （单词书不取已掌握单词时，同时排除已掌握的单词）
+     */
     private List<LearningWord> fetchNewWordsToLearn(User user, int todayDayNumber, int countToFetch) {
         if (countToFetch <= 0) {
             return new ArrayList<>(0);
         }
 
-        String sql = "select wordId, min(seq) as minSeq, max(ld.isPrivileged) as is_privileged " +
-                "from dict_word dw left join learning_dict ld on dw.dictId = ld.dictId   left join dict d on dw.dictId  = d.id "
-                +
-                "where ld.userId = :userId " +
-                "and (ld.currentWordSeq is null or ld.currentWordSeq < d.wordCount) " +
-                "and (dw.seq > ld.currentWordSeq or ld.currentWordSeq is null) " +
-                "and (ld.fetchMastered = 1 or not exists (select 0 from mastered_word mw where mw.userId=:userId and mw.wordId=dw.wordId)) "
-                +
-                "and not exists (select 0 from learning_word lw where lw.userId=:userId and lw.wordId=dw.wordId) " +
-                "group by wordId order by is_privileged desc, minSeq asc limit :limit ";
-        Query<String> query = getSession().createNativeQuery(sql, String.class)
-                .addScalar("wordId", StandardBasicTypes.STRING);
-        query.setParameter("userId", user.getId());
-        query.setParameter("limit", countToFetch);
-        List<String> list = query.list();
+        // 在写入新词之前获取单词状态（加载时只读取已提交的数据）
+        UserWordState wordState = userWordStateCache.getState(user.getId());
+        BitSet learning = wordState.union(UserWordState.Kind.LEARNING);
+        BitSet learningOrMastered = wordState.union(UserWordState.Kind.LEARNING, UserWordState.Kind.MASTERED);
+
+        List<LearningDict> dicts = new ArrayList<>();
+        for (LearningDict learningDict : user.getLearningDicts()) {
+            Integer currentWordSeq = learningDict.getCurrentWordSeq();
+            if (currentWordSeq == null || currentWordSeq < learningDict.getDict().getWordCount()) {
+                dicts.add(learningDict);
+            }
+        }
+        List<String> wordIds = pickNewWords(dicts, learning, learningOrMastered, countToFetch);
+
         List<LearningWord> learningWords = new ArrayList<>(countToFetch);
-        for (String wordId : list) {
+        for (String wordId : wordIds) {
             LearningWordId id = new LearningWordId(user.getId(), wordId);
             LearningWord learningWord = new LearningWord(id, user, new Timestamp(new Date().getTime()), todayDayNumber,
                     LearningWord.NEW_LEARNING_WORD_LIFE_VALUE);
             createEntity(learningWord);
             learningWords.add(learningWord);
         }
+        userWordStateCache.setWords(user.getId(), UserWordState.Kind.LEARNING, wordIds, true);
         return learningWords;
     }
 
+    /**
+     * 在所有单词书中按序号从小到大同时扫描（各单词书都从当前位置之后开始），单词第一次被扫描到时的序号即为它的最小序号。
+     * 在任意一本高优先级单词书中可取的单词排在前面，所以要扫描到所有这样的单词都出现过、且总数已够时才停止
+     */
+    private List<String> pickNewWords(List<LearningDict> dicts, BitSet learning, BitSet learningOrMastered, int countToFetch) {
+        DictWordSeq[] seqs = new DictWordSeq[dicts.size()];
+        BitSet[] excluded = new BitSet[dicts.size()];
+        int[] startSeqs = new int[dicts.size()];
+        int minStartSeq = Integer.MAX_VALUE;
+        int maxSeq = 0;
+        BitSet privilegedWords = new BitSet();
+        for (int i = 0; i < dicts.size(); i++) {
+            LearningDict learningDict = dicts.get(i);
+            seqs[i] = dictWordSeqCache.get(learningDict.getDict().getId());
+            excluded[i] = Boolean.TRUE.equals(learningDict.getFetchMastered()) ? learning : learningOrMastered;
+            startSeqs[i] = learningDict.getCurrentWordSeq() == null ? 0 : learningDict.getCurrentWordSeq();
+            minStartSeq = Math.min(minStartSeq, startSeqs[i]);
+            maxSeq = Math.max(maxSeq, seqs[i].getMaxSeq());
+            if (Boolean.TRUE.equals(learningDict.getIsPrivileged())) {
+                for (int seq = startSeqs[i] + 1; seq <= seqs[i].getMaxSeq(); seq++) {
+                    int ordinal = seqs[i].getOrdinal(seq);
+                    if (ordinal != -1 && !excluded[i].get(ordinal)) {
+                        privilegedWords.set(ordinal);
+                    }
+                }
+            }
+        }
+
+        int privilegedCount = privilegedWords.cardinality();
+        List<String> privileged = new ArrayList<>();
+        List<String> others = new ArrayList<>();
+        BitSet picked = new BitSet();
+        for (int seq = minStartSeq + 1; seq <= maxSeq; seq++) {
+            if (privileged.size() >= Math.min(countToFetch, privilegedCount)
+                    && privileged.size() + others.size() >= countToFetch) {
+                break;
+            }
+            for (int i = 0; i < seqs.length; i++) {
+                if (seq <= startSeqs[i] || seq > seqs[i].getMaxSeq()) {
+                    continue;
+                }
+                int ordinal = seqs[i].getOrdinal(seq);
+                if (ordinal != -1 && !picked.get(ordinal) && !excluded[i].get(ordinal)) {
+                    picked.set(ordinal);
+                    (privilegedWords.get(ordinal) ? privileged : others).add(seqs[i].getWordId(seq));
+                }
+            }
+        }
+
+        List<String> wordIds = new ArrayList<>(countToFetch);
+        for (List<String> group : List.of(privileged, others)) {
+            for (int i = 0; i < group.size() && wordIds.size() < countToFetch; i++) {
+                wordIds.add(group.get(i));
+            }
+        }
+        return wordIds;
+    }
+
     /**
      * 添加新单词到正在学习的单词列表（本日要学习的单词将从该列表选出）
      *
@@ -135,8 +215,12 @@ public class LearningWordBo extends BaseBo<LearningWord> {
         Date startTime = new Date();
         List<LearningWord> newLearningWords = fetchNewWordsToLearn(user, todayDayNumber, newWordCount);
 
-        // 更新词书的当前位置
-        learningDictBo.updateCurrentPositionForUserDicts(user, false);
+        // 更新词书的当前位置（新词在事务提交后才会反映到单词状态位图中，需一并传入）
+        List<String> newWordIds = new ArrayList<>(newLearningWords.size());
+        for (LearningWord learningWord : newLearningWords) {
+            newWordIds.add(learningWord.getId().getWordId());
+        }
+        learningDictBo.updateCurrentPositionForUserDicts(user, false, newWordIds);
 
         Date endTime = new Date();
         log.info("从单词书取新词，耗时：" + (endTime.getTime() - startTime.getTime()));
@@ -145,40 +229,39 @@ public class LearningWordBo extends BaseBo<LearningWord> {
     }
 
     /**
-     * 获取指定的天数以前的那一天加入的learning words
-     *
-     * @param addDay
-     * @return
+     * 今日单词的优先顺序：生命值大的排在前面
      */
-    private List<LearningWord> getLearningWordsAddedAtDay(int addDay, List<LearningWord> allLearningWords) {
-        List<LearningWord> learningWords = new LinkedList<>();
+    private static final Comparator<LearningWord> BY_LIFE_VALUE_DESC = (o1, o2) -> o2.getLifeValue() - o1.getLifeValue();
 
-        // 获取该天添加的所有单词
-        for (LearningWord learningWord : allLearningWords) {
-            if (learningWord.getAddDay() == addDay) {
-                learningWords.add(learningWord);
-            }
-        }
+    /**
+     * 按加入日期对备选单词排序：越早加入的单词越靠前，同一天加入的单词生命值大的靠前
+     */
+    private static final class OldestCandidate {
+        private final LearningWord word;
+        private final long addDate;
 
-        // 对该天的单词进行排序，生命值大的排在前面，以便被优先选为本日学习单词
-        Collections.sort(learningWords, (LearningWord o1, LearningWord o2) -> o2.getLifeValue() - o1.getLifeValue());
+        private OldestCandidate(LearningWord word) {
+            this.word = word;
+            this.addDate = Utils.getPureDate(word.getAddTime()).getTime();
+        }
 
-        return learningWords;
+        private static final Comparator<OldestCandidate> ORDER = Comparator
+                .comparingLong((OldestCandidate c) -> c.addDate)
+                .thenComparing(c -> c.word, BY_LIFE_VALUE_DESC);
     }
 
     /**
-     * 将今日的学习单词更新到数据库
+     * 将今日的学习单词更新到数据库（一次批量update，不再逐个updateEntity）
      *
      * @param todayLearningWords
-     * @throws ClassNotFoundException
-     * @throws NamingException
-     * @throws SQLException
-     * @throws IllegalAccessException
-     * @throws IllegalArgumentException
      */
-    private void updateTodayLearningWords(List<LearningWord> todayLearningWords, Date now)
-            throws IllegalArgumentException, IllegalAccessException {
-        todayLearningWords.sort((o1, o2) -> o2.getLifeValue() - o1.getLifeValue());
+    private void updateTodayLearningWords(List<LearningWord> todayLearningWords, Date now) {
+        todayLearningWords.sort(BY_LIFE_VALUE_DESC);
+        Session session = getSession();
+        // 批量update之前，先把新加入的单词等挂起的修改flush到db，否则会被随后的flush覆盖
+        session.flush();
+
+        Date updateTime = new Date();
         int learningOrder = 1;
         for (LearningWord learningWord : todayLearningWords) {
             if (!Util.isSameDay(now, learningWord.getLastLearningDate())) {
@@ -186,69 +269,70 @@ public class LearningWordBo extends BaseBo<LearningWord> {
                 learningWord.setIsTodayNewWord(learningWord.getLearnedTimes() == 0);
             }
             learningWord.setLearningOrder(learningOrder);
+            learningWord.setUpdateTime(updateTime);
             learningOrder++;
-            updateEntity(learningWord);
         }
-    }
 
-    /**
-     * 获取最早加入的那些单词，越早加入的单词越靠前
-     *
-     * @return
-     */
-    private LearningWord getOldestLearningWord(List<LearningWord> allLearningWords) {
-        LearningWord oldestWord = null;
-        for (LearningWord learningWord : allLearningWords) {
-            if (oldestWord == null
-                    || (Util.isSameDay(learningWord.getAddTime(), oldestWord.getAddTime()) && learningWord
-                            .getLifeValue() > oldestWord.getLifeValue())
-                    || (learningWord.getAddTime().before(oldestWord.getAddTime()) && !Util.isSameDay(
-                            learningWord.getAddTime(), oldestWord.getAddTime()))) {
-                oldestWord = learningWord;
+        String sql = "UPDATE learning_word SET learningOrder = ?, lastLearningDate = ?, isTodayNewWord = ?, updateTime = ? "
+                + "WHERE userId = ? AND wordId = ?";
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (LearningWord learningWord : todayLearningWords) {
+                    ps.setInt(1, learningWord.getLearningOrder());
+                    ps.setTimestamp(2, toTimestamp(learningWord.getLastLearningDate()));
+                    ps.setBoolean(3, learningWord.getIsTodayNewWord());
+                    ps.setTimestamp(4, toTimestamp(updateTime));
+                    ps.setString(5, learningWord.getId().getUserId());
+                    ps.setString(6, learningWord.getId().getWordId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
             }
-        }
+        });
 
-        return oldestWord;
+        // 数据库中已是最新值，重新生成session中实体的快照，避免提交时Hibernate再逐个update
+        for (LearningWord learningWord : todayLearningWords) {
+            if (session.contains(learningWord)) {
+                session.setReadOnly(learningWord, true);
+                session.setReadOnly(learningWord, false);
+            }
+        }
     }
 
     /**
-     * 产生今天要学习的单词列表，并把该列表更新到数据库
+     * 产生今天要学习的单词列表，并把该列表更新到数据库<br>
+     * 备选单词按addDay分组一次，已选单词用按对象标识比较的集合判断，不足时从优先队列中取最早加入的单词，
+     * 整个过程与学习中单词的数量成线性关系（不计排序）
      *
      * @param user
      * @return
-     * @throws SQLException
-     * @throws IOException
-     * @throws ParseException
-     * @throws InvalidMeaningFormatException
-     * @throws EmptySpellException
-     * @throws NamingException
-     * @throws ClassNotFoundException
      * @throws IllegalAccessException
      * @throws IllegalArgumentException
      */
     public List<LearningWord> genTodayWords(User user, final Date now,
             List<LearningWord> todayLearningWords) throws IllegalArgumentException, IllegalAccessException {
 
-        // 删除生命值为0的单词（今日生命值为0的单词不删除）
-        Date startTime = new Date();
-        userBo.deleteFinishedLearningWordsExceptToday(user);
-        Date endTime = new Date();
-        log.info("删除生命值为0的单词，耗时:" + (endTime.getTime() - startTime.getTime()));
-
-        // 获取所有正在学习中的单词(作为备选单词列表，将从他们中间选出今日学习的单词)
-        startTime = new Date();
-        List<LearningWord> allLearningWords = new LinkedList<>();
-        allLearningWords.addAll(user.getLearningWords());
-        endTime = new Date();
-        log.info("获取所有正在学习中的单词，耗时:" + (endTime.getTime() - startTime.getTime()));
+        // 已经选为今天学习的单词（同一session中同一单词只有一个实体对象，按对象标识比较即可）
+        Set<LearningWord> selectedWords = Collections.newSetFromMap(new IdentityHashMap<>());
+        selectedWords.addAll(todayLearningWords);
 
-        // 通过查询最新加入到学习列表的单词，得知今天是第几天添加单词
-        startTime = new Date();
+        // 获取所有正在学习中且尚未选为今天学习的单词(作为备选单词列表，将从他们中间选出今日学习的单词)，
+        // 同时通过最新加入到学习列表的单词，得知今天是第几天添加单词。
+        // 生命值为0的单词（今日生命值为0的单词除外）由 FinishedLearningWordSweeper 每晚批量删除，这里只需跳过
+        Date startTime = new Date();
+        List<LearningWord> allLearningWords = user.getLearningWords();
+        List<LearningWord> candidateWords = new ArrayList<>(allLearningWords.size());
         LearningWord latestWord = null;
         for (LearningWord learningWord : allLearningWords) {
+            if (learningWord.getLifeValue() == 0 && !Util.isSameDay(learningWord.getLastLearningDate(), now)) {
+                continue;
+            }
             if (latestWord == null || learningWord.getAddTime().after(latestWord.getAddTime())) {
                 latestWord = learningWord;
             }
+            if (!selectedWords.contains(learningWord)) {
+                candidateWords.add(learningWord);
+            }
         }
         int todayDayNumber = 1;
         if (latestWord != null) {
@@ -258,34 +342,38 @@ public class LearningWordBo extends BaseBo<LearningWord> {
                 todayDayNumber = latestWord.getAddDay() + 1;
             }
         }
-        endTime = new Date();
-        log.info("判断今天是第几天添加单词，耗时:" + (endTime.getTime() - startTime.getTime()));
-
-        // 从备选单词列表中删除那些已经选为今天学习的单词
-        allLearningWords.removeAll(todayLearningWords);
+        Date endTime = new Date();
+        log.info("获取备选单词并判断今天是第几天添加单词，耗时:" + (endTime.getTime() - startTime.getTime()));
 
         // 如果需要，添加新单词到learning words
         startTime = new Date();
-        List<LearningWord> newLearningWords = addNewLearningWords(user, allLearningWords, todayDayNumber);
-        allLearningWords.addAll(newLearningWords);
+        List<LearningWord> newLearningWords = addNewLearningWords(user, candidateWords, todayDayNumber);
+        candidateWords.addAll(newLearningWords);
         endTime = new Date();
         log.info("如果需要，添加新单词到learning words，耗时:" + (endTime.getTime() - startTime.getTime()));
 
         // 取{ 0, 1, 3, 6, 14 }天之前加入的单词，正常情况下（没有bug，并且用户近期没有调整每日单词量）,
         // 这样取一遍就能得到足够的单词供本日学习了
         startTime = new Date();
+        Map<Integer, List<LearningWord>> candidatesByAddDay = new HashMap<>();
+        for (LearningWord learningWord : candidateWords) {
+            candidatesByAddDay.computeIfAbsent(learningWord.getAddDay(), k -> new ArrayList<>()).add(learningWord);
+        }
+        int wordsPerDay = user.getWordsPerDay();
         int[] fetchDays = new int[] { 0, 1, 3, 6, 14 };
         for (int day : fetchDays) {
-            List<LearningWord> learningWordsOfADay = getLearningWordsAddedAtDay(todayDayNumber - day, allLearningWords);
-
+            List<LearningWord> learningWordsOfADay = candidatesByAddDay.get(todayDayNumber - day);
+            if (learningWordsOfADay == null || todayLearningWords.size() >= wordsPerDay) {
+                continue;
+            }
+            // 对该天的单词进行排序，生命值大的排在前面，以便被优先选为本日学习单词
+            learningWordsOfADay.sort(BY_LIFE_VALUE_DESC);
             for (LearningWord word : learningWordsOfADay) {
-                if (!todayLearningWords.contains(word)) {
+                if (todayLearningWords.size() >= wordsPerDay) {
+                    break;
+                }
+                if (selectedWords.add(word)) {
                     todayLearningWords.add(word);
-                    allLearningWords.remove(word);
-                    if (todayLearningWords.size() >= user.getWordsPerDay()) {
-                        updateTodayLearningWords(todayLearningWords, now);
-                        return todayLearningWords;
-                    }
                 }
             }
         }
@@ -295,22 +383,25 @@ public class LearningWordBo extends BaseBo<LearningWord> {
         // 如果没有取到足够单词，则从最早的单词一直往前(较新单词的方向)取，这样一定能够取到足够单词（除非单词书中的单词耗尽了），因为:
         // (所有学习中单词的总生命值 L) = 29/5 * N(每日单词量), 所以学习中的单词总数至少有 L/5 = 29/(5*5) * N
         // > N
-        startTime = new Date();
-        while (todayLearningWords.size() < user.getWordsPerDay()) {
-            LearningWord oldestWord = getOldestLearningWord(allLearningWords);
-
-            // 取不到更多单词了，如果单词书中单词耗尽就会出现这样的情况
-            if (oldestWord == null) {
-                break;
+        if (todayLearningWords.size() < wordsPerDay) {
+            startTime = new Date();
+            PriorityQueue<OldestCandidate> oldestFirst = new PriorityQueue<>(Math.max(1, candidateWords.size()),
+                    OldestCandidate.ORDER);
+            for (LearningWord learningWord : candidateWords) {
+                if (!selectedWords.contains(learningWord)) {
+                    oldestFirst.add(new OldestCandidate(learningWord));
+                }
             }
-
-            if (!todayLearningWords.contains(oldestWord)) {
-                todayLearningWords.add(oldestWord);
-                allLearningWords.remove(oldestWord);
+            // 队列取空说明取不到更多单词了，如果单词书中单词耗尽就会出现这样的情况
+            while (todayLearningWords.size() < wordsPerDay && !oldestFirst.isEmpty()) {
+                LearningWord oldestWord = oldestFirst.poll().word;
+                if (selectedWords.add(oldestWord)) {
+                    todayLearningWords.add(oldestWord);
+                }
             }
+            endTime = new Date();
+            log.info("如果没有取到足够单词，则从最早的单词一直往前(较新单词的方向)取，耗时:" + (endTime.getTime() - startTime.getTime()));
         }
-        endTime = new Date();
-        log.info("如果没有取到足够单词，则从最早的单词一直往前(较新单词的方向)取，耗时:" + (endTime.getTime() - startTime.getTime()));
 
         // 将今日的学习单词更新到数据库
         startTime = new Date();
@@ -621,31 +712,137 @@ public class LearningWordBo extends BaseBo<LearningWord> {
     }
 
     public List<LearningWordDto> getLearningWordDtosOfUser(String userId) {
-        String sql = "select userId, wordId, learningOrder, isTodayNewWord, lifeValue, lastLearningDate, addTime, addDay, learnedTimes, createTime, updateTime from learning_word where userId = :userId";
-        Query<?> query = getSession().createNativeQuery(sql);
+        Query<?> query = getSession().createNativeQuery(LEARNING_WORD_DTO_SQL);
         List<?> list = query.setParameter("userId", userId).list();
 
         List<LearningWordDto> dtos = new ArrayList<>();
         for (Object obj : list) {
-            Object[] values = (Object[]) obj;
-            LearningWordDto dto = new LearningWordDto();
-            dto.setUserId((String) values[0]);
-            dto.setWordId((String) values[1]);
-            dto.setLearningOrder((Integer) values[2]);
-            dto.setIsTodayNewWord((Boolean) values[3]);
-            dto.setLifeValue((Integer) values[4]);
-            dto.setLastLearningDate((Date) values[5]);
-            dto.setAddTime((Date) values[6]);
-            dto.setAddDay((Integer) values[7]);
-            dto.setLearnedTimes((Integer) values[8]);
-            dto.setCreateTime((Date) values[9]);
-            dto.setUpdateTime((Date) values[10]);
-            dtos.add(dto);
+            dtos.add(toLearningWordDto((Object[]) obj));
         }
 
         return dtos;
     }
 
+    /**
+     * 以游标分批遍历用户的所有学习中单词DTO（用于流式全量同步，不在内存中构建完整列表）
+     *
+     * @return 遍历的记录数
+     */
+    public int scrollLearningWordDtosOfUser(String userId, int fetchSize, Consumer<LearningWordDto> consumer) {
+        return scrollNativeQuery(LEARNING_WORD_DTO_SQL, fetchSize, values -> consumer.accept(toLearningWordDto(values)),
+                new ImmutablePair<>("userId", userId));
+    }
+
+    /**
+     * 以JDBC批量方式应用客户端同步上来的学习中单词，语义与逐条处理一致：
+     * INSERT 记录已存在则忽略；UPDATE 记录不存在则创建；DELETE 删除记录
+     *
+     * @param operation INSERT/UPDATE/DELETE
+     */
+    public void batchApplySyncDtos(String operation, List<LearningWordDto> dtos) {
+        if (dtos.isEmpty()) {
+            return;
+        }
+        String insertSql = "INSERT INTO learning_word (userId, wordId, learningOrder, isTodayNewWord, lifeValue, lastLearningDate, addTime, addDay, learnedTimes, createTime, updateTime) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) ";
+        String sql;
+        switch (operation) {
+            case "INSERT":
+                sql = insertSql + "ON DUPLICATE KEY UPDATE userId = userId";
+                break;
+            case "UPDATE":
+                sql = insertSql + "ON DUPLICATE KEY UPDATE learningOrder = VALUES(learningOrder), isTodayNewWord = VALUES(isTodayNewWord), "
+                        + "lifeValue = VALUES(lifeValue), lastLearningDate = VALUES(lastLearningDate), addTime = VALUES(addTime), "
+                        + "addDay = VALUES(addDay), learnedTimes = VALUES(learnedTimes), createTime = IFNULL(?, createTime), "
+                        + "updateTime = VALUES(updateTime)";
+                break;
+            case "DELETE":
+                sql = "DELETE FROM learning_word WHERE userId = ? AND wordId = ?";
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的操作：" + operation);
+        }
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        getSession().doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (LearningWordDto dto : dtos) {
+                    ps.setString(1, dto.getUserId());
+                    ps.setString(2, dto.getWordId());
+                    if (!"DELETE".equals(operation)) {
+                        ps.setObject(3, dto.getLearningOrder());
+                        ps.setObject(4, dto.getIsTodayNewWord());
+                        ps.setObject(5, dto.getLifeValue());
+                        ps.setTimestamp(6, toTimestamp(dto.getLastLearningDate()));
+                        ps.setTimestamp(7, toTimestamp(dto.getAddTime()));
+                        ps.setObject(8, dto.getAddDay());
+                        ps.setObject(9, dto.getLearnedTimes());
+                        ps.setTimestamp(10, now);
+                        ps.setTimestamp(11, now);
+                        if ("UPDATE".equals(operation)) {
+                            ps.setTimestamp(12, toTimestamp(dto.getCreateTime()));
+                        }
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+    }
+
+    private static final String LEARNING_WORD_DTO_SQL = "select userId, wordId, learningOrder, isTodayNewWord, lifeValue, lastLearningDate, addTime, addDay, learnedTimes, createTime, updateTime from learning_word where userId = :userId";
+
+    private LearningWordDto toLearningWordDto(Object[] values) {
+        LearningWordDto dto = new LearningWordDto();
+        dto.setUserId((String) values[0]);
+        dto.setWordId((String) values[1]);
+        dto.setLearningOrder((Integer) values[2]);
+        dto.setIsTodayNewWord((Boolean) values[3]);
+        dto.setLifeValue((Integer) values[4]);
+        dto.setLastLearningDate((Date) values[5]);
+        dto.setAddTime((Date) values[6]);
+        dto.setAddDay((Integer) values[7]);
+        dto.setLearnedTimes((Integer) values[8]);
+        dto.setCreateTime((Date) values[9]);
+        dto.setUpdateTime((Date) values[10]);
+        return dto;
+    }
+
+    private static final String FINISHED_WORD_CONDITION = "lifeValue = 0 and (lastLearningDate is null or lastLearningDate < :before)";
+
+    /**
+     * 删除用户生命值为0、且最后学习日期早于指定时间的单词（一条delete语句，不加载实体），返回被删除单词的ID
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> deleteFinishedLearningWords(String userId, Date before) {
+        Session session = getSession();
+        // 先锁定要删除的行，保证返回的单词ID与删除的记录一致
+        List<String> wordIds = session.createNativeQuery("select wordId from learning_word where userId = :userId and "
+                + FINISHED_WORD_CONDITION + " for update")
+                .setParameter("userId", userId)
+                .setParameter("before", before)
+                .list();
+        if (wordIds.isEmpty()) {
+            return wordIds;
+        }
+        session.createNativeQuery("delete from learning_word where userId = :userId and " + FINISHED_WORD_CONDITION)
+                .setParameter("userId", userId)
+                .setParameter("before", before)
+                .executeUpdate();
+        return wordIds;
+    }
+
+    /**
+     * 获取有生命值为0、且最后学习日期早于指定时间的单词的用户
+     */
+    @SuppressWarnings("unchecked")
+    @Transactional(readOnly = true)
+    public List<String> getUsersWithFinishedLearningWords(Date before) {
+        return getSession().createNativeQuery("select distinct userId from learning_word where " + FINISHED_WORD_CONDITION)
+                .setParameter("before", before)
+                .list();
+    }
+
     /**
      * 批量删除用户的学习单词记录
      * @param userId 用户ID
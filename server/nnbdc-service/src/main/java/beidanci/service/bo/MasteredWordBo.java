@@ -3,11 +3,14 @@ package beidanci.service.bo;
 import javax.annotation.PostConstruct;
 
 import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.hibernate.query.Query;
@@ -28,6 +31,8 @@ import beidanci.service.po.MasteredWord;
 import beidanci.service.po.MasteredWordId;
 import beidanci.service.po.User;
 import beidanci.service.po.Word;
+import beidanci.service.store.UserWordState;
+import beidanci.service.store.UserWordStateCache;
 import beidanci.service.store.WordCache;
 
 @Service
@@ -51,6 +56,9 @@ public class MasteredWordBo extends BaseBo<MasteredWord> {
     @Autowired
     DictBo dictBo;
 
+    @Autowired
+    UserWordStateCache userWordStateCache;
+
     @PostConstruct
     public void init() {
         setDao(new BaseDao<MasteredWord>() {
@@ -86,9 +94,11 @@ public class MasteredWordBo extends BaseBo<MasteredWord> {
             // 将用户掌握的单词数+1
             onWordMastered(userBo, user);
         }
+        userWordStateCache.setWord(user.getId(), UserWordState.Kind.MASTERED, id.getWordId(), true);
 
         if (deleteLearningWord) {
             learningWordBo.deleteEntity(learningWord);
+            userWordStateCache.setWord(user.getId(), UserWordState.Kind.LEARNING, id.getWordId(), false);
         }
     }
 
@@ -108,6 +118,7 @@ public class MasteredWordBo extends BaseBo<MasteredWord> {
         // 删除已掌握单词
         MasteredWord masteredWord = findById(id);
         deleteEntity(masteredWord);
+        userWordStateCache.setWord(id.getUserId(), UserWordState.Kind.MASTERED, id.getWordId(), false);
 
         // 把已删除的已掌握单词移动到生词本
         Word word = wordBo.findById(masteredWord.getId().getWordId());
@@ -150,25 +161,80 @@ public class MasteredWordBo extends BaseBo<MasteredWord> {
      * 获取用户所有已掌握单词的DTO列表，用于全量同步
      */
     public List<MasteredWordDto> getMasteredWordDtosOfUser(String userId) {
-        String sql = "select userId, wordId, masterAtTime, createTime, updateTime from mastered_word where userId = :userId order by masterAtTime, wordId";
-        Query<?> query = getSession().createNativeQuery(sql);
+        Query<?> query = getSession().createNativeQuery(MASTERED_WORD_DTO_SQL);
         query.setParameter("userId", userId);
         List<?> results = query.list();
 
         List<MasteredWordDto> masteredWordDtos = new ArrayList<>();
         for (Object result : results) {
-            Object[] tuple = (Object[]) result;
-            MasteredWordDto masteredWordDto = new MasteredWordDto();
-            masteredWordDto.setUserId((String) tuple[0]);
-            masteredWordDto.setWordId((String) tuple[1]);
-            masteredWordDto.setMasterAtTime((Date) tuple[2]);
-            masteredWordDto.setCreateTime((Date) tuple[3]);
-            masteredWordDto.setUpdateTime((Date) tuple[4]);
-            masteredWordDtos.add(masteredWordDto);
+            masteredWordDtos.add(toMasteredWordDto((Object[]) result));
         }
         return masteredWordDtos;
     }
 
+    /**
+     * 以游标分批遍历用户的所有已掌握单词DTO（用于流式全量同步）
+     *
+     * @return 遍历的记录数
+     */
+    public int scrollMasteredWordDtosOfUser(String userId, int fetchSize, Consumer<MasteredWordDto> consumer) {
+        return scrollNativeQuery(MASTERED_WORD_DTO_SQL, fetchSize, tuple -> consumer.accept(toMasteredWordDto(tuple)),
+                new ImmutablePair<>("userId", userId));
+    }
+
+    /**
+     * 以JDBC批量方式应用客户端同步上来的已掌握单词，语义与逐条处理一致：
+     * INSERT 记录已存在则忽略；DELETE 删除记录
+     *
+     * @param operation INSERT/DELETE
+     */
+    public void batchApplySyncDtos(String operation, List<MasteredWordDto> dtos) {
+        if (dtos.isEmpty()) {
+            return;
+        }
+        String sql;
+        switch (operation) {
+            case "INSERT":
+                sql = "INSERT INTO mastered_word (userId, wordId, masterAtTime, createTime, updateTime) VALUES (?, ?, ?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE userId = userId";
+                break;
+            case "DELETE":
+                sql = "DELETE FROM mastered_word WHERE userId = ? AND wordId = ?";
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的操作：" + operation);
+        }
+
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        getSession().doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (MasteredWordDto dto : dtos) {
+                    ps.setString(1, dto.getUserId());
+                    ps.setString(2, dto.getWordId());
+                    if ("INSERT".equals(operation)) {
+                        ps.setTimestamp(3, toTimestamp(dto.getMasterAtTime()));
+                        ps.setTimestamp(4, now);
+                        ps.setTimestamp(5, now);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+    }
+
+    private static final String MASTERED_WORD_DTO_SQL = "select userId, wordId, masterAtTime, createTime, updateTime from mastered_word where userId = :userId order by masterAtTime, wordId";
+
+    private MasteredWordDto toMasteredWordDto(Object[] tuple) {
+        MasteredWordDto masteredWordDto = new MasteredWordDto();
+        masteredWordDto.setUserId((String) tuple[0]);
+        masteredWordDto.setWordId((String) tuple[1]);
+        masteredWordDto.setMasterAtTime((Date) tuple[2]);
+        masteredWordDto.setCreateTime((Date) tuple[3]);
+        masteredWordDto.setUpdateTime((Date) tuple[4]);
+        return masteredWordDto;
+    }
+
     /**
      * 批量删除用户的mastered_word记录
      * @param userId 用户ID
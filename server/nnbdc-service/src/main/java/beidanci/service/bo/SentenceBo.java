@@ -3,6 +3,8 @@ import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
 
@@ -14,6 +16,8 @@ import org.springframework.transaction.annotation.Transactional;
 import beidanci.api.Result;
 import beidanci.api.model.EventType;
 import beidanci.api.model.SentenceDto;
+import beidanci.api.model.SentenceVo;
+import beidanci.api.model.UserVo;
 import beidanci.service.dao.BaseDao;
 import beidanci.service.exception.EmptySpellException;
 import beidanci.service.exception.InvalidMeaningFormatException;
@@ -127,6 +131,86 @@ public class SentenceBo extends BaseBo<Sentence> {
         return sentenceDtos;
     }
 
+    /**
+     * 例句（含作者）的查询语句，列的顺序与 {@link #toSentenceVo} 一致
+     */
+    private static final String SENTENCE_VO_SQL = "select s.id, s.english, s.chinese, s.theType, s.englishDigest, s.handCount, s.footCount, "
+            + "u.id as authorId, u.userName, u.nickName from sentence s join user u on u.id = s.authorId";
+
+    /**
+     * 获取例句总数
+     */
+    public long getSentenceCount() {
+        Query<?> query = getSession().createNativeQuery("select count(*) from sentence");
+        return ((Number) query.uniqueResult()).longValue();
+    }
+
+    /**
+     * 以游标方式逐行读取所有例句，每读到一个例句就交给handler处理（不会一次把所有例句读入内存）
+     *
+     * @param authorsById 例句作者，同一作者的所有例句共用一个UserVo
+     * @return 读取的例句数
+     */
+    public int scrollSentenceVos(int fetchSize, Map<String, UserVo> authorsById, Consumer<SentenceVo> handler) {
+        return scrollNativeQuery(SENTENCE_VO_SQL, fetchSize, row -> handler.accept(toSentenceVo(row, authorsById)));
+    }
+
+    public SentenceVo getSentenceVo(String sentenceId, Map<String, UserVo> authorsById) {
+        Query<?> query = getSession().createNativeQuery(SENTENCE_VO_SQL + " where s.id = :id");
+        List<?> results = query.setParameter("id", sentenceId).list();
+        return results.isEmpty() ? null : toSentenceVo((Object[]) results.get(0), authorsById);
+    }
+
+    /**
+     * 查询英文中包含任意一个指定单词的例句（例句缓存加载完成前使用）<br>
+     * 数据库只能按子串匹配，这里再按分词结果过滤，保证与例句缓存的结果一致
+     */
+    public List<SentenceVo> findSentencesContainingWords(List<String> words, Map<String, UserVo> authorsById) {
+        if (words.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder sql = new StringBuilder(SENTENCE_VO_SQL).append(" where ");
+        for (int i = 0; i < words.size(); i++) {
+            sql.append(i == 0 ? "" : " or ").append("s.english like :w").append(i).append(" escape '!'");
+        }
+        Query<?> query = getSession().createNativeQuery(sql.toString());
+        for (int i = 0; i < words.size(); i++) {
+            query.setParameter("w" + i, "%" + escapeLike(words.get(i)) + "%");
+        }
+
+        List<SentenceVo> sentences = new ArrayList<>();
+        for (Object result : query.list()) {
+            SentenceVo vo = toSentenceVo((Object[]) result, authorsById);
+            List<String> wordsOfSentence = Util.splitSentence2Words(vo.getEnglish());
+            for (String word : words) {
+                if (wordsOfSentence.contains(word)) {
+                    sentences.add(vo);
+                    break;
+                }
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * 转义 LIKE 模式中的通配符（以 ! 为转义字符，避免与 MySQL 字符串中的反斜杠转义混淆）
+     */
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private static SentenceVo toSentenceVo(Object[] row, Map<String, UserVo> authorsById) {
+        UserVo author = authorsById.computeIfAbsent((String) row[7], id -> {
+            UserVo vo = new UserVo();
+            vo.setId(id);
+            vo.setUserName((String) row[8]);
+            vo.setDisplayNickName(Util.isStringEmpty((String) row[9]) ? (String) row[8] : (String) row[9]);
+            return vo;
+        });
+        return new SentenceVo((String) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4],
+                row[5] == null ? 0 : ((Number) row[5]).intValue(), row[6] == null ? 0 : ((Number) row[6]).intValue(), author);
+    }
+
     public Result<Void> deleteSentence(String id, String currWord, String userId)
             throws InvalidMeaningFormatException, EmptySpellException, ParseException, IOException {
         Sentence existing = findById(id);
@@ -44,8 +44,12 @@ import beidanci.service.po.UserOper;
 import beidanci.service.po.UserStudyStep;
 import beidanci.service.po.UserStudyStepId;
 import beidanci.service.po.WrongWord;
+import beidanci.service.store.DictWordSeqCache;
+import beidanci.service.store.UserWordStateCache;
 import beidanci.service.util.JsonUtils;
 import beidanci.service.util.UserSorter;
+import beidanci.service.util.UserSyncLockManager;
+import beidanci.service.util.Util;
 
 @Service
 public class SyncBo {
@@ -103,6 +107,9 @@ public class SyncBo {
     @Autowired
     private UserDbLogBo userDbLogBo;
 
+    @Autowired
+    private UserDbSnapshotBo userDbSnapshotBo;
+
     @Autowired
     private UserDbVersionDao userDbVersionDao;
 
@@ -118,9 +125,18 @@ public class SyncBo {
     @Autowired
     private DictBo dictBo;
 
+    @Autowired
+    private DictWordSeqCache dictWordSeqCache;
+
+    @Autowired
+    private UserWordStateCache userWordStateCache;
+
     @Autowired
     private PlatformTransactionManager transactionManager;
 
+    @Autowired
+    private UserSyncLockManager userSyncLockManager;
+
     /**
      * 同步用户客户端数据库到服务端
      *
@@ -135,13 +151,24 @@ public class SyncBo {
     public int syncUserDb2Back(String userId, int expectedServerDbVersion, List<UserDbLogDto> logs)
             throws DbVersionNotMatchException, IllegalAccessException, RawWordDataErrorException {
 
+        // 在借用数据库连接（开启事务）之前, 先在内存中串行化同一用户的同步
+        userSyncLockManager.lock(userId);
+        try {
+            return doSyncUserDb2Back(userId, expectedServerDbVersion, logs);
+        } finally {
+            userSyncLockManager.unlock(userId);
+        }
+    }
+
+    private int doSyncUserDb2Back(String userId, int expectedServerDbVersion, List<UserDbLogDto> logs)
+            throws DbVersionNotMatchException, IllegalAccessException, RawWordDataErrorException {
         DefaultTransactionDefinition def = new DefaultTransactionDefinition();
         def.setName("syncUserDb");
         def.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
         TransactionStatus status = transactionManager.getTransaction(def);
 
         try {
-            // 验证用户和版本，同时获取加锁后的版本号
+            // 验证用户和版本，同时获取当前版本号
             UserValidationResult validationResult = validateUserAndVersion(userId, expectedServerDbVersion);
             if (validationResult == null) {
                 // 用户不存在，直接提交空事务
@@ -149,24 +176,46 @@ public class SyncBo {
                 return 0;
             }
 
-            // 使用已经加锁查询的版本号，避免重复查询数据库
+            // 使用验证时查询的版本号，避免重复查询数据库
             final int lastVersion = validationResult.getVersion();
             Session session = userBo.getSession();
 
-            // 执行数据同步
+            // 执行数据同步：可批量处理的表(learning_word, mastered_word)按连续的同表同操作分组，以JDBC批量写入，
+            // 其他表逐条处理。分组只合并相邻日志，因此各条日志的应用顺序保持不变
+            List<UserDbLog> userDbLogs = new ArrayList<>(logs.size());
+            SyncBatch batch = null;
             for (UserDbLogDto log : logs) {
                 String recordJson = null;
                 try {
                     recordJson = log.getRecord();
-                    processSyncLog(userId, log, recordJson);
 
                     // 检查record id是否超出长度限制
                     if (log.getRecordId().length() > 131) {
                         throw new IllegalArgumentException(String.format("record id(%s)超出长度限制(最多131), table(%s)", log.getRecordId(), log.getTblName()));
                     }
 
+                    String tableName = log.getTblName().toLowerCase();
+                    String operation = log.getOperate().toUpperCase();
+                    if (SyncBatch.isBatchable(tableName, operation)) {
+                        if (batch != null && !batch.accepts(tableName, operation)) {
+                            applySyncBatch(session, batch);
+                            batch = null;
+                        }
+                        if (batch == null) {
+                            batch = new SyncBatch(tableName, operation);
+                        }
+                        batch.records.add(recordJson);
+                    } else {
+                        if (batch != null) {
+                            applySyncBatch(session, batch);
+                            batch = null;
+                        }
+                        processSyncLog(userId, log, recordJson);
+                    }
+
                     // 生成服务端数据库日志(用于同步到该用户的其他客户端)
                     UserDbLog userDbLog = new UserDbLog();
+                    userDbLog.setId(Util.uuid());
                     userDbLog.setUserId(userId);
                     userDbLog.setVersion(lastVersion + 1);
                     userDbLog.setCreateTime(new Date());
@@ -175,7 +224,7 @@ public class SyncBo {
                     userDbLog.setRecordId(log.getRecordId());
                     userDbLog.setOperate(log.getOperate());
                     userDbLog.setRecord(recordJson);
-                    userDbLogBo.createEntity(userDbLog);
+                    userDbLogs.add(userDbLog);
                 } catch (Exception e) {
                     // 任何异常都会导致整个事务回滚
                     logger.error("同步数据失败，将回滚整个事务, 用户[{}], 表[{}], 记录[{}], 错误: {}",
@@ -184,10 +233,26 @@ public class SyncBo {
                     throw new RuntimeException("同步数据失败: " + e.getMessage(), e);
                 }
             }
+            try {
+                if (batch != null) {
+                    applySyncBatch(session, batch);
+                }
+
+                // 服务端数据库日志及其压缩快照一次性批量写入
+                session.flush();
+                userDbLogBo.batchCreate(userDbLogs);
+                userDbSnapshotBo.applyLogs(userDbLogs);
+            } catch (Exception e) {
+                logger.error("批量写入同步数据失败，将回滚整个事务, 用户[{}], 错误: {}", userId, e.getMessage(), e);
+                throw new RuntimeException("同步数据失败: " + e.getMessage(), e);
+            }
 
             // 生词本顺序校验和后续处理
             validateAndFinalizeSync(userId, logs, lastVersion, session);
 
+            // 提交后更新内存中该用户的单词状态位图
+            userWordStateCache.applySyncLogs(userId, logs);
+
             transactionManager.commit(status);
             return lastVersion + 1;
         } catch (Throwable e) {
@@ -212,11 +277,10 @@ public class SyncBo {
     }
 
     /**
-     * 验证用户和版本（使用数据库行锁防止并发冲突）
+     * 验证用户和版本
      * 
-     * 重要改进：
-     * 1. 使用 FOR UPDATE 行锁来防止并发事务同时修改同一用户的数据
-     * 2. 同时返回用户对象和版本号，避免调用方重复查询
+     * 同一用户的并发同步已由 UserSyncLockManager 在进程内串行化，这里不再对 user_db_version 加行锁，
+     * 最终由 validateAndFinalizeSync 中的 CAS 更新保证版本号不被覆盖
      * 
      * @param userId                  用户ID
      * @param expectedServerDbVersion 期望的服务端数据库版本
@@ -231,15 +295,12 @@ public class SyncBo {
             return null;
         }
 
-        // 使用 FOR UPDATE 锁定版本号记录，防止并发修改
-        // 注意：这个锁会一直持有到事务提交或回滚
         Session session = userBo.getSession();
         
         // 先确保版本记录存在（对于新用户可能不存在）
         userDbVersionDao.ensureUserDbVersionExists(session, userId);
         
-        // 使用带锁的查询方法，锁定该用户的版本号行
-        final int lastVersion = userDbVersionDao.getUserDbVersionWithLock(session, userId);
+        final int lastVersion = userDbVersionDao.getUserDbVersion(session, userId);
         
         if (expectedServerDbVersion != lastVersion) {
             throw new DbVersionNotMatchException(String.format("数据库版本不匹配，期望版本[%d]，当前版本[%d]，本次同步失败（请重试）",
@@ -250,6 +311,62 @@ public class SyncBo {
         return new UserValidationResult(lastVersion);
     }
 
+    /**
+     * 一组相邻的、同表同操作的同步日志，以JDBC批量方式写入
+     */
+    private static class SyncBatch {
+        private final String tableName;
+        private final String operation;
+        private final List<String> records = new ArrayList<>();
+
+        SyncBatch(String tableName, String operation) {
+            this.tableName = tableName;
+            this.operation = operation;
+        }
+
+        static boolean isBatchable(String tableName, String operation) {
+            switch (tableName) {
+                case "learning_word":
+                    return "INSERT".equals(operation) || "UPDATE".equals(operation) || "DELETE".equals(operation);
+                case "mastered_word":
+                    return "INSERT".equals(operation) || "DELETE".equals(operation);
+                default:
+                    return false;
+            }
+        }
+
+        boolean accepts(String tableName, String operation) {
+            return this.tableName.equals(tableName) && this.operation.equals(operation);
+        }
+    }
+
+    /**
+     * 批量应用一组同步日志。先flush session，保证之前逐条处理的变更先于本批写入数据库
+     */
+    private void applySyncBatch(Session session, SyncBatch batch) {
+        session.flush();
+        switch (batch.tableName) {
+            case "learning_word": {
+                List<LearningWordDto> dtos = new ArrayList<>(batch.records.size());
+                for (String record : batch.records) {
+                    dtos.add(JsonUtils.makeObject(record, LearningWordDto.class));
+                }
+                learningWordBo.batchApplySyncDtos(batch.operation, dtos);
+                break;
+            }
+            case "mastered_word": {
+                List<MasteredWordDto> dtos = new ArrayList<>(batch.records.size());
+                for (String record : batch.records) {
+                    dtos.add(JsonUtils.makeObject(record, MasteredWordDto.class));
+                }
+                masteredWordBo.batchApplySyncDtos(batch.operation, dtos);
+                break;
+            }
+            default:
+                throw new IllegalStateException("不支持批量同步的表: " + batch.tableName);
+        }
+    }
+
     /**
      * 处理单个同步日志
      */
@@ -660,6 +777,7 @@ public class SyncBo {
                         }
                         break;
                 }
+                dictWordSeqCache.invalidate(dictWordDto.getDictId());
             } catch (IllegalArgumentException | IllegalAccessException e) {
                 logger.error("同步生词数据失败：" + e.getMessage(), e);
             }
@@ -783,8 +901,7 @@ public class SyncBo {
         
         if (!updateSuccess) {
             // CAS 更新失败，说明版本号在同步过程中被其他事务修改了
-            // 这种情况理论上不应该发生，因为我们在 validateUserAndVersion 中已经加了行锁
-            // 但为了安全起见，还是要处理这种情况
+            // 同一进程内的并发同步已被 UserSyncLockManager 串行化，这种情况只会在多实例部署等场景下发生
             logger.error("使用 CAS 更新版本号失败，用户[{}]，期望版本[{}]，新版本[{}]", 
                     userId, lastVersion, newVersion);
             throw new DbVersionNotMatchException(String.format(
@@ -4,16 +4,27 @@ import beidanci.api.model.SysDbLogDto;
 import beidanci.service.dao.BaseDao;
 import beidanci.service.po.SysDbLog;
 import beidanci.service.po.SysDbVersion;
+import beidanci.service.store.DictResCache;
+import beidanci.service.store.DictWordSeqCache;
+import beidanci.service.store.WordCache;
 import beidanci.service.util.JsonUtils;
 import beidanci.service.util.Util;
 import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +35,15 @@ import java.util.stream.Collectors;
 @Transactional(rollbackFor = Throwable.class)
 public class SysDbLogBo extends BaseBo<SysDbLog> {
 
+    @Autowired
+    DictResCache dictResCache;
+
+    @Autowired
+    WordCache wordCache;
+
+    @Autowired
+    DictWordSeqCache dictWordSeqCache;
+
     @PostConstruct
     public void init() {
         setDao(new BaseDao<SysDbLog>() {
@@ -57,6 +77,22 @@ public class SysDbLogBo extends BaseBo<SysDbLog> {
 
         // 递增版本号
         incrementSysDbVersion(nextVersion);
+
+        // 版本号变了，已缓存的词典资源全部作废
+        dictResCache.invalidateAll();
+
+        // 单词及其关联数据（图片、中文描述、例句等）变了，更新单词内存索引并清除已生成的WordVo
+        if ("word".equals(table)) {
+            wordCache.onWordsChanged(Collections.singletonList(recordId));
+        } else {
+            String wordId = getRecordField(log, "wordId");
+            wordCache.evictWordVos(wordId != null ? Collections.singletonList(wordId) : null);
+        }
+
+        // 单词书的单词或序号变了，已缓存的序号数组作废
+        if ("dict_word".equals(table)) {
+            dictWordSeqCache.invalidate(getRecordField(log, "dictId"));
+        }
     }
 
     /**
@@ -117,6 +153,112 @@ public class SysDbLogBo extends BaseBo<SysDbLog> {
         }
     }
     
+    /**
+     * 获取与指定单词书有关的、版本号在 (fromVersion, toVersion] 范围内的系统数据日志。
+     * dict、dict_word 的日志通过记录ID判断所属单词书（dict_word 的记录ID为 dictId_wordId）；
+     * 其他表的记录删除后已无法查询其所属单词书，删除日志一律包含在内（客户端删除不存在的记录没有副作用）
+     *
+     * @return 日志列表，按版本号升序排列；若该范围内的日志已被清理，返回null
+     */
+    public List<SysDbLogDto> getDictDeltaLogs(String dictId, int fromVersion, int toVersion) {
+        if (fromVersion < toVersion && !isLogRangeAvailable(fromVersion)) {
+            return null;
+        }
+
+        String hql = "FROM SysDbLog WHERE version > :fromVersion AND version <= :toVersion ORDER BY version ASC";
+        Query<SysDbLog> query = getSession().createQuery(hql, SysDbLog.class);
+        query.setParameter("fromVersion", fromVersion);
+        query.setParameter("toVersion", toVersion);
+        List<SysDbLog> logs = query.list();
+
+        // 先收集日志涉及的单词和释义，再一次性查出其中属于该单词书的部分
+        Map<SysDbLog, String> wordIdOfLog = new HashMap<>();
+        Map<SysDbLog, String> meaningItemIdOfLog = new HashMap<>();
+        for (SysDbLog log : logs) {
+            if ("DELETE".equals(log.getOperate())) {
+                continue;
+            }
+            switch (log.getTable()) {
+                case "word":
+                    wordIdOfLog.put(log, log.getRecordId());
+                    break;
+                case "word_image":
+                case "word_shortdesc_chinese":
+                    wordIdOfLog.put(log, getRecordField(log, "wordId"));
+                    break;
+                case "sentence":
+                    meaningItemIdOfLog.put(log, getRecordField(log, "meaningItemId"));
+                    break;
+                default:
+                    break;
+            }
+        }
+        Set<String> wordsOfDict = filterIdsOfDict("select wordId from dict_word where dictId = :dictId and wordId in (:ids)",
+                dictId, wordIdOfLog.values());
+        Set<String> meaningItemsOfDict = filterIdsOfDict("select id from meaning_item where dictId = :dictId and id in (:ids)",
+                dictId, meaningItemIdOfLog.values());
+
+        List<SysDbLogDto> deltaLogs = new ArrayList<>();
+        for (SysDbLog log : logs) {
+            boolean related;
+            if ("dict".equals(log.getTable())) {
+                related = dictId.equals(log.getRecordId());
+            } else if ("dict_word".equals(log.getTable())) {
+                related = log.getRecordId().startsWith(dictId + "_");
+            } else if ("DELETE".equals(log.getOperate())) {
+                related = true;
+            } else if (wordIdOfLog.containsKey(log)) {
+                String wordId = wordIdOfLog.get(log);
+                related = wordId == null || wordsOfDict.contains(wordId);
+            } else if (meaningItemIdOfLog.containsKey(log)) {
+                String meaningItemId = meaningItemIdOfLog.get(log);
+                related = meaningItemId == null || meaningItemsOfDict.contains(meaningItemId);
+            } else {
+                related = false;
+            }
+            if (related) {
+                deltaLogs.add(toDto(log));
+            }
+        }
+        return deltaLogs;
+    }
+
+    /**
+     * 版本号大于 fromVersion 的日志是否都还在（旧日志会被 {@link #cleanOldLogs()} 清理）
+     */
+    private boolean isLogRangeAvailable(int fromVersion) {
+        Integer minVersion = getSession().createQuery("SELECT MIN(version) FROM SysDbLog", Integer.class).uniqueResult();
+        return minVersion != null && minVersion <= fromVersion + 1;
+    }
+
+    /**
+     * 从日志记录内容（JSON）中取出指定字段，无法解析时返回null
+     */
+    private String getRecordField(SysDbLog log, String field) {
+        try {
+            Map<?, ?> record = JsonUtils.makeObject(log.getRecord(), Map.class);
+            Object value = record != null ? record.get(field) : null;
+            return value != null && !"".equals(value) ? value.toString() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private Set<String> filterIdsOfDict(String sql, String dictId, Collection<String> ids) {
+        Set<String> distinctIds = ids.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (distinctIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        Query<?> query = getSession().createNativeQuery(sql);
+        query.setParameter("dictId", dictId);
+        query.setParameterList("ids", distinctIds);
+        Set<String> result = new HashSet<>();
+        for (Object id : query.list()) {
+            result.add((String) id);
+        }
+        return result;
+    }
+
     /**
      * 检查是否存在指定版本的日志
      */
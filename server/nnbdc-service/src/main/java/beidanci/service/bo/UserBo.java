@@ -6,11 +6,16 @@ import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
 import javax.naming.NamingException;
@@ -35,13 +40,9 @@ import beidanci.api.model.ClientType;
 import beidanci.api.model.DakaDto;
 import beidanci.api.model.DictWordDto;
 import beidanci.api.model.LearningDictDto;
-import beidanci.api.model.LearningWordDto;
 import beidanci.api.model.LevelVo;
-import beidanci.api.model.MasteredWordDto;
 import beidanci.api.model.PagedResults;
-import beidanci.api.model.UserCowDungLogDto;
 import beidanci.api.model.UserDbLogDto;
-import beidanci.api.model.UserOperDto;
 import beidanci.api.model.UserStudyStepDto;
 import beidanci.api.model.UserVo;
 import beidanci.api.model.WordVo;
@@ -67,6 +68,10 @@ import beidanci.service.po.UserDbLog;
 import beidanci.service.po.UserGame;
 import beidanci.service.po.UserSnapshotDaily;
 import beidanci.service.po.Word;
+import beidanci.service.store.DictWordSeqCache;
+import beidanci.service.store.DictWordSeqCache.DictWordSeq;
+import beidanci.service.store.UserWordState;
+import beidanci.service.store.UserWordStateCache;
 import beidanci.service.store.WordCache;
 import beidanci.service.util.BeanUtils;
 import beidanci.service.util.JsonUtils;
@@ -124,6 +129,9 @@ public class UserBo extends BaseBo<User> {
     @Autowired
     UserDbLogBo userDbLogBo;
 
+    @Autowired
+    UserDbSnapshotBo userDbSnapshotBo;
+
     @Autowired
     DictBo dictBo;
 
@@ -139,6 +147,12 @@ public class UserBo extends BaseBo<User> {
     @Autowired
     DictWordBo dictWordBo;
 
+    @Autowired
+    DictWordSeqCache dictWordSeqCache;
+
+    @Autowired
+    UserWordStateCache userWordStateCache;
+
     @Autowired
     SysParamBo sysParamBo;
 
@@ -228,19 +242,13 @@ public class UserBo extends BaseBo<User> {
     }
 
     /**
-     * 删除生命值为0,且不是今天学习的单词
+     * 删除用户生命值为0、且最后学习日期早于指定时间的单词，返回被删除单词的ID（事务提交后同步到单词状态位图）
      */
     @Transactional
-    public void deleteFinishedLearningWordsExceptToday(User user)
-            throws IllegalArgumentException, IllegalAccessException {
-        for (Iterator<LearningWord> i = user.getLearningWords().iterator(); i.hasNext();) {
-            LearningWord learningWord = i.next();
-            if (learningWord.getLifeValue() == 0 && !Util.isSameDay(learningWord.getLastLearningDate(), new Date())) {
-                learningWordBo.deleteEntity(learningWord);
-                i.remove();
-            }
-        }
-        updateEntity(user);
+    public List<String> purgeFinishedLearningWords(String userId, Date before) {
+        List<String> deletedWordIds = learningWordBo.deleteFinishedLearningWords(userId, before);
+        userWordStateCache.setWords(userId, UserWordState.Kind.LEARNING, deletedWordIds, false);
+        return deletedWordIds;
     }
 
     /**
@@ -292,8 +300,10 @@ public class UserBo extends BaseBo<User> {
         Collections.shuffle(selectedLearningDicts);
 
         // 从当前学习的某本单词书中取下一个单词
-        WordVo wordToLearn;
+        List<LearningDict> allLearningDicts = new ArrayList<>(user.getLearningDicts());// 用户所有学习中的单词书(包括当前并未选中的)
+        Map<LearningDict, BitSet> takenWordsOfDicts = new HashMap<>();
         for (LearningDict learningDict : selectedLearningDicts) {
+            String dictId = learningDict.getDict().getId();
 
             // 获取该单词书当前的学习位置
             Integer wordOrderInDict = learningDict.getCurrentWordSeq();
@@ -301,36 +311,81 @@ public class UserBo extends BaseBo<User> {
                 wordOrderInDict = 0;
             }
 
-            // 如果该单词书尚未被学完，则取当前单词的下一个单词，并更新当前单词
-            // Dict realDict = dictBo.findById(learningDict.getDict().getId());
-            while (wordOrderInDict < learningDict.getDict().getWordCount()) {
-                // 从单词书中取下一个单词
-                WordVo nextWord = dictWordBo.getWordOfOrder(learningDict.getDict().getId(),
-                        wordOrderInDict + 1);
+            // 已经从其他单词书取出过的单词
+            BitSet takenByOtherDicts = new BitSet();
+            for (LearningDict otherDict : allLearningDicts) {
+                if (!otherDict.equals(learningDict)) {
+                    takenByOtherDicts.or(takenWordsOfDicts.computeIfAbsent(otherDict, this::getTakenWordsOfDict));
+                }
+            }
 
-                // 判断该单词是否已经取出过
-                List<LearningDict> allLearningDicts = new ArrayList<>(user.getLearningDicts());// 用户所有学习中的单词书(包括当前并未选中的)
-                boolean isLearned = isWordLearned(nextWord.getId(), allLearningDicts, learningDict);
+            // 在内存中从当前位置向后扫描，跳过已经取出过的单词
+            DictWordSeq dictWordSeq = dictWordSeqCache.get(dictId);
+            int seq = findNewWordSeq(dictWordSeq, wordOrderInDict, learningDict, takenByOtherDicts);
+            if (isSeqIndexStale(dictId, dictWordSeq, seq, learningDict.getDict().getWordCount())) {
+                // 单词书被修改过而序号数组未及时失效（如直接修改数据库），重新加载后再扫描一次
+                dictWordSeqCache.invalidate(dictId);
+                dictWordSeq = dictWordSeqCache.get(dictId);
+                seq = findNewWordSeq(dictWordSeq, wordOrderInDict, learningDict, takenByOtherDicts);
+            }
 
-                // 更新该单词书的当前单词
-                wordToLearn = wordCache.getWordBySpell(nextWord.getSpell(), new String[] {
-                        "SynonymVo.meaningItem", "SynonymVo.word", "similarWords", "DictVo.dictWords" });
-                learningDict.setCurrentWord(new Word(nextWord.getId()));
-                learningDict.setCurrentWordSeq(wordOrderInDict + 1);
+            // 更新该单词书的当前单词（只更新一次）：找到了则为该单词，否则为扫描过的最后一个单词
+            int newOrderInDict = seq != -1 ? seq : lastSeqAfter(dictWordSeq, wordOrderInDict, learningDict);
+            if (newOrderInDict != -1) {
+                learningDict.setCurrentWord(new Word(dictWordSeq.getWordId(newOrderInDict)));
+                learningDict.setCurrentWordSeq(newOrderInDict);
                 learningDictBo.updateEntity(learningDict);
+            }
 
-                // 如果该单词已经学习过，则略过, 否则返回该单词
-                if (isLearned) {
-                    wordOrderInDict++;
-                } else {
-                    return wordToLearn;
-                }
+            if (seq != -1) {
+                return wordCache.getWordById(dictWordSeq.getWordId(seq), new String[] {
+                        "SynonymVo.meaningItem", "SynonymVo.word", "similarWords", "DictVo.dictWords" });
             }
         }
 
         return null;
     }
 
+    /**
+     * 在单词书中查找指定位置之后第一个未被取出过的单词
+     *
+     * @return 该单词的序号，单词书已学完则返回-1
+     */
+    private static int findNewWordSeq(DictWordSeq dictWordSeq, int wordOrderInDict, LearningDict learningDict,
+            BitSet takenByOtherDicts) {
+        int endSeq = Math.min(dictWordSeq.getMaxSeq(), learningDict.getDict().getWordCount());
+        for (int seq = wordOrderInDict + 1; seq <= endSeq; seq++) {
+            int ordinal = dictWordSeq.getOrdinal(seq);
+            if (ordinal != -1 && !takenByOtherDicts.get(ordinal)) {
+                return seq;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 指定位置之后单词书中最后一个单词的序号，没有则返回-1
+     */
+    private static int lastSeqAfter(DictWordSeq dictWordSeq, int wordOrderInDict, LearningDict learningDict) {
+        int endSeq = Math.min(dictWordSeq.getMaxSeq(), learningDict.getDict().getWordCount());
+        for (int seq = endSeq; seq > wordOrderInDict; seq--) {
+            if (dictWordSeq.getWordId(seq) != null) {
+                return seq;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 核对序号数组是否与数据库一致：找到的单词的序号与数据库中的不同，或单词书已学完但数组比单词书的单词数短，说明数组已过期
+     */
+    private boolean isSeqIndexStale(String dictId, DictWordSeq dictWordSeq, int seq, int wordCount) {
+        if (seq != -1) {
+            return dictWordBo.getOrderOfWordId(dictId, dictWordSeq.getWordId(seq)) != seq;
+        }
+        return dictWordSeq.getMaxSeq() < wordCount;
+    }
+
     /**
      * 从用户的某本单词书中选出一个单词学习
      *
@@ -389,24 +444,32 @@ public class UserBo extends BaseBo<User> {
     }
 
     /**
-     * 判断某个单词是否已经被该用户从任何一本单词书中取出过
-     *
-     * @param learningDicts
-     * @return
+     * 已经被用户从某本单词书中取出过的单词（序号不超过该单词书的当前位置），以单词编号的位图表示
      */
-    private boolean isWordLearned(String wordId, List<LearningDict> learningDicts, LearningDict ignoreDict) {
-        for (LearningDict dict : learningDicts) {
-            if (dict.equals(ignoreDict)) { // 性能优化
-                continue;
-            }
-            int wordOrder = dictWordBo.getOrderOfWordId(dict.getDict().getId(), wordId);
+    private BitSet getTakenWordsOfDict(LearningDict learningDict) {
+        Integer currentWordSeq = learningDict.getCurrentWordSeq();
+        if (currentWordSeq == null) {
+            return new BitSet();
+        }
+        return dictWordSeqCache.get(learningDict.getDict().getId()).getOrdinalsUpTo(currentWordSeq);
+    }
 
-            Integer currentWordSeq = dict.getCurrentWordSeq();
-            if (wordOrder != -1 && wordOrder <= (currentWordSeq == null ? -1 : currentWordSeq)) {
-                return true;
+    /**
+     * 以新会话查询用户处于各种状态的单词（只读取已提交的数据，不受当前事务中尚未提交的修改影响）
+     *
+     * @param consumer 接收每个 (状态, 单词ID)
+     */
+    public void loadWordStatesOfUser(String userId, BiConsumer<UserWordState.Kind, String> consumer) {
+        try (Session session = openSession()) {
+            String sql = "select 'LEARNING', wordId from learning_word where userId = :userId " +
+                    "union all select 'MASTERED', wordId from mastered_word where userId = :userId";
+            Query<?> query = session.createNativeQuery(sql);
+            query.setParameter("userId", userId);
+            for (Object result : query.list()) {
+                Object[] tuple = (Object[]) result;
+                consumer.accept(UserWordState.Kind.valueOf(tuple[0].toString()), (String) tuple[1]);
             }
         }
-        return false;
     }
 
     public void deleteDeadUsers(int idleDays) throws IllegalAccessException {
@@ -536,6 +599,7 @@ public class UserBo extends BaseBo<User> {
                 query = session.createQuery("delete UserDbLog where userId = :userId")
                         .setParameter("userId", user.getId());
                 query.executeUpdate();
+                userDbSnapshotBo.deleteSnapshotsOfUser(user.getId());
 
                 // 将用户UGC转让给系统虚拟用户
                 query = session
@@ -589,6 +653,7 @@ public class UserBo extends BaseBo<User> {
 
                 // 删除用户记录
                 deleteEntity(user);
+                userWordStateCache.invalidate(user.getId());
                 return null;
             } catch (IllegalAccessException | IllegalArgumentException | HibernateException e) {
                 status.setRollbackOnly();
@@ -883,6 +948,106 @@ public class UserBo extends BaseBo<User> {
         return !logs.isEmpty();
     }
 
+    /**
+     * 客户端版本落后服务端超过此值时进行全量同步
+     */
+    public static final int INCREMENTAL_SYNC_MAX_VERSION_GAP = 10;
+
+    /**
+     * 全量同步时每批从数据库读取的行数
+     */
+    private static final int FULL_SYNC_FETCH_SIZE = 500;
+
+    /**
+     * 判断是否需要为客户端进行全量同步
+     *
+     * @param fromVersion 客户端本地数据库版本
+     * @return 若客户端版本过旧，或者服务端没有指定版本的日志（老日志可能被删除了），返回true；用户不存在时返回false
+     */
+    public boolean isFullSyncNeeded(String userId, int fromVersion) {
+        if (findById(userId) == null) {
+            return false;
+        }
+        int userDbVersion = userDbVersionDao.getUserDbVersion(getSession(), userId);
+        return userDbVersion > fromVersion + INCREMENTAL_SYNC_MAX_VERSION_GAP || !hasVersionLogs(userId, fromVersion);
+    }
+
+    /**
+     * 流式生成用户的全量同步日志，每生成一条日志即交给consumer处理，不在内存中构建完整的日志列表。
+     * 数据量大的表（learning_word, dict_word, mastered_word, user_oper, user_cow_dung_log）以游标分批读取
+     *
+     * @return 生成的日志条数
+     */
+    public int forEachUserFullDbLog(String userId, Consumer<UserDbLogDto> consumer) {
+        int userDbVersion = userDbVersionDao.getUserDbVersion(getSession(), userId);
+        int[] count = {0};
+        Consumer<UserDbLogDto> counter = log -> {
+            consumer.accept(log);
+            count[0]++;
+        };
+
+        // 生成学习中单词全量日志
+        learningWordBo.scrollLearningWordDtosOfUser(userId, FULL_SYNC_FETCH_SIZE, learningWord -> counter.accept(
+                makeFullSyncLog(userId, userDbVersion, "learning_word", learningWord.getUserId() + "-" + learningWord.getWordId(),
+                        learningWord, learningWord.getCreateTime(), learningWord.getUpdateTime())));
+
+        List<LearningDictDto> learningDicts = learningDictBo.getLearningDictDtosOfUser(userId);
+        for (LearningDictDto learningDict : learningDicts) {
+            counter.accept(makeFullSyncLog(userId, userDbVersion, "learning_dict", learningDict.getUserId() + "-" + learningDict.getDictId(),
+                    learningDict, learningDict.getCreateTime(), learningDict.getUpdateTime()));
+        }
+
+        // 生成用户学习步骤全量日志
+        List<UserStudyStepDto> userStudyStepDtos = userStudyStepBo.getUserStudyStepDtosOfUser(userId);
+        for (UserStudyStepDto stepDto : userStudyStepDtos) {
+            counter.accept(makeFullSyncLog(userId, userDbVersion, "user_study_step", userId + "-" + stepDto.getStudyStep(),
+                    stepDto, stepDto.getCreateTime(), stepDto.getUpdateTime()));
+        }
+
+        // 生成用户打卡记录全量日志
+        List<DakaDto> dakaDtos = dakaBo.getDakaDtosOfUser(userId);
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd");
+        for (DakaDto dakaDto : dakaDtos) {
+            counter.accept(makeFullSyncLog(userId, userDbVersion, "daka", userId + "-" + dateFormat.format(dakaDto.getForLearningDate()),
+                    dakaDto, dakaDto.getCreateTime(), dakaDto.getUpdateTime()));
+        }
+
+        // 生成用户操作记录全量日志
+        userOperBo.scrollUserOperDtosOfUser(userId, FULL_SYNC_FETCH_SIZE, operDto -> counter.accept(
+                makeFullSyncLog(userId, userDbVersion, "user_oper", operDto.getId(),
+                        operDto, operDto.getCreateTime(), operDto.getUpdateTime())));
+
+        // 生成用户错词(user_wrong_word)全量日志
+        List<WrongWordDto> wrongWordDtos = wrongWordBo.getWrongWordDtosOfUser(userId);
+        for (WrongWordDto wrongWordDto : wrongWordDtos) {
+            counter.accept(makeFullSyncLog(userId, userDbVersion, "user_wrong_word", userId + "-" + wrongWordDto.getWordId(),
+                    wrongWordDto, wrongWordDto.getCreateTime(), wrongWordDto.getUpdateTime()));
+        }
+
+        // 生成用户生词本(dict_word)全量日志
+        dictWordBo.scrollDictWordDtosOfUser(userId, FULL_SYNC_FETCH_SIZE, dictWordDto -> counter.accept(
+                makeFullSyncLog(userId, userDbVersion, "dict_word", dictWordDto.getDictId() + "-" + dictWordDto.getWordId(),
+                        dictWordDto, dictWordDto.getCreateTime(), dictWordDto.getUpdateTime())));
+
+        // 生成用户已掌握单词(mastered_word)全量日志
+        masteredWordBo.scrollMasteredWordDtosOfUser(userId, FULL_SYNC_FETCH_SIZE, masteredWordDto -> counter.accept(
+                makeFullSyncLog(userId, userDbVersion, "mastered_word", userId + "-" + masteredWordDto.getWordId(),
+                        masteredWordDto, masteredWordDto.getCreateTime(), masteredWordDto.getUpdateTime())));
+
+        // 生成用户魔法泡泡日志(user_cow_dung_log)全量日志
+        userCowDungLogBo.scrollUserCowDungLogDtosOfUser(userId, FULL_SYNC_FETCH_SIZE, dto -> counter.accept(
+                makeFullSyncLog(userId, userDbVersion, "user_cow_dung_log", dto.getId(),
+                        dto, dto.getCreateTime(), dto.getUpdateTime())));
+
+        return count[0];
+    }
+
+    private UserDbLogDto makeFullSyncLog(String userId, int userDbVersion, String tblName, String recordId, Object record,
+                                         Date createTime, Date updateTime) {
+        return new UserDbLogDto(Util.uuid(), userId, userDbVersion, "INSERT", tblName, recordId, JsonUtils.toJson(record),
+                createTime, updateTime);
+    }
+
     /**
      * 获取用户数据库日志
      *
@@ -900,171 +1065,16 @@ public class UserBo extends BaseBo<User> {
         // 获取用户数据库版本
         int userDbVersion = userDbVersionDao.getUserDbVersion(getSession(), userId);
 
-        if (userDbVersion > fromVersion + 10 || !hasVersionLogs(userId, fromVersion)) { // 若客户端版本过旧，或者服务端没有指定版本的日志（老日志可能被删除了），则全量同步
-            // 生成学习中单词全量日志
-            List<LearningWordDto> learningWords = learningWordBo.getLearningWordDtosOfUser(userId);
-            List<LearningDictDto> learningDicts = learningDictBo.getLearningDictDtosOfUser(userId);
+        if (userDbVersion > fromVersion + INCREMENTAL_SYNC_MAX_VERSION_GAP || !hasVersionLogs(userId, fromVersion)) { // 若客户端版本过旧，或者服务端没有指定版本的日志（老日志可能被删除了），则全量同步
             List<UserDbLogDto> logs = new ArrayList<>();
-            for (LearningWordDto learningWord : learningWords) {
-                UserDbLogDto log = new UserDbLogDto(Util.uuid(), userId, userDbVersion, "INSERT", "learning_word",
-                        learningWord.getUserId() + "-" + learningWord.getWordId(), JsonUtils.toJson(learningWord),
-                        learningWord.getCreateTime(),
-                        learningWord.getUpdateTime());
-                logs.add(log);
-            }
-            for (LearningDictDto learningDict : learningDicts) {
-                UserDbLogDto log = new UserDbLogDto(Util.uuid(), userId, userDbVersion, "INSERT", "learning_dict",
-                        learningDict.getUserId() + "-" + learningDict.getDictId(), JsonUtils.toJson(learningDict),
-                        learningDict.getCreateTime(),
-                        learningDict.getUpdateTime());
-                logs.add(log);
-            }
-
-            // 生成用户学习步骤全量日志
-            List<UserStudyStepDto> userStudyStepDtos = userStudyStepBo.getUserStudyStepDtosOfUser(userId);
-            for (UserStudyStepDto stepDto : userStudyStepDtos) {
-                // 创建日志条目
-                UserDbLogDto log = new UserDbLogDto(
-                        Util.uuid(),
-                        userId,
-                        userDbVersion,
-                        "INSERT",
-                        "user_study_step",
-                        userId + "-" + stepDto.getStudyStep(),
-                        JsonUtils.toJson(stepDto),
-                        stepDto.getCreateTime(),
-                        stepDto.getUpdateTime());
-                logs.add(log);
-            }
-
-            // 生成用户打卡记录全量日志
-            List<DakaDto> dakaDtos = dakaBo.getDakaDtosOfUser(userId);
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd");
-            for (DakaDto dakaDto : dakaDtos) {
-                // 创建日志条目
-                UserDbLogDto log = new UserDbLogDto(
-                        Util.uuid(),
-                        userId,
-                        userDbVersion,
-                        "INSERT",
-                        "daka",
-                        userId + "-" + dateFormat.format(dakaDto.getForLearningDate()),
-                        JsonUtils.toJson(dakaDto),
-                        dakaDto.getCreateTime(),
-                        dakaDto.getUpdateTime());
-                logs.add(log);
-            }
-
-            // 生成用户操作记录全量日志
-            List<UserOperDto> userOperDtos = userOperBo.getUserOperDtosOfUser(userId);
-            for (UserOperDto operDto : userOperDtos) {
-                // 创建日志条目
-                UserDbLogDto log = new UserDbLogDto(
-                        Util.uuid(),
-                        userId,
-                        userDbVersion,
-                        "INSERT",
-                        "user_oper",
-                        operDto.getId(),
-                        JsonUtils.toJson(operDto),
-                        operDto.getCreateTime(),
-                        operDto.getUpdateTime());
-                logs.add(log);
-            }
-
-            // 生成用户错词(user_wrong_word)全量日志
-            List<WrongWordDto> wrongWordDtos = wrongWordBo.getWrongWordDtosOfUser(userId);
-            for (WrongWordDto wrongWordDto : wrongWordDtos) {
-                UserDbLogDto log = new UserDbLogDto(
-                        Util.uuid(),
-                        userId,
-                        userDbVersion,
-                        "INSERT",
-                        "user_wrong_word",
-                        userId + "-" + wrongWordDto.getWordId(),
-                        JsonUtils.toJson(wrongWordDto),
-                        wrongWordDto.getCreateTime(),
-                        wrongWordDto.getUpdateTime());
-                logs.add(log);
-            }
-
-            // 生成用户生词本(dict_word)全量日志
-            List<DictWordDto> dictWordDtos = dictWordBo.getDictWordDtosOfUser(userId);
-            for (DictWordDto dictWordDto : dictWordDtos) {
-                UserDbLogDto log = new UserDbLogDto(
-                        Util.uuid(),
-                        userId,
-                        userDbVersion,
-                        "INSERT",
-                        "dict_word",
-                        dictWordDto.getDictId() + "-" + dictWordDto.getWordId(),
-                        JsonUtils.toJson(dictWordDto),
-                        dictWordDto.getCreateTime(),
-                        dictWordDto.getUpdateTime());
-                logs.add(log);
-            }
-
-            // 生成用户已掌握单词(mastered_word)全量日志
-            List<MasteredWordDto> masteredWordDtos = masteredWordBo.getMasteredWordDtosOfUser(userId);
-            for (MasteredWordDto masteredWordDto : masteredWordDtos) {
-                UserDbLogDto log = new UserDbLogDto(
-                        Util.uuid(),
-                        userId,
-                        userDbVersion,
-                        "INSERT",
-                        "mastered_word",
-                        userId + "-" + masteredWordDto.getWordId(),
-                        JsonUtils.toJson(masteredWordDto),
-                        masteredWordDto.getCreateTime(),
-                        masteredWordDto.getUpdateTime());
-                logs.add(log);
-            }
-
-            // 生成用户魔法泡泡日志(user_cow_dung_log)全量日志
-            List<UserCowDungLogDto> userCowDungLogDtos = userCowDungLogBo.getUserCowDungLogDtosOfUser(userId);
-            for (UserCowDungLogDto dto : userCowDungLogDtos) {
-                UserDbLogDto log = new UserDbLogDto(
-                        Util.uuid(),
-                        userId,
-                        userDbVersion,
-                        "INSERT",
-                        "user_cow_dung_log",
-                        dto.getId(),
-                        JsonUtils.toJson(dto),
-                        dto.getCreateTime(),
-                        dto.getUpdateTime());
-                logs.add(log);
-            }
+            forEachUserFullDbLog(userId, logs::add);
 
             logger.info("为用户{}进行全量同步, 共生成{}条同步日志, 服务端/客户端数据版本号为{}", userId, logs.size(),
                     userDbVersion + "-" + fromVersion);
 
             return logs;
         } else { // 增量同步
-            Session session = getSession();
-            String sql = "select e.id, e.userId, e.version, e.operate, e.tblName, e.recordId, e.record, e.createTime, e.updateTime FROM user_db_log e "
-                    +
-                    "WHERE e.userId= :userId and e.version > :fromVersion and e.createTime = " +
-                    "(SELECT MAX(e2.createTime) FROM user_db_log e2 WHERE e2.tblName = e.tblName and e2.recordId = e.recordId) order by e.version asc, e.createTime asc";
-            Query<?> query = session.createNativeQuery(sql);
-            query.setParameter("userId", userId);
-            query.setParameter("fromVersion", fromVersion);
-            List<?> results = query.list();
-            List<UserDbLogDto> logs = new ArrayList<>();
-            for (Object obj : results) {
-                Object[] values = (Object[]) obj;
-                UserDbLogDto log = new UserDbLogDto();
-                log.setId((String) values[0]);
-                log.setUserId((String) values[1]);
-                log.setVersion((Integer) values[2]);
-                log.setOperate((String) values[3]);
-                log.setTblName((String) values[4]);
-                log.setRecordId((String) values[5]);
-                log.setRecord((String) values[6]);
-                log.setCreateTime((Date) values[7]);
-                log.setUpdateTime((Date) values[8]);
-                logs.add(log);
-            }
+            List<UserDbLogDto> logs = userDbSnapshotBo.getLogsAfterVersion(userId, fromVersion);
 
             logger.info("为用户{}进行增量同步, 共生成{}条同步日志, 服务端/客户端数据版本号为{}", userId, logs.size(),
                     userDbVersion + "-" + fromVersion);
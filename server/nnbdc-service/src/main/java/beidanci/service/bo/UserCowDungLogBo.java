@@ -6,7 +6,9 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.hibernate.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -28,28 +30,42 @@ public class UserCowDungLogBo extends BaseBo<UserCowDungLog> {
      * 获取用户所有魔法泡泡日志的DTO列表，用于全量同步
      */
     public List<UserCowDungLogDto> getUserCowDungLogDtosOfUser(String userId) {
-        String sql = "select id, userId, delta, cowDung, theTime, reason, createTime, updateTime from user_cow_dung_log where userId = :userId order by createTime";
-        Query<?> query = getSession().createNativeQuery(sql);
+        Query<?> query = getSession().createNativeQuery(USER_COW_DUNG_LOG_DTO_SQL);
         query.setParameter("userId", userId);
         List<?> results = query.list();
 
         List<UserCowDungLogDto> userCowDungLogDtos = new ArrayList<>();
         for (Object result : results) {
-            Object[] tuple = (Object[]) result;
-            UserCowDungLogDto userCowDungLogDto = new UserCowDungLogDto();
-            userCowDungLogDto.setId((String) tuple[0]);
-            userCowDungLogDto.setUserId((String) tuple[1]);
-            userCowDungLogDto.setDelta((Integer) tuple[2]);
-            userCowDungLogDto.setCowDung((Integer) tuple[3]);
-            userCowDungLogDto.setTheTime((Date) tuple[4]);
-            userCowDungLogDto.setReason((String) tuple[5]);
-            userCowDungLogDto.setCreateTime((Date) tuple[6]);
-            userCowDungLogDto.setUpdateTime((Date) tuple[7]);
-            userCowDungLogDtos.add(userCowDungLogDto);
+            userCowDungLogDtos.add(toUserCowDungLogDto((Object[]) result));
         }
         return userCowDungLogDtos;
     }
 
+    /**
+     * 以游标分批遍历用户所有魔法泡泡日志的DTO，用于流式全量同步
+     *
+     * @return 遍历的记录数
+     */
+    public int scrollUserCowDungLogDtosOfUser(String userId, int fetchSize, Consumer<UserCowDungLogDto> consumer) {
+        return scrollNativeQuery(USER_COW_DUNG_LOG_DTO_SQL, fetchSize, tuple -> consumer.accept(toUserCowDungLogDto(tuple)),
+                new ImmutablePair<>("userId", userId));
+    }
+
+    private static final String USER_COW_DUNG_LOG_DTO_SQL = "select id, userId, delta, cowDung, theTime, reason, createTime, updateTime from user_cow_dung_log where userId = :userId order by createTime";
+
+    private UserCowDungLogDto toUserCowDungLogDto(Object[] tuple) {
+        UserCowDungLogDto userCowDungLogDto = new UserCowDungLogDto();
+        userCowDungLogDto.setId((String) tuple[0]);
+        userCowDungLogDto.setUserId((String) tuple[1]);
+        userCowDungLogDto.setDelta((Integer) tuple[2]);
+        userCowDungLogDto.setCowDung((Integer) tuple[3]);
+        userCowDungLogDto.setTheTime((Date) tuple[4]);
+        userCowDungLogDto.setReason((String) tuple[5]);
+        userCowDungLogDto.setCreateTime((Date) tuple[6]);
+        userCowDungLogDto.setUpdateTime((Date) tuple[7]);
+        return userCowDungLogDto;
+    }
+
     /**
      * 批量删除用户的user_cow_dung_log记录
      * @param userId 用户ID
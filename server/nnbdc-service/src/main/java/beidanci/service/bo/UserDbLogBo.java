@@ -1,6 +1,9 @@
 package beidanci.service.bo;
 import javax.annotation.PostConstruct;
 
+import java.sql.PreparedStatement;
+import java.util.List;
+
 import beidanci.service.dao.BaseDao;
 import beidanci.service.po.UserDbLog;
 import org.springframework.stereotype.Service;
@@ -14,4 +17,32 @@ public class UserDbLogBo extends BaseBo<UserDbLog> {
         setDao(new BaseDao<UserDbLog>() {
         });
     }
+
+    /**
+     * 以JDBC批量方式写入多条日志（配合 rewriteBatchedStatements 由驱动合并为一条多行INSERT）
+     */
+    public void batchCreate(List<UserDbLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO user_db_log (id, userId, version, operate, tblName, recordId, record, createTime, updateTime) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        getSession().doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (UserDbLog log : logs) {
+                    ps.setString(1, log.getId());
+                    ps.setString(2, log.getUserId());
+                    ps.setInt(3, log.getVersion());
+                    ps.setString(4, log.getOperate());
+                    ps.setString(5, log.getTable());
+                    ps.setString(6, log.getRecordId());
+                    ps.setString(7, log.getRecord());
+                    ps.setTimestamp(8, toTimestamp(log.getCreateTime()));
+                    ps.setTimestamp(9, toTimestamp(log.getUpdateTime()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+    }
 }
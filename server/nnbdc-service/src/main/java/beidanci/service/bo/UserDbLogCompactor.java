@@ -0,0 +1,64 @@
+package beidanci.service.bo;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import beidanci.service.dao.UserDbVersionDao;
+
+/**
+ * 后台压缩用户数据库日志：把已不可能用于增量同步的旧 user_db_log 合并到 user_db_snapshot 后删除。
+ * 客户端版本落后超过 {@link UserBo#INCREMENTAL_SYNC_MAX_VERSION_GAP} 时总是全量同步，所以只需保留最近这些版本的日志
+ */
+@Service
+public class UserDbLogCompactor {
+    private static final Logger logger = LoggerFactory.getLogger(UserDbLogCompactor.class);
+
+    @Autowired
+    private TransactionTemplate trxTemplate;
+
+    @Autowired
+    private UserDbVersionDao userDbVersionDao;
+
+    @Autowired
+    private UserDbSnapshotBo userDbSnapshotBo;
+
+    /**
+     * 每天凌晨压缩一次, 每个用户一个事务, 避免长事务锁住大量日志
+     */
+    @Scheduled(cron = "${userDbLog.compactCron:0 30 3 * * ?}")
+    public void compactAll() {
+        long startTime = System.currentTimeMillis();
+        List<Object[]> userVersions = trxTemplate.execute(status -> userDbVersionDao.getAllUserVersions());
+        if (userVersions == null) {
+            return;
+        }
+
+        int userCount = 0;
+        int deletedCount = 0;
+        for (Object[] userVersion : userVersions) {
+            String userId = (String) userVersion[0];
+            int version = ((Number) userVersion[1]).intValue();
+            int keepFromVersion = version - UserBo.INCREMENTAL_SYNC_MAX_VERSION_GAP;
+            if (keepFromVersion <= 0) {
+                continue;
+            }
+            try {
+                Integer deleted = trxTemplate.execute(status -> userDbSnapshotBo.foldAndPurgeOldLogs(userId, keepFromVersion));
+                if (deleted != null && deleted > 0) {
+                    userCount++;
+                    deletedCount += deleted;
+                }
+            } catch (Exception e) {
+                logger.error("压缩用户[{}]的数据库日志失败: {}", userId, e.getMessage(), e);
+            }
+        }
+        logger.info("用户数据库日志压缩完成, 涉及用户数: {}, 删除日志数: {}, 耗时: {}ms", userCount, deletedCount,
+                System.currentTimeMillis() - startTime);
+    }
+}
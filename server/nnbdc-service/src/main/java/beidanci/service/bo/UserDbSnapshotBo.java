@@ -0,0 +1,139 @@
+package beidanci.service.bo;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.hibernate.query.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import beidanci.api.model.UserDbLogDto;
+import beidanci.service.dao.BaseDao;
+import beidanci.service.po.UserDbLog;
+import beidanci.service.po.UserDbSnapshot;
+
+/**
+ * 用户数据库日志压缩快照：维护每个 (userId, tblName, recordId) 的最新日志，供增量同步使用
+ */
+@Service
+@Transactional(rollbackFor = Throwable.class)
+public class UserDbSnapshotBo extends BaseBo<UserDbSnapshot> {
+    private static final Logger logger = LoggerFactory.getLogger(UserDbSnapshotBo.class);
+
+    @PostConstruct
+    public void init() {
+        setDao(new BaseDao<UserDbSnapshot>() {
+        });
+    }
+
+    /**
+     * 用新日志覆盖对应记录的快照（与写 user_db_log 在同一事务中调用）。
+     * 以JDBC批量方式执行，同一记录有多条日志时按顺序执行，最后一条生效
+     */
+    public void applyLogs(List<UserDbLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO user_db_snapshot (userId, tblName, recordId, logId, version, operate, record, createTime, updateTime) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE logId = VALUES(logId), version = VALUES(version), operate = VALUES(operate), "
+                + "record = VALUES(record), createTime = VALUES(createTime), updateTime = VALUES(updateTime)";
+        getSession().doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (UserDbLog log : logs) {
+                    ps.setString(1, log.getUserId());
+                    ps.setString(2, log.getTable());
+                    ps.setString(3, log.getRecordId());
+                    ps.setString(4, log.getId());
+                    ps.setInt(5, log.getVersion());
+                    ps.setString(6, log.getOperate());
+                    ps.setString(7, log.getRecord());
+                    ps.setTimestamp(8, toTimestamp(log.getCreateTime()));
+                    ps.setTimestamp(9, toTimestamp(log.getUpdateTime()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * 获取用户在指定版本之后变更过的记录的最新日志（按版本号做索引范围扫描）
+     *
+     * @param fromVersion 从此版本开始，不包括此版本
+     */
+    public List<UserDbLogDto> getLogsAfterVersion(String userId, int fromVersion) {
+        String sql = "select logId, userId, version, operate, tblName, recordId, record, createTime, updateTime from user_db_snapshot "
+                + "where userId = :userId and version > :fromVersion order by version asc, createTime asc";
+        Query<?> query = getSession().createNativeQuery(sql);
+        query.setParameter("userId", userId);
+        query.setParameter("fromVersion", fromVersion);
+        List<?> results = query.list();
+
+        List<UserDbLogDto> logs = new ArrayList<>();
+        for (Object obj : results) {
+            Object[] values = (Object[]) obj;
+            UserDbLogDto log = new UserDbLogDto();
+            log.setId((String) values[0]);
+            log.setUserId((String) values[1]);
+            log.setVersion((Integer) values[2]);
+            log.setOperate((String) values[3]);
+            log.setTblName((String) values[4]);
+            log.setRecordId((String) values[5]);
+            log.setRecord((String) values[6]);
+            log.setCreateTime((Date) values[7]);
+            log.setUpdateTime((Date) values[8]);
+            logs.add(log);
+        }
+        return logs;
+    }
+
+    /**
+     * 把用户版本号小于 keepFromVersion 的 user_db_log 合并进快照，然后删除这些日志。
+     * 只有当日志比快照中已有的记录更新时才覆盖快照（version 列必须最后赋值，因为 MySQL 按顺序计算赋值表达式）
+     *
+     * @param keepFromVersion 版本号不小于此值的日志会被保留（增量同步需要用它们判断客户端版本是否有效）
+     * @return 删除的日志条数
+     */
+    public int foldAndPurgeOldLogs(String userId, int keepFromVersion) {
+        String foldSql = "INSERT INTO user_db_snapshot (userId, tblName, recordId, logId, version, operate, record, createTime, updateTime) "
+                + "SELECT e.userId, e.tblName, e.recordId, e.id, e.version, e.operate, e.record, e.createTime, e.updateTime FROM user_db_log e "
+                + "WHERE e.userId = :userId and e.version < :keepFromVersion order by e.version asc, e.createTime asc "
+                + "ON DUPLICATE KEY UPDATE "
+                + "logId = IF(VALUES(version) >= user_db_snapshot.version, VALUES(logId), user_db_snapshot.logId), "
+                + "operate = IF(VALUES(version) >= user_db_snapshot.version, VALUES(operate), user_db_snapshot.operate), "
+                + "record = IF(VALUES(version) >= user_db_snapshot.version, VALUES(record), user_db_snapshot.record), "
+                + "createTime = IF(VALUES(version) >= user_db_snapshot.version, VALUES(createTime), user_db_snapshot.createTime), "
+                + "updateTime = IF(VALUES(version) >= user_db_snapshot.version, VALUES(updateTime), user_db_snapshot.updateTime), "
+                + "version = IF(VALUES(version) >= user_db_snapshot.version, VALUES(version), user_db_snapshot.version)";
+        getSession().createNativeQuery(foldSql)
+                .setParameter("userId", userId)
+                .setParameter("keepFromVersion", keepFromVersion)
+                .executeUpdate();
+
+        String purgeSql = "DELETE FROM user_db_log WHERE userId = :userId and version < :keepFromVersion";
+        int deleted = getSession().createNativeQuery(purgeSql)
+                .setParameter("userId", userId)
+                .setParameter("keepFromVersion", keepFromVersion)
+                .executeUpdate();
+        if (deleted > 0) {
+            logger.info("用户[{}]的{}条旧数据库日志(版本<{})已合并到快照并删除", userId, deleted, keepFromVersion);
+        }
+        return deleted;
+    }
+
+    /**
+     * 删除用户的所有快照
+     */
+    public void deleteSnapshotsOfUser(String userId) {
+        getSession().createNativeQuery("delete from user_db_snapshot where userId = :userId")
+                .setParameter("userId", userId)
+                .executeUpdate();
+    }
+}
@@ -6,7 +6,9 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.hibernate.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -88,6 +90,24 @@ public class UserOperBo extends BaseBo<UserOper> {
         return result;
     }
 
+    /**
+     * 以游标分批遍历用户的所有操作历史记录DTO（用于流式全量同步）
+     *
+     * @return 遍历的记录数
+     */
+    public int scrollUserOperDtosOfUser(String userId, int fetchSize, Consumer<UserOperDto> consumer) {
+        String sql = "select id, userId, operType, operTime, remark, createTime, updateTime from user_oper where userId = :userId order by operTime desc";
+        return scrollNativeQuery(sql, fetchSize, tuple -> consumer.accept(new UserOperDto(
+                (String) tuple[0],
+                (String) tuple[1],
+                (String) tuple[2],
+                (Date) tuple[3],
+                (String) tuple[4],
+                (Date) tuple[5],
+                (Date) tuple[6]
+        )), new ImmutablePair<>("userId", userId));
+    }
+
     /**
      * 记录用户登录操作
      *
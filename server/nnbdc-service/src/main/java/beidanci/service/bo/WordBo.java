@@ -3,6 +3,8 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -30,6 +32,7 @@ import beidanci.service.po.User;
 import beidanci.service.po.Word;
 import beidanci.service.po.WrongWord;
 import beidanci.service.store.WordCache;
+import beidanci.service.store.WordIndex;
 import beidanci.service.util.SysParamUtil;
 import beidanci.util.Utils;
 @Service
@@ -75,6 +78,9 @@ public class WordBo extends BaseBo<Word> {
     public WordVo getWordVoById(String wordId, String[] excludeFields) {
         Word word = findById(wordId, false);
 
+        if (word == null) {
+            return null;
+        }
         WordVo vo = word2Vo(word, excludeFields);
         return vo;
     }
@@ -181,6 +187,7 @@ public class WordBo extends BaseBo<Word> {
             }
         }
 
+        wordCache.onWordsChanged(Collections.singletonList(word.getId()));
         return null;
     }
 
@@ -231,6 +238,29 @@ public class WordBo extends BaseBo<Word> {
         return wordDtos;
     }
 
+    /**
+     * 批量加载单词内存索引的数据（单词ID和拼写）
+     *
+     * @param wordIds 要加载的单词，为null时加载词库中所有单词
+     */
+    public List<WordIndex.Entry> loadWordIndexEntries(Collection<String> wordIds) {
+        if (wordIds != null && wordIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Query<?> wordQuery = getSession().createNativeQuery("select id, spell from word where spell is not null"
+                + (wordIds == null ? "" : " and id in (:ids)"));
+        if (wordIds != null) {
+            wordQuery.setParameterList("ids", wordIds);
+        }
+        List<?> results = wordQuery.list();
+        List<WordIndex.Entry> entries = new ArrayList<>(results.size());
+        for (Object result : results) {
+            Object[] tuple = (Object[]) result;
+            entries.add(new WordIndex.Entry((String) tuple[0], (String) tuple[1]));
+        }
+        return entries;
+    }
+
     public List<SimilarWordDto> getSimilarWordsOfDict(String dictId) {
         // 通用词典现在也有dict_word记录，统一查询逻辑
         String hql = "select sw.wordId, sw.similarWordId, sw.distance, w.spell from similar_word sw left join word w on w.id=sw.similarWordId where sw.wordId in (select dw.wordId from dict_word dw where dw.dictId=:dictId)";
@@ -1,5 +1,8 @@
 package beidanci.service.controller;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,9 +12,12 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import beidanci.api.Result;
+import beidanci.api.model.LeaderboardItemVo;
+import beidanci.api.model.PagedResults;
 import beidanci.service.bo.LearningDictBo;
 import beidanci.service.bo.LearningWordBo;
 import beidanci.service.bo.UserBo;
+import beidanci.service.po.Level;
 import beidanci.service.po.User;
 import beidanci.service.util.UserSorter;
 
@@ -34,6 +40,11 @@ public class MainPageController {
     @Autowired
     LearningDictBo learningDictBo;
 
+    /**
+     * 排行榜每次最多返回的用户数
+     */
+    private static final int MAX_LEADERBOARD_PAGE_SIZE = 100;
+
     @GetMapping("getUserRank.do")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public Result<Integer> getUserRank(@RequestParam("userId") String userId) throws IllegalAccessException {
@@ -50,4 +61,71 @@ public class MainPageController {
             return Result.fail("获取排名失败: " + e.getMessage());
         }
     }
+
+    /**
+     * 排行榜中排名 [fromRank, fromRank + count) 的用户
+     *
+     * @param type     排行榜类型，见 {@link UserSorter.RankType}
+     * @param fromRank 起始排名（从1开始）
+     * @param count    数量，最多 {@value #MAX_LEADERBOARD_PAGE_SIZE}
+     */
+    @GetMapping("getLeaderboard.do")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public Result<PagedResults<LeaderboardItemVo>> getLeaderboard(@RequestParam(value = "type", defaultValue = "SCORE") UserSorter.RankType type,
+                                                                  @RequestParam(value = "fromRank", defaultValue = "1") int fromRank,
+                                                                  @RequestParam(value = "count", defaultValue = "50") int count) {
+        int from = Math.max(fromRank, 1);
+        int size = Math.max(0, Math.min(count, MAX_LEADERBOARD_PAGE_SIZE));
+        return Result.success(makeLeaderboardPage(type, from, userSorter.getRecordsByRank(type, from, size)));
+    }
+
+    /**
+     * 排行榜中指定用户前后的用户（以该用户为中心）
+     *
+     * @param count 数量（包括该用户），最多 {@value #MAX_LEADERBOARD_PAGE_SIZE}
+     */
+    @GetMapping("getLeaderboardAroundUser.do")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public Result<PagedResults<LeaderboardItemVo>> getLeaderboardAroundUser(@RequestParam("userId") String userId,
+                                                                            @RequestParam(value = "type", defaultValue = "SCORE") UserSorter.RankType type,
+                                                                            @RequestParam(value = "count", defaultValue = "20") int count) {
+        User user = userBo.findById(userId);
+        if (user == null) {
+            return Result.fail("用户不存在");
+        }
+        int rank = userSorter.getRankOfUser(type, user.getUserName());
+        if (rank < 0) {
+            // 积分为零的用户不参与排名
+            return Result.success(new PagedResults<>(userSorter.getRankedUserCount(), new ArrayList<>()));
+        }
+        int size = Math.max(1, Math.min(count, MAX_LEADERBOARD_PAGE_SIZE));
+        int from = Math.max(1, rank - size / 2);
+        return Result.success(makeLeaderboardPage(type, from, userSorter.getRecordsByRank(type, from, size)));
+    }
+
+    private PagedResults<LeaderboardItemVo> makeLeaderboardPage(UserSorter.RankType type, int fromRank,
+                                                                List<UserSorter.UserScoreRecord> records) {
+        List<LeaderboardItemVo> items = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            UserSorter.UserScoreRecord record = records.get(i);
+            LeaderboardItemVo item = new LeaderboardItemVo();
+            item.setRank(fromRank + i);
+            item.setUserId(record.getUserId());
+            item.setDisplayNickName(record.getDisplayNickName());
+            item.setScore(record.getScore());
+            item.setDakaRatio(record.getDakaRatio());
+            item.setDakaDayCount(record.getDakaDayCount());
+            item.setContinuousDakaDayCount(record.getContinuousDakaDayCount());
+            item.setMaxContinuousDakaDayCount(record.getMaxContinuousDakaDayCount());
+            item.setMasteredWordCount(record.getMasteredWordCount());
+            Level level = record.getLevel();
+            if (level != null) {
+                item.setLevel(level.getLevel());
+                item.setLevelName(level.getName());
+                item.setLevelFigure(level.getFigure());
+            }
+            items.add(item);
+        }
+        return new PagedResults<>(userSorter.getRankedUserCount(), items);
+    }
 }
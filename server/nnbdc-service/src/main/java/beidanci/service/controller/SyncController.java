@@ -1,10 +1,10 @@
 package beidanci.service.controller;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -18,8 +18,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import beidanci.api.Result;
 import beidanci.api.model.UserDbLogDto;
@@ -27,7 +26,8 @@ import beidanci.service.bo.SyncBo;
 import beidanci.service.bo.UserBo;
 import beidanci.service.exception.RawWordDataErrorException;
 import beidanci.service.exception.DbVersionNotMatchException;
-import beidanci.util.CountingOutputStream;
+import beidanci.service.util.DictResBinaryCodec;
+import beidanci.service.util.JsonResponseWriter;
 
 @RestController
 public class SyncController {
@@ -39,6 +39,9 @@ public class SyncController {
     @Autowired
     SyncBo syncBo;
 
+    @Autowired
+    JsonResponseWriter jsonResponseWriter;
+
     /**
      * 获取用户数据库（服务端）的增量日志
      * 使用流式传输模式，支持gzip压缩和chunked传输
@@ -51,83 +54,41 @@ public class SyncController {
     @GetMapping("/getNewDbLogs.do")
     public void getNewDbLogs(int localDbVersion, @RequestParam("userId") String userId, 
                            HttpServletRequest request, HttpServletResponse response) throws IOException {
-        
-        // 设置响应类型，让 Spring Boot 自动处理 chunked 传输
-        response.setContentType("application/json;charset=UTF-8");
-        
-        // 检查客户端是否支持 gzip
-        String acceptEncoding = request.getHeader("Accept-Encoding");
-        boolean supportsGzip = acceptEncoding != null && acceptEncoding.contains("gzip");
-        if (supportsGzip) {
-            response.setHeader("Content-Encoding", "gzip");
-        }
-        
-        
         long startTime = System.currentTimeMillis();
         log.info("🔄 开始查询用户数据库日志, userId: {}, localDbVersion: {}", userId, localDbVersion);
         
         try {
-            // 查询用户数据库增量日志
-            List<UserDbLogDto> logs = userBo.getUserNewDbLogs(userId, localDbVersion);
-            log.info("📋 用户数据库增量日志查询完成, 数量: {}", logs.size());
-            
-            // 构建响应对象
-            Result<List<UserDbLogDto>> result = Result.success(logs);
-            
-            // 使用 chunked 模式流式写入 JSON，并统计传输大小
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
-            // 配置日期序列化为 ISO-8601 字符串格式，而不是时间戳
-            mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-            mapper.setDateFormat(new java.text.SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
-            
-            // 先计算原始JSON大小
-            String originalJson = mapper.writeValueAsString(result);
-            long originalSize = originalJson.getBytes("UTF-8").length;
-            
-            // 声明实际传输字节数变量
-            long actualBytes;
-            
-            // 对于数据库日志这种已知大小的响应，使用 Content-Length 模式
-            // 这样可以提供准确的进度显示和完整性验证
-            if (supportsGzip) {
-                // 使用 gzip 压缩时，由于压缩后大小未知，使用 chunked 模式
-                log.info("📦 使用 chunked 模式 + gzip 压缩传输");
-                
-                CountingOutputStream countingOut = new CountingOutputStream(response.getOutputStream());
-                try (GZIPOutputStream gzipOut = new GZIPOutputStream(countingOut)) {
-                    mapper.writeValue(gzipOut, result);
-                    gzipOut.flush();
-                }
-                actualBytes = countingOut.getByteCount();
+            // 客户端可通过 Accept 头请求紧凑的二进制格式
+            boolean columnar = DictResBinaryCodec.isAccepted(request);
+            JsonResponseWriter.WriteStats stats;
+            int logCount;
+            if (userBo.isFullSyncNeeded(userId, localDbVersion)) {
+                // 全量同步的数据量可能很大, 边查询边写入输出流, 不在内存中构建完整的日志列表
+                log.info("📦 全量同步, 使用 chunked 模式流式传输");
+                int[] count = {0};
+                stats = columnar
+                        ? jsonResponseWriter.writeEncoded(DictResBinaryCodec.MEDIA_TYPE, out -> count[0] = encodeFullDbLogs(userId, out), request, response)
+                        : jsonResponseWriter.writeStreaming(gen -> count[0] = writeFullDbLogs(userId, gen), request, response);
+                logCount = count[0];
             } else {
-                // 不压缩时使用 Content-Length 模式
-                response.setHeader("Content-Length", String.valueOf(originalSize));
-                log.info("📦 使用 Content-Length 模式传输");
-                
-                mapper.writeValue(response.getOutputStream(), result);
-                actualBytes = originalSize; // 使用原始大小作为实际传输大小
+                // 查询用户数据库增量日志
+                List<UserDbLogDto> logs = userBo.getUserNewDbLogs(userId, localDbVersion);
+                log.info("📋 用户数据库增量日志查询完成, 数量: {}", logs.size());
+                stats = columnar
+                        ? jsonResponseWriter.writeEncoded(DictResBinaryCodec.MEDIA_TYPE, out -> DictResBinaryCodec.encodeUserDbLogs(logs, out), request, response)
+                        : jsonResponseWriter.write(Result.success(logs), request, response);
+                logCount = logs.size();
             }
             
-            // 获取实际传输的字节数
-            double actualSizeMB = actualBytes / (1024.0 * 1024.0);
-            double originalSizeMB = originalSize / (1024.0 * 1024.0);
-            
-            // 计算压缩率
-            double compressionRatio = 0.0;
-            if (supportsGzip && originalSize > 0) {
-                compressionRatio = (1.0 - (double) actualBytes / originalSize) * 100.0;
-            }
-            
-            long endTime = System.currentTimeMillis();
-            long duration = endTime - startTime;
-            
-            if (supportsGzip) {
+            long duration = System.currentTimeMillis() - startTime;
+            double actualSizeMB = stats.getTransferredBytes() / (1024.0 * 1024.0);
+            double originalSizeMB = stats.getOriginalBytes() / (1024.0 * 1024.0);
+            if (stats.isGzip()) {
                 log.info("✅ 用户数据库日志查询完成, userId: {}, localDbVersion: {}, 耗时: {}ms, 原始大小: {}MB ({}字节), 压缩后: {}MB ({}字节), 压缩率: {}%, 日志数量: {}", 
-                    userId, localDbVersion, duration, String.format("%.2f", originalSizeMB), originalSize, String.format("%.2f", actualSizeMB), actualBytes, String.format("%.1f", compressionRatio), logs.size());
+                    userId, localDbVersion, duration, String.format("%.2f", originalSizeMB), stats.getOriginalBytes(), String.format("%.2f", actualSizeMB), stats.getTransferredBytes(), String.format("%.1f", stats.getCompressionRatio()), logCount);
             } else {
                 log.info("✅ 用户数据库日志查询完成, userId: {}, localDbVersion: {}, 耗时: {}ms, 传输大小: {}MB ({}字节), 日志数量: {}", 
-                    userId, localDbVersion, duration, String.format("%.2f", actualSizeMB), actualBytes, logs.size());
+                    userId, localDbVersion, duration, String.format("%.2f", actualSizeMB), stats.getTransferredBytes(), logCount);
             }
             
         } catch (IOException e) {
@@ -138,13 +99,7 @@ public class SyncController {
             
             // 返回错误响应
             try {
-                Result<Object> errorResult = Result.fail(e.getMessage());
-                ObjectMapper mapper = new ObjectMapper();
-                String errorJson = mapper.writeValueAsString(errorResult);
-                
-                PrintWriter writer = response.getWriter();
-                writer.write(errorJson);
-                writer.flush();
+                jsonResponseWriter.writeError(e.getMessage(), response);
             } catch (IOException ex) {
                 log.error("❌ 生成错误响应失败", ex);
                 response.setStatus(500);
@@ -152,6 +107,58 @@ public class SyncController {
         }
     }
 
+    /**
+     * 流式输出用户的全量同步日志：逐条从数据库游标读取并直接写入输出流，堆内存占用与用户数据量无关。
+     * 输出的JSON结构与 Result&lt;List&lt;UserDbLogDto&gt;&gt; 一致
+     *
+     * @return 输出的日志条数
+     */
+    private int writeFullDbLogs(String userId, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("code", "0000");
+        gen.writeNullField("msg");
+        gen.writeArrayFieldStart("data");
+        int logCount;
+        try {
+            logCount = userBo.forEachUserFullDbLog(userId, dbLog -> {
+                try {
+                    gen.writeObject(dbLog);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        gen.writeEndArray();
+        gen.writeBooleanField("success", true);
+        gen.writeEndObject();
+        return logCount;
+    }
+
+    /**
+     * 以二进制格式流式输出用户的全量同步日志（见 {@link DictResBinaryCodec}）
+     *
+     * @return 输出的日志条数
+     */
+    private int encodeFullDbLogs(String userId, OutputStream out) throws IOException {
+        DictResBinaryCodec.UserDbLogEncoder encoder = new DictResBinaryCodec.UserDbLogEncoder(out);
+        int logCount;
+        try {
+            logCount = userBo.forEachUserFullDbLog(userId, dbLog -> {
+                try {
+                    encoder.add(dbLog);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        encoder.finish();
+        return logCount;
+    }
+
     /**
      * 用户把本地数据库的最新变更，同步到服务端数据库
      *
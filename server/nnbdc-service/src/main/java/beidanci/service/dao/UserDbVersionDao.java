@@ -33,12 +33,13 @@ public class UserDbVersionDao extends BaseDao<UserDbVersion> {
      * - 生成数据库日志时获取版本号
      * - 其他不涉及写操作的只读场景
      * 
-     * 如果需要在事务中修改数据（如数据同步），请使用 getUserDbVersionWithLock 方法加锁
+     * 如果需要在事务中修改数据（如数据同步），应先通过 UserSyncLockManager 串行化同一用户的同步，
+     * 并以 updateUserDbVersionCAS 作为最终校验
      *
      * @param session Hibernate会话
      * @param userId  用户ID
      * @return 数据库版本号，若不存在则返回初始版本
-     * @see #getUserDbVersionWithLock(Session, String) 带锁的查询方法，用于事务中的修改操作
+     * @see #updateUserDbVersionCAS(Session, String, int, int)
      */
     public int getUserDbVersion(Session session, String userId) {
         String hql = "FROM UserDbVersion WHERE user.id = :userId";
@@ -50,26 +51,6 @@ public class UserDbVersionDao extends BaseDao<UserDbVersion> {
                 .orElse(Constants.USER_DB_VERSION_INITIAL);
     }
 
-    /**
-     * 获取用户数据库版本（使用 FOR UPDATE 行锁，防止并发冲突）
-     * 
-     * 注意：此方法会对版本号记录加排他锁，直到事务提交或回滚才会释放
-     * 这样可以确保同一时刻只有一个事务能够修改该用户的数据库版本
-     *
-     * @param session Hibernate会话
-     * @param userId  用户ID
-     * @return 数据库版本号，若不存在则返回0
-     */
-    public int getUserDbVersionWithLock(Session session, String userId) {
-        // 使用原生SQL的 FOR UPDATE 子句来加行锁
-        String sql = "SELECT version FROM user_db_version WHERE userId = :userId FOR UPDATE";
-        Integer version = (Integer) session.createNativeQuery(sql)
-                .setParameter("userId", userId)
-                .uniqueResult();
-        
-        return version != null ? version : Constants.USER_DB_VERSION_INITIAL;
-    }
-
     /**
      * 使用 CAS (Compare-And-Swap) 原子更新用户数据库版本
      * 
@@ -150,7 +131,9 @@ public class UserDbVersionDao extends BaseDao<UserDbVersion> {
     }
 
     /**
-     * 删除异常日志
+     * 删除异常日志，并把快照中被异常日志覆盖的记录恢复为剩余日志中最新的一条（版本号不大于当前版本）。
+     * 已合并进快照的旧日志不在 user_db_log 中，这样的记录无法恢复，从快照中删除：其旧状态的版本号低于压缩保留的版本，
+     * 版本号更低的客户端会进行全量同步，不依赖快照
      */
     public void deleteInvalidLogs(String userId, Integer currentVersion) {
         String hql = "DELETE FROM UserDbLog udl WHERE udl.user.id = :userId AND udl.version > :currentVersion";
@@ -158,5 +141,22 @@ public class UserDbVersionDao extends BaseDao<UserDbVersion> {
         query.setParameter("userId", userId);
         query.setParameter("currentVersion", currentVersion);
         query.executeUpdate();
+
+        // 按版本号升序覆盖，最后一条（最新的）生效
+        String restoreSql = "INSERT INTO user_db_snapshot (userId, tblName, recordId, logId, version, operate, record, createTime, updateTime) "
+                + "SELECT e.userId, e.tblName, e.recordId, e.id, e.version, e.operate, e.record, e.createTime, e.updateTime "
+                + "FROM user_db_log e JOIN user_db_snapshot s ON s.userId = e.userId AND s.tblName = e.tblName AND s.recordId = e.recordId "
+                + "WHERE e.userId = :userId AND s.version > :currentVersion ORDER BY e.version ASC, e.createTime ASC "
+                + "ON DUPLICATE KEY UPDATE logId = VALUES(logId), operate = VALUES(operate), record = VALUES(record), "
+                + "createTime = VALUES(createTime), updateTime = VALUES(updateTime), version = VALUES(version)";
+        getSession().createNativeQuery(restoreSql)
+                .setParameter("userId", userId)
+                .setParameter("currentVersion", currentVersion)
+                .executeUpdate();
+
+        getSession().createNativeQuery("DELETE FROM user_db_snapshot WHERE userId = :userId AND version > :currentVersion")
+                .setParameter("userId", userId)
+                .setParameter("currentVersion", currentVersion)
+                .executeUpdate();
     }
 }
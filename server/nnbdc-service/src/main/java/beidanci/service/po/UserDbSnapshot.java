@@ -0,0 +1,82 @@
+package beidanci.service.po;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * 用户数据库日志的压缩快照表：每个 (userId, tblName, recordId) 只保留最新的一条日志，
+ * 增量同步时按版本号做一次索引范围扫描即可，不再需要对 user_db_log 做相关子查询
+ */
+@Entity
+@Table(name = "user_db_snapshot", indexes = {
+    @Index(name = "idx_user_version", columnList = "userId, version")
+})
+public class UserDbSnapshot extends Po {
+
+    @Id
+    private UserDbSnapshotId id;
+
+    /**
+     * 最新一条日志的ID
+     */
+    @Column(name = "logId", length = 32, nullable = false)
+    private String logId;
+
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+    @Column(name = "operate", length = 20, nullable = false)
+    private String operate;
+
+    /**
+     * 记录内容，json格式
+     */
+    @Column(name = "record", columnDefinition = "TEXT", nullable = false)
+    private String record;
+
+    public UserDbSnapshot() {
+    }
+
+    public UserDbSnapshotId getId() {
+        return id;
+    }
+
+    public void setId(UserDbSnapshotId id) {
+        this.id = id;
+    }
+
+    public String getLogId() {
+        return logId;
+    }
+
+    public void setLogId(String logId) {
+        this.logId = logId;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public String getOperate() {
+        return operate;
+    }
+
+    public void setOperate(String operate) {
+        this.operate = operate;
+    }
+
+    public String getRecord() {
+        return record;
+    }
+
+    public void setRecord(String record) {
+        this.record = record;
+    }
+}
@@ -0,0 +1,76 @@
+package beidanci.service.po;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+@Embeddable
+public class UserDbSnapshotId implements java.io.Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Column(name = "userId", length = 32, nullable = false)
+    private String userId;
+
+    @Column(name = "tblName", length = 50, nullable = false)
+    private String table;
+
+    @Column(name = "recordId", length = 131, nullable = false)
+    private String recordId;
+
+    public UserDbSnapshotId() {
+    }
+
+    public UserDbSnapshotId(String userId, String table, String recordId) {
+        this.userId = userId;
+        this.table = table;
+        this.recordId = recordId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public String getRecordId() {
+        return recordId;
+    }
+
+    public void setRecordId(String recordId) {
+        this.recordId = recordId;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if ((this == other))
+            return true;
+        if ((other == null))
+            return false;
+        if (!(other instanceof UserDbSnapshotId))
+            return false;
+        UserDbSnapshotId castOther = (UserDbSnapshotId) other;
+
+        return userId.equals(castOther.userId) && table.equals(castOther.table) && recordId.equals(castOther.recordId);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 17;
+
+        result = 37 * result + userId.hashCode();
+        result = 37 * result + table.hashCode();
+        result = 37 * result + recordId.hashCode();
+        return result;
+    }
+
+}
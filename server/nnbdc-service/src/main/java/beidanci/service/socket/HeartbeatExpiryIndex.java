@@ -0,0 +1,97 @@
+package beidanci.service.socket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 按心跳截止时间分桶的连接过期索引<br>
+ * 时间轴按桶宽切分，每个连接挂在其截止时间（最后心跳时间 + 超时时间）所在的桶里。收到心跳只更新连接的最后心跳时间，
+ * 不移动桶；桶到期时逐个复查其中的连接，确实超时的返回给调用方关闭，否则按新的截止时间挂到后面的桶里。
+ * 每次检查只处理已到期的桶，每个连接大约每个超时周期才被检查一次。时间取自 System.nanoTime，不受系统时钟调整影响
+ */
+class HeartbeatExpiryIndex {
+    private final long timeoutNanos;
+    private final long bucketNanos;
+
+    /**
+     * 桶号 -> 截止时间落在该桶内的连接。桶数约为 超时时间/桶宽，检查时直接遍历桶号即可
+     */
+    private final Map<Long, Set<SocketClientData>> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * 累计复查的连接数
+     */
+    private final AtomicLong checkedCount = new AtomicLong();
+
+    HeartbeatExpiryIndex(long timeoutMs, long bucketMs) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.bucketNanos = TimeUnit.MILLISECONDS.toNanos(bucketMs);
+    }
+
+    /**
+     * 登记新连接
+     */
+    void add(SocketClientData client) {
+        file(client, client.getLastHeartBeatNanos());
+    }
+
+    /**
+     * 挂到截止时间所在的桶：桶号取截止时间除以桶宽向上取整，保证桶到期时截止时间已过
+     */
+    private void file(SocketClientData client, long lastHeartBeatNanos) {
+        long bucket = Math.floorDiv(lastHeartBeatNanos + timeoutNanos - 1, bucketNanos) + 1;
+        // compute 与检查线程的 remove 互斥，不会把连接加进已被取走的桶
+        buckets.compute(bucket, (k, clients) -> {
+            Set<SocketClientData> result = clients != null ? clients : ConcurrentHashMap.newKeySet();
+            result.add(client);
+            return result;
+        });
+    }
+
+    /**
+     * 取走所有已到期的桶，返回其中心跳超时的连接（由单个检查线程调用）
+     *
+     * @param isLive 连接是否仍然有效，已关闭的连接直接丢弃
+     */
+    List<SocketClientData> pollExpired(long nowNanos, Predicate<SocketClientData> isLive) {
+        long currentBucket = Math.floorDiv(nowNanos, bucketNanos);
+        List<SocketClientData> expired = new ArrayList<>();
+        for (Long bucket : buckets.keySet()) {
+            if (bucket > currentBucket) {
+                continue;
+            }
+            Set<SocketClientData> clients = buckets.remove(bucket);
+            if (clients == null) {
+                continue;
+            }
+            for (SocketClientData client : clients) {
+                if (!isLive.test(client)) {
+                    continue;
+                }
+                checkedCount.incrementAndGet();
+                long lastHeartBeatNanos = client.getLastHeartBeatNanos();
+                if (nowNanos - lastHeartBeatNanos >= timeoutNanos) {
+                    expired.add(client);
+                } else {
+                    // 新的截止时间晚于现在，必然落在当前桶之后，不会在本次检查中被再次取出
+                    file(client, lastHeartBeatNanos);
+                }
+            }
+        }
+        return expired;
+    }
+
+    long getCheckedCount() {
+        return checkedCount.get();
+    }
+
+    int getBucketCount() {
+        return buckets.size();
+    }
+}
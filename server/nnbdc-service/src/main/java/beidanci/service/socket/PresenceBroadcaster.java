@@ -0,0 +1,198 @@
+package beidanci.service.socket;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.corundumstudio.socketio.SocketIONamespace;
+
+import beidanci.api.model.UserVo;
+import beidanci.service.util.Util;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 合并广播用户上下线信息<br>
+ * 以前每次上线、下线、断线都立即向所有客户端广播 userOnline/userOffline 和 onlineCount，重连潮时消息量是 O(N²)。
+ * 现在只记录变化，每个合并窗口向所有客户端广播一次 presence 事件（窗口内上线的用户、下线的用户、在线人数）。
+ * 同一用户在窗口内先上线后下线（或反之）相互抵消
+ */
+@Component
+public class PresenceBroadcaster {
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    /**
+     * 一个 presence 事件中最多列出的用户数，超过则只广播在线人数（重连潮时列出所有用户没有意义）
+     */
+    @Value("${presence.maxNames:50}")
+    private int maxNames;
+
+    private SocketIONamespace namespace;
+    private IntSupplier onlineCountSupplier;
+
+    /**
+     * 窗口内状态有变化的用户：userId -> 变化
+     */
+    private Map<String, Change> changes = new LinkedHashMap<>();
+
+    /**
+     * 窗口内是否需要广播在线人数
+     */
+    private boolean countChanged;
+
+    /**
+     * 窗口内原本要广播的次数（合并前）
+     */
+    private int requestedBroadcasts;
+
+    private Counter requestedCounter;
+    private Counter sentCounter;
+    private Counter savedMessagesCounter;
+
+    private static final class Change {
+        private final String nickName;
+        /**
+         * 窗口开始前是否在线
+         */
+        private final boolean onlineBefore;
+        private boolean online;
+
+        private Change(String nickName, boolean online) {
+            this.nickName = nickName;
+            this.onlineBefore = !online;
+            this.online = online;
+        }
+    }
+
+    /**
+     * 广播给客户端的 presence 事件
+     */
+    public static class PresenceEvent {
+        private final List<String> online;
+        private final List<String> offline;
+        private final int onlineCount;
+
+        PresenceEvent(List<String> online, List<String> offline, int onlineCount) {
+            this.online = online;
+            this.offline = offline;
+            this.onlineCount = onlineCount;
+        }
+
+        /**
+         * 窗口内上线的用户昵称（用户过多时为null）
+         */
+        public List<String> getOnline() {
+            return online;
+        }
+
+        /**
+         * 窗口内下线的用户昵称（用户过多时为null）
+         */
+        public List<String> getOffline() {
+            return offline;
+        }
+
+        public int getOnlineCount() {
+            return onlineCount;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        requestedCounter = Counter.builder("nnbdc.presence.broadcasts.requested")
+                .description("合并前的上下线/在线人数广播次数")
+                .register(meterRegistry);
+        sentCounter = Counter.builder("nnbdc.presence.broadcasts.sent")
+                .description("实际发出的presence广播次数")
+                .register(meterRegistry);
+        savedMessagesCounter = Counter.builder("nnbdc.presence.messages.saved")
+                .description("合并广播节省的发往客户端的消息数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 由 SocketService 在 socket server 启动后调用
+     */
+    public synchronized void attach(SocketIONamespace namespace, IntSupplier onlineCountSupplier) {
+        this.namespace = namespace;
+        this.onlineCountSupplier = onlineCountSupplier;
+    }
+
+    public synchronized void userOnline(UserVo user) {
+        userChanged(user, true);
+    }
+
+    public synchronized void userOffline(UserVo user) {
+        userChanged(user, false);
+    }
+
+    /**
+     * 在线人数可能有变化
+     */
+    public synchronized void onlineCountChanged() {
+        countChanged = true;
+        requestedBroadcasts++;
+    }
+
+    private void userChanged(UserVo user, boolean online) {
+        Change change = changes.get(user.getId());
+        if (change == null) {
+            changes.put(user.getId(), new Change(Util.getNickNameOfUser(user), online));
+        } else {
+            change.online = online;
+        }
+        countChanged = true;
+        // 以前上下线各要广播一次用户事件和一次在线人数
+        requestedBroadcasts += 2;
+    }
+
+    /**
+     * 每个合并窗口广播一次
+     */
+    @Scheduled(fixedDelayString = "${presence.windowMs:500}")
+    public void flush() {
+        SocketIONamespace target;
+        Map<String, Change> pending;
+        int requested;
+        int onlineCount;
+        synchronized (this) {
+            if (namespace == null || !countChanged) {
+                return;
+            }
+            target = namespace;
+            pending = changes;
+            requested = requestedBroadcasts;
+            onlineCount = onlineCountSupplier.getAsInt();
+            changes = new LinkedHashMap<>();
+            countChanged = false;
+            requestedBroadcasts = 0;
+        }
+
+        List<String> online = new ArrayList<>();
+        List<String> offline = new ArrayList<>();
+        for (Change change : pending.values()) {
+            if (change.online != change.onlineBefore) {
+                (change.online ? online : offline).add(change.nickName);
+            }
+        }
+        boolean listNames = online.size() + offline.size() <= maxNames;
+        target.getBroadcastOperations().sendEvent("presence",
+                new PresenceEvent(listNames ? online : null, listNames ? offline : null, onlineCount));
+
+        int clientCount = target.getAllClients().size();
+        requestedCounter.increment(requested);
+        sentCounter.increment();
+        savedMessagesCounter.increment((double) (requested - 1) * clientCount);
+    }
+}
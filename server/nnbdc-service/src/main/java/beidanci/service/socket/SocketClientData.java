@@ -2,8 +2,6 @@ package beidanci.service.socket;
 
 import com.corundumstudio.socketio.SocketIOClient;
 
-import java.util.Date;
-
 /**
  * 保存SocketClient相关信息
  *
@@ -12,13 +10,16 @@ import java.util.Date;
 public class SocketClientData {
     private SocketIOClient socketIOClient;
 
-    public SocketClientData(SocketIOClient socketIOClient, Date lastHeartBeatTime) {
+    public SocketClientData(SocketIOClient socketIOClient) {
         super();
         this.socketIOClient = socketIOClient;
-        this.lastHeartBeatTime = lastHeartBeatTime;
+        this.lastHeartBeatNanos = System.nanoTime();
     }
 
-    Date lastHeartBeatTime;
+    /**
+     * 最后一次收到心跳的时间（System.nanoTime），心跳线程写、检查线程读
+     */
+    private volatile long lastHeartBeatNanos;
 
     public SocketIOClient getSocketIOClient() {
         return socketIOClient;
@@ -29,11 +30,11 @@ public class SocketClientData {
 
     }
 
-    public Date getLastHeartBeatTime() {
-        return lastHeartBeatTime;
+    public long getLastHeartBeatNanos() {
+        return lastHeartBeatNanos;
     }
 
-    public void setLastHeartBeatTime(Date lastHeartBeatTime) {
-        this.lastHeartBeatTime = lastHeartBeatTime;
+    public void setLastHeartBeatNanos(long lastHeartBeatNanos) {
+        this.lastHeartBeatNanos = lastHeartBeatNanos;
     }
 }
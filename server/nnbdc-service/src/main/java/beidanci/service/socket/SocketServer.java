@@ -1,14 +1,14 @@
 package beidanci.service.socket;
 
-import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.PostConstruct;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +26,10 @@ import beidanci.service.socket.system.MySystem;
 import beidanci.service.socket.system.chat.Chat;
 import beidanci.service.socket.system.game.russia.Russia;
 import beidanci.service.util.SysParamUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Component
 public class SocketServer {
@@ -37,6 +41,18 @@ public class SocketServer {
     private final Map<UUID, SocketClientData> socketIOClients = new ConcurrentHashMap<>();
     private final Timer timer;
 
+    /**
+     * 15秒没有听到客户端心跳，即杀掉连接；每5秒检查一次
+     */
+    private static final long HEARTBEAT_TIMEOUT_MS = 15 * 1000;
+    private static final long HEARTBEAT_CHECK_PERIOD_MS = 5 * 1000;
+
+    private final HeartbeatExpiryIndex heartbeatExpiryIndex =
+            new HeartbeatExpiryIndex(HEARTBEAT_TIMEOUT_MS, HEARTBEAT_CHECK_PERIOD_MS);
+
+    private Counter openedCounter;
+    private Counter expiredCounter;
+
     @Autowired
     Russia russia;
 
@@ -52,35 +68,59 @@ public class SocketServer {
     @Autowired
     UserBo userBo;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    PresenceBroadcaster presenceBroadcaster;
+
     public SocketServer() {
         timer = new Timer();
-        timer.scheduleAtFixedRate(new CheckHeartBeatTask(), 0, 5 * 1000);
+        timer.scheduleAtFixedRate(new CheckHeartBeatTask(), 0, HEARTBEAT_CHECK_PERIOD_MS);
+    }
+
+    @PostConstruct
+    public void initMetrics() {
+        Gauge.builder("nnbdc.socket.connections", socketIOClients, Map::size)
+                .description("当前的socket连接数")
+                .register(meterRegistry);
+        openedCounter = Counter.builder("nnbdc.socket.connections.opened")
+                .description("新建的socket连接数")
+                .register(meterRegistry);
+        expiredCounter = Counter.builder("nnbdc.socket.heartbeat.expired")
+                .description("因心跳超时被关闭的连接数")
+                .register(meterRegistry);
+        FunctionCounter.builder("nnbdc.socket.heartbeat.checked", heartbeatExpiryIndex,
+                        HeartbeatExpiryIndex::getCheckedCount)
+                .description("心跳检查时复查的连接数（只复查截止时间已到的连接）")
+                .register(meterRegistry);
+        Gauge.builder("nnbdc.socket.heartbeat.buckets", heartbeatExpiryIndex, HeartbeatExpiryIndex::getBucketCount)
+                .description("心跳过期索引中的桶数")
+                .register(meterRegistry);
     }
 
+    /**
+     * 只检查心跳截止时间已到的连接（见 {@link HeartbeatExpiryIndex}），而不是每次遍历所有连接
+     */
     private class CheckHeartBeatTask extends TimerTask {
 
         @Override
         public void run() {
-
-            try {
-                for (Iterator<SocketClientData> i = socketIOClients.values().iterator(); i.hasNext(); ) {
-                    SocketClientData socketClientData = i.next();
-                    SocketIOClient socketClient = socketClientData.getSocketIOClient();
-                    Date lastHeartBeatTime = socketClientData.getLastHeartBeatTime();
-
-                    // 15秒没有听到客户端心跳，即杀掉连接
-                    if (new Date().getTime() - lastHeartBeatTime.getTime() > 15 * 1000) {
-                        log.debug(String.format("心跳超时，关闭连接: %s|%s", socketClient.getRemoteAddress(),
-                                socketClient.getSessionId()));
-                        socketClient.disconnect();
-                        i.remove();
-
-                        // 通知上层服务连接已经关闭了
-                        socketService.onConnnectionBroken(socketClient.getSessionId(), "心跳超时");
-                    }
+            for (SocketClientData socketClientData : heartbeatExpiryIndex.pollExpired(System.nanoTime(),
+                    data -> socketIOClients.get(data.getSocketIOClient().getSessionId()) == data)) {
+                SocketIOClient socketClient = socketClientData.getSocketIOClient();
+                try {
+                    log.debug(String.format("心跳超时，关闭连接: %s|%s", socketClient.getRemoteAddress(),
+                            socketClient.getSessionId()));
+                    socketClient.disconnect();
+                    socketIOClients.remove(socketClient.getSessionId(), socketClientData);
+                    expiredCounter.increment();
+
+                    // 通知上层服务连接已经关闭了
+                    socketService.onConnnectionBroken(socketClient.getSessionId(), "心跳超时");
+                } catch (IllegalAccessException | RuntimeException e) {
+                    log.error("", e);
                 }
-            } catch (IllegalAccessException e) {
-                log.error("", e);
             }
         }
 
@@ -89,8 +129,7 @@ public class SocketServer {
     public void onHeartBeatReceived(SocketIOClient client) {
         SocketClientData socketClientData = socketIOClients.get(client.getSessionId());
         if (socketClientData != null) {
-            socketClientData.setLastHeartBeatTime(new Date());
-            socketIOClients.put(client.getSessionId(), socketClientData);
+            socketClientData.setLastHeartBeatNanos(System.nanoTime());
         } else {
             // 当服务端发现客户端心跳超时后，会调用SocketIOClient.disconnect()关闭连接，但是该方法的并不会强行关闭
             // Socket连接，而是通过向客户端发送通知消息，希望双方能够优雅的关闭连接，但如果此时网络不畅，客户端收不到
@@ -121,7 +160,10 @@ public class SocketServer {
 
         server.addConnectListener((SocketIOClient client) -> {
             try {
-                socketIOClients.put(client.getSessionId(), new SocketClientData(client, new Date()));
+                SocketClientData socketClientData = new SocketClientData(client);
+                socketIOClients.put(client.getSessionId(), socketClientData);
+                heartbeatExpiryIndex.add(socketClientData);
+                openedCounter.increment();
                 log.debug(String.format("新建连接:%s|%s", client.getRemoteAddress(), client.getSessionId()));
             } catch (Exception e) {
                 log.error("", e);
@@ -141,7 +183,7 @@ public class SocketServer {
         systems.put(russia.getName(), russia);
         systems.put(chat.getName(), chat);
         final SocketIONamespace socketIONamespace = server.addNamespace("/all");
-        socketService = new SocketService(socketIONamespace, this, systems, msgBo, userBo);
+        socketService = new SocketService(socketIONamespace, this, systems, msgBo, userBo, presenceBroadcaster);
 
         server.start();
         isStarted = true;
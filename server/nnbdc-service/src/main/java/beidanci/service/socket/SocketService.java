@@ -33,6 +33,8 @@ public class SocketService {
 
     UserBo userBo;
 
+    private final PresenceBroadcaster presenceBroadcaster;
+
 
     public static SocketService getInstance() {
         return instance;
@@ -40,7 +42,7 @@ public class SocketService {
 
     @SuppressWarnings("this-escape")
     public SocketService(SocketIONamespace namespace, SocketServer socketServer, Map<String, MySystem> systems, MsgBo msgBo,
-                         UserBo userBo) {
+                         UserBo userBo, PresenceBroadcaster presenceBroadcaster) {
         if (instance != null) {
             throw new RuntimeException("SocketService has been created more than once.");
         }
@@ -50,6 +52,8 @@ public class SocketService {
         this.systems = systems;
         this.msgBo = msgBo;
         this.userBo = userBo;
+        this.presenceBroadcaster = presenceBroadcaster;
+        presenceBroadcaster.attach(namespace, sessionsByUser::size);
 
         initListeners();
 
@@ -104,30 +108,28 @@ public class SocketService {
     private final SocketServer socketServer;
 
     /**
-     * 广播有用户上线了
+     * 广播有用户上线了（在下一个合并窗口与在线人数一起广播）
      *
      * @param user
      */
     public void broadcastUserOnline(UserVo user) {
-        namespace.getBroadcastOperations().sendEvent("userOnline", Util.getNickNameOfUser(user));
-        broadcastOnelineUserCount();
+        presenceBroadcaster.userOnline(user);
     }
 
     /**
-     * 广播有用户下线了
+     * 广播有用户下线了（在下一个合并窗口与在线人数一起广播）
      *
      * @param user
      */
     public void broadcastUserOffline(UserVo user) {
-        namespace.getBroadcastOperations().sendEvent("userOffline", Util.getNickNameOfUser(user));
-        broadcastOnelineUserCount();
+        presenceBroadcaster.userOffline(user);
     }
 
     /**
-     * 广播在线用户数量
+     * 广播在线用户数量（在下一个合并窗口广播）
      */
     public void broadcastOnelineUserCount() {
-        namespace.getBroadcastOperations().sendEvent("onlineCount", String.valueOf(sessionsByUser.size()));
+        presenceBroadcaster.onlineCountChanged();
     }
 
     /**
@@ -0,0 +1,300 @@
+package beidanci.service.socket.system.game;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 所有游戏大厅、游戏室、机器人共用的定时任务调度器（触底判定、机器人思考延迟、自动开始、大厅巡检等）<br>
+ * 以前每个游戏室/大厅各自创建 java.util.Timer，每个 Timer 独占一个线程；现在共用一个小的线程池。
+ * 任务按所属对象（游戏室、大厅）记账，所属对象销毁时调用 {@link #cancelAll} 取消其全部任务。<br>
+ * 同时提供游戏室的串行邮箱（{@link #newMailbox}）：到期的任务可以投递到邮箱中，与用户命令在同一个逻辑线程上按序执行
+ */
+@Component
+public class GameScheduler {
+    private static final Logger log = LoggerFactory.getLogger(GameScheduler.class);
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${gameScheduler.threads:4}")
+    private int threads;
+
+    /**
+     * 执行游戏室邮箱任务的线程数，0表示与CPU核数相同
+     */
+    @Value("${gameScheduler.roomThreads:0}")
+    private int roomThreads;
+
+    /**
+     * 执行阻塞操作（如查询数据库创建机器人）的线程数，这些操作不能放在游戏室邮箱或调度线程中执行
+     */
+    @Value("${gameScheduler.ioThreads:2}")
+    private int ioThreads;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private ExecutorService roomWorkers;
+
+    private ExecutorService ioWorkers;
+
+    private MailboxMetrics mailboxMetrics;
+
+    /**
+     * 所属对象 -> 尚未执行完毕（周期任务为尚未取消）的任务
+     */
+    private final Map<Object, Set<Task>> tasksByOwner = new ConcurrentHashMap<>();
+
+    private Timer lagTimer;
+    private Counter failureCounter;
+
+    /**
+     * 所有邮箱共用的统计项（不按游戏室打标签，避免指标数量随游戏室数增长；单个游戏室的数据见 {@link SerialMailbox}）
+     */
+    static final class MailboxMetrics {
+        final AtomicInteger queued = new AtomicInteger();
+        final Timer waitTimer;
+        final Timer processTimer;
+
+        private MailboxMetrics(MeterRegistry meterRegistry) {
+            Gauge.builder("nnbdc.game.room.mailbox.queued", queued, AtomicInteger::get)
+                    .description("所有游戏室邮箱中等待执行的任务数")
+                    .register(meterRegistry);
+            waitTimer = Timer.builder("nnbdc.game.room.mailbox.wait")
+                    .description("游戏室邮箱任务从投递到开始执行的等待时间")
+                    .register(meterRegistry);
+            processTimer = Timer.builder("nnbdc.game.room.mailbox.process")
+                    .description("游戏室邮箱任务的执行耗时（次数即游戏室处理的命令和定时事件数）")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 可取消的任务句柄
+     */
+    public final class Task {
+        private final Object owner;
+        private final Runnable action;
+        private final Executor target;
+        private final long periodNanos;
+        /**
+         * 计划的下次执行时间（System.nanoTime），用于统计调度延迟
+         */
+        private volatile long dueNanos;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+
+        private Task(Object owner, Runnable action, Executor target, long delayNanos, long periodNanos) {
+            this.owner = owner;
+            this.action = action;
+            this.target = target;
+            this.periodNanos = periodNanos;
+            this.dueNanos = System.nanoTime() + delayNanos;
+        }
+
+        /**
+         * 到期：有目标邮箱时投递到邮箱中执行，否则在调度线程中直接执行（执行前都再检查一次是否已取消）
+         */
+        private void fire() {
+            if (target == null) {
+                if (!cancelled) {
+                    run();
+                }
+            } else {
+                target.execute(() -> {
+                    if (!cancelled) {
+                        run();
+                    } else if (periodNanos == 0) {
+                        forget(this);
+                    }
+                });
+            }
+        }
+
+        private void run() {
+            long startNanos = System.nanoTime();
+            lagTimer.record(Math.max(0, startNanos - dueNanos), TimeUnit.NANOSECONDS);
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                // 周期任务抛出异常后线程池会停止再调度，这里吞掉异常，只记录
+                failureCounter.increment();
+                log.error(String.format("游戏定时任务执行失败, owner: %s", owner), e);
+            } finally {
+                if (periodNanos > 0) {
+                    dueNanos += periodNanos;
+                } else {
+                    forget(this);
+                }
+            }
+        }
+
+        /**
+         * 取消任务（正在执行的任务不会被中断）
+         */
+        public void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+            forget(this);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNo = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "game-scheduler-" + threadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), threadFactory);
+        // 取消的任务立即从队列删除，避免大量已取消的触底任务堆积在队列中
+        executor.setRemoveOnCancelPolicy(true);
+        AtomicInteger roomThreadNo = new AtomicInteger();
+        roomWorkers = Executors.newFixedThreadPool(
+                roomThreads > 0 ? roomThreads : Runtime.getRuntime().availableProcessors(), r -> {
+                    Thread thread = new Thread(r, "game-room-" + roomThreadNo.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        AtomicInteger ioThreadNo = new AtomicInteger();
+        ioWorkers = Executors.newFixedThreadPool(Math.max(1, ioThreads), r -> {
+            Thread thread = new Thread(r, "game-io-" + ioThreadNo.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        mailboxMetrics = new MailboxMetrics(meterRegistry);
+
+        Gauge.builder("nnbdc.game.scheduler.pending", executor, e -> e.getQueue().size())
+                .description("等待执行的游戏定时任务数")
+                .register(meterRegistry);
+        Gauge.builder("nnbdc.game.scheduler.owners", tasksByOwner, Map::size)
+                .description("有未完成定时任务的游戏室/大厅数")
+                .register(meterRegistry);
+        lagTimer = Timer.builder("nnbdc.game.scheduler.lag")
+                .description("游戏定时任务实际执行时间相对计划时间的延迟")
+                .register(meterRegistry);
+        failureCounter = Counter.builder("nnbdc.game.scheduler.failures")
+                .description("执行失败的游戏定时任务数")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        roomWorkers.shutdownNow();
+        ioWorkers.shutdownNow();
+    }
+
+    /**
+     * 在专门的线程池中执行阻塞操作（数据库查询等），完成后由调用方把结果投递回游戏室邮箱
+     */
+    public void executeBlocking(Runnable action) {
+        ioWorkers.execute(() -> {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                failureCounter.increment();
+                log.error("游戏阻塞任务执行失败", e);
+            }
+        });
+    }
+
+    /**
+     * 创建一个串行邮箱（如每个游戏室一个），邮箱中的任务在共用的线程池中按序执行
+     */
+    public SerialMailbox newMailbox(String name) {
+        return new SerialMailbox(name, roomWorkers, mailboxMetrics);
+    }
+
+    /**
+     * 延迟指定时间后执行一次
+     *
+     * @param owner 任务所属的对象（游戏室、大厅等），用于记账和批量取消
+     */
+    public Task schedule(Object owner, Runnable action, long delayMs) {
+        return schedule(owner, null, action, delayMs);
+    }
+
+    /**
+     * 延迟指定时间后把任务投递到指定的邮箱（为null时在调度线程中直接执行）
+     */
+    public Task schedule(Object owner, Executor mailbox, Runnable action, long delayMs) {
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+        Task task = register(new Task(owner, action, mailbox, delayNanos, 0));
+        task.future = executor.schedule(task::fire, delayNanos, TimeUnit.NANOSECONDS);
+        return task;
+    }
+
+    /**
+     * 以固定频率周期执行，直到被取消
+     */
+    public Task scheduleAtFixedRate(Object owner, Runnable action, long initialDelayMs, long periodMs) {
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, initialDelayMs));
+        long periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMs);
+        Task task = register(new Task(owner, action, null, delayNanos, periodNanos));
+        task.future = executor.scheduleAtFixedRate(task::fire, delayNanos, periodNanos, TimeUnit.NANOSECONDS);
+        return task;
+    }
+
+    /**
+     * 取消指定对象的所有任务
+     */
+    public void cancelAll(Object owner) {
+        Set<Task> tasks = tasksByOwner.remove(owner);
+        if (tasks != null) {
+            for (Task task : tasks) {
+                task.cancel();
+            }
+        }
+    }
+
+    /**
+     * 指定对象尚未完成的任务数
+     */
+    public int getTaskCount(Object owner) {
+        Set<Task> tasks = tasksByOwner.get(owner);
+        return tasks == null ? 0 : tasks.size();
+    }
+
+    private Task register(Task task) {
+        tasksByOwner.compute(task.owner, (k, tasks) -> {
+            Set<Task> result = tasks != null ? tasks : ConcurrentHashMap.newKeySet();
+            result.add(task);
+            return result;
+        });
+        return task;
+    }
+
+    private void forget(Task task) {
+        tasksByOwner.computeIfPresent(task.owner, (k, tasks) -> {
+            tasks.remove(task);
+            return tasks.isEmpty() ? null : tasks;
+        });
+    }
+}
@@ -0,0 +1,114 @@
+package beidanci.service.socket.system.game;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 串行邮箱：投递到同一个邮箱的任务按投递顺序逐个执行，任意时刻最多只有一个线程在执行该邮箱的任务<br>
+ * 邮箱本身不占用线程，有任务时才提交到共用的线程池中执行（每次最多连续执行 {@link #BATCH_SIZE} 个任务后让出线程，
+ * 避免一个繁忙的游戏室长期占住线程）。同一邮箱的任务之间满足 happens-before，因此邮箱所属对象的状态无需加锁
+ */
+public final class SerialMailbox implements Executor {
+    private static final Logger log = LoggerFactory.getLogger(SerialMailbox.class);
+
+    private static final int BATCH_SIZE = 64;
+
+    private final String name;
+    private final Executor workers;
+    private final GameScheduler.MailboxMetrics metrics;
+    private final ConcurrentLinkedQueue<Message> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong processedCount = new AtomicLong();
+
+    private static final class Message {
+        private final Runnable action;
+        private final long enqueueNanos;
+
+        private Message(Runnable action) {
+            this.action = action;
+            this.enqueueNanos = System.nanoTime();
+        }
+    }
+
+    SerialMailbox(String name, Executor workers, GameScheduler.MailboxMetrics metrics) {
+        this.name = name;
+        this.workers = workers;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 投递任务（任务中抛出的异常只记录日志，不影响后续任务）
+     */
+    @Override
+    public void execute(Runnable action) {
+        queue.add(new Message(action));
+        queueSize.incrementAndGet();
+        metrics.queued.incrementAndGet();
+        trySchedule();
+    }
+
+    private void trySchedule() {
+        if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+            try {
+                workers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // 线程池已关闭（应用停止中），丢弃剩余任务
+                draining.set(false);
+                log.warn(String.format("邮箱[%s]的任务被拒绝执行: %s", name, e.getMessage()));
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                Message message = queue.poll();
+                if (message == null) {
+                    break;
+                }
+                queueSize.decrementAndGet();
+                metrics.queued.decrementAndGet();
+                long startNanos = System.nanoTime();
+                metrics.waitTimer.record(startNanos - message.enqueueNanos, TimeUnit.NANOSECONDS);
+                try {
+                    message.action.run();
+                } catch (RuntimeException e) {
+                    log.error(String.format("邮箱[%s]的任务执行失败", name), e);
+                }
+                metrics.processTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                processedCount.incrementAndGet();
+            }
+        } finally {
+            draining.set(false);
+            // 释放之后可能又有新任务投递进来（投递方看到 draining 为 true 而没有提交），需再检查一次
+            trySchedule();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 等待执行的任务数
+     */
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    /**
+     * 已执行的任务数
+     */
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+}
@@ -3,30 +3,30 @@ package beidanci.service.socket.system.game.russia;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.TimerTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import beidanci.api.model.UserVo;
+import beidanci.service.socket.system.game.GameScheduler;
+import beidanci.service.socket.system.game.SerialMailbox;
+import beidanci.service.socket.system.game.russia.state.ReadyState;
+import beidanci.service.socket.system.game.russia.state.WaitState;
 
 /**
- * 检查指定大厅内所有游戏室健康情况的定时任务
+ * 检查指定大厅内所有游戏室健康情况的定时任务<br>
+ * 对游戏室的修改都投递到游戏室的邮箱中执行，这里只读取游戏室的并发状态，不需要加大厅锁
  *
  * @author Administrator
  */
-public class CheckRussiaRoomTask extends TimerTask {
+public class CheckRussiaRoomTask implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(CheckRussiaRoomTask.class);
-    private final List<RussiaRoom> readyRooms;
-    private final List<RussiaRoom> waitingRooms;
     /**
      * 游戏室所属的大厅
      */
     private final Hall hall;
 
-    public CheckRussiaRoomTask(List<RussiaRoom> readyRooms, List<RussiaRoom> waitingRooms, Hall hall) {
-        this.readyRooms = readyRooms;
-        this.waitingRooms = waitingRooms;
+    public CheckRussiaRoomTask(Hall hall) {
         this.hall = hall;
     }
 
@@ -35,15 +35,8 @@ public class CheckRussiaRoomTask extends TimerTask {
      *
      * @param rooms
      */
-    private void clearIdleUser(List<RussiaRoom> rooms) throws IllegalAccessException {
-        // 创建临时游戏室列表（将用户从游戏室删除后，会自动引起该游戏室转移到另一个游戏室列表，这样在游戏室迭代过程中会引起ConcurrentModificationExecption,
-        // 所以创建一个临时的游戏室列表避免这个问题）
-        List<RussiaRoom> tempRooms = new ArrayList<>(rooms.size());
+    private void clearIdleUser(List<RussiaRoom> rooms) {
         for (RussiaRoom room : rooms) {
-            tempRooms.add(room);
-        }
-
-        for (RussiaRoom room : tempRooms) {
             Map<UserVo, UserGameData> users = room.getUsers();
             List<UserVo> usersToRemove = new ArrayList<>();
             for (Map.Entry<UserVo, UserGameData> entry : users.entrySet()) {
@@ -58,7 +51,7 @@ public class CheckRussiaRoomTask extends TimerTask {
             }
 
             for (UserVo user : usersToRemove) {
-                room.userLeave(user);
+                hall.removeUserFromRoom(user, room);
                 // service.disconnectExistingConnectionOfUser(user, null,"长时间未操作");
                 // logger.info(String.format("[%s]: 长时间未操作， 用户[%s]被逐出游戏室并被断开连接 ",
                 // hall.getName(), user.getUserName()));
@@ -68,81 +61,72 @@ public class CheckRussiaRoomTask extends TimerTask {
     }
 
     /**
-     * 检查是否有处与Empty状态(空游戏室)的游戏室（正常情况下不该有）
+     * 检查是否有空游戏室（正常情况下不该有），在游戏室的邮箱中再确认一次后删除
      *
      * @param rooms
      */
     private void clearEmptyRoom(List<RussiaRoom> rooms) {
-        List<RussiaRoom> roomsToRemove = new ArrayList<>();
         for (RussiaRoom room : rooms) {
-            if (room.getUsers().isEmpty()) {
-                roomsToRemove.add(room);
+            if (room.isEmpty()) {
+                room.post(() -> hall.removeRoomIfEmpty(room));
+                logger.info(String.format("[%s]: 发现空游戏室[%d]并将其删除", hall.getName(), room.getId()));
             }
         }
-
-        // 清除空游戏室
-        for (RussiaRoom room : roomsToRemove) {
-            hall.removeRoom(room);
-            logger.info(String.format("[%s]: 发现空游戏室[%d]并将其删除", hall.getName(), room.getId()));
-        }
     }
 
     @Override
     public void run() {
-        synchronized (hall) {
-
-            logger.debug(String.format("[%s]: 共有[%d]个ready游戏室，[%d]个waiting游戏室", hall.getName(), readyRooms.size(),
-                    waitingRooms.size()));
+        List<RussiaRoom> rooms = new ArrayList<>(hall.getRooms());
+        logger.debug(String.format("[%s]: 共有[%d]个游戏室，其中[%d]个waiting游戏室", hall.getName(), rooms.size(),
+                hall.getWaitingRoomCount()));
+        if (logger.isDebugEnabled()) {
+            logRoomThroughput(rooms);
+        }
 
-            // 清除长时间不操作的用户
-            try {
-                clearIdleUser(readyRooms);
-                clearIdleUser(waitingRooms);
-            } catch (IllegalAccessException e) {
-                logger.error("", e);
-            }
+        // 清除长时间不操作的用户
+        clearIdleUser(rooms);
 
-            // 清除空房间
-            clearEmptyRoom(readyRooms);
-            clearEmptyRoom(waitingRooms);
+        // 清除空房间
+        clearEmptyRoom(rooms);
 
-            // 检查机器人离开概率
-            try {
-                checkBotLeaveProbability(readyRooms);
-                checkBotLeaveProbability(waitingRooms);
-            } catch (Exception e) {
-                logger.error("检查机器人离开概率时发生错误", e);
-            }
+        // 检查机器人离开概率
+        try {
+            checkBotLeaveProbability(rooms);
+        } catch (Exception e) {
+            logger.error("检查机器人离开概率时发生错误", e);
+        }
 
-            // 检查所有房间中的用户数是否正确
-            for (RussiaRoom room : readyRooms) {
-                if (room.getUsers().size() != 2) {
-                    logger.error(String.format("[%s]: Found a ready room has [%d] users", hall.getName(),
-                            room.getUsers().size()));
-                }
-            }
-            for (RussiaRoom room : waitingRooms) {
-                if (room.getUsers().size() != 1) {
-                    logger.error(String.format("[%s]: Found a waiting room has [%d] users", hall.getName(),
-                            room.getUsers().size()));
-                }
+        // 检查所有房间中的用户数是否正确（用户进出在游戏室邮箱中异步处理，偶尔与状态短暂不一致属正常）
+        for (RussiaRoom room : rooms) {
+            if (room.getState() instanceof ReadyState && room.getUsers().size() != 2) {
+                logger.warn(String.format("[%s]: Found a ready room has [%d] users", hall.getName(),
+                        room.getUsers().size()));
+            } else if (room.getState() instanceof WaitState && room.getUsers().size() != 1) {
+                logger.warn(String.format("[%s]: Found a waiting room has [%d] users", hall.getName(),
+                        room.getUsers().size()));
             }
         }
+    }
 
+    /**
+     * 输出每个游戏室邮箱的积压和累计处理的任务数（两次巡检之间的差即该游戏室的吞吐量），以及尚未完成的定时任务数
+     */
+    private void logRoomThroughput(List<RussiaRoom> rooms) {
+        GameScheduler scheduler = hall.getGameScheduler();
+        for (RussiaRoom room : rooms) {
+            SerialMailbox mailbox = room.getMailbox();
+            logger.debug(String.format("[%s]: 游戏室邮箱[%s] 用户数[%d] 待执行任务[%d] 已执行任务[%d] 定时任务[%d]",
+                    hall.getName(), mailbox.getName(), room.getUsers().size(), mailbox.getQueueSize(),
+                    mailbox.getProcessedCount(), scheduler.getTaskCount(room)));
+        }
     }
 
     /**
      * 检查机器人离开概率
      */
     private void checkBotLeaveProbability(List<RussiaRoom> rooms) {
-        // 创建临时游戏室列表，避免在迭代过程中修改列表导致的并发修改异常
-        List<RussiaRoom> tempRooms = new ArrayList<>(rooms.size());
         for (RussiaRoom room : rooms) {
-            tempRooms.add(room);
-        }
-
-        for (RussiaRoom room : tempRooms) {
-            room.checkBotLeaveProbability();
+            room.post(room::checkBotLeaveProbability);
         }
     }
 }
@@ -0,0 +1,20 @@
+package beidanci.service.socket.system.game.russia;
+
+import beidanci.api.model.UserVo;
+
+/**
+ * 先到先得：进入等待最久的、还有空位的游戏室
+ */
+public class FirstWaitingRoomPolicy implements MatchPolicy {
+
+    @Override
+    public RussiaRoom match(UserVo user, int userRank, WaitingRooms waitingRooms, int exceptRoom) {
+        for (WaitingRoom waitingRoom : waitingRooms.inWaitingOrder()) {
+            RussiaRoom room = waitingRoom.getRoom();
+            if (room.getId() != exceptRoom && room.tryReserveSeat()) {
+                return room;
+            }
+        }
+        return null;
+    }
+}
@@ -2,10 +2,9 @@ package beidanci.service.socket.system.game.russia;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,8 +26,7 @@ import beidanci.service.po.GameHall;
 import beidanci.service.socket.SocketService;
 import beidanci.service.socket.UserCmd;
 import beidanci.service.socket.system.MySystem;
-import beidanci.service.socket.system.game.russia.state.ReadyState;
-import beidanci.service.socket.system.game.russia.state.WaitState;
+import beidanci.service.socket.system.game.GameScheduler;
 import beidanci.service.store.WordCache;
 import beidanci.service.util.UserSorter;
 import beidanci.service.util.Util;
@@ -40,8 +38,10 @@ import beidanci.service.util.Util;
  */
 public class Hall {
     private static final Logger logger = LoggerFactory.getLogger(Hall.class);
-    private final List<RussiaRoom> readyRooms = new ArrayList<>();
-    private final List<RussiaRoom> waitingRooms = new ArrayList<>();
+    /**
+     * 游戏室索引和匹配队列
+     */
+    private final Matchmaker matchmaker;
     private final SocketService socketService;
     private final String name;
     private final String id;
@@ -74,16 +74,18 @@ public class Hall {
     private final DictBo dictBo;
 
     /**
-     * 检查游戏室健康状况的定时器
+     * 所有大厅、游戏室共用的定时任务调度器
      */
-    private final Timer timer = new Timer();
+    private final GameScheduler gameScheduler;
 
     public Hall(String id, MySystem system, SocketService socketService, WordCache wordCache, WordBo wordBo,
                 UserGameBo userGameBo, DictWordBo rawWordBo, UserSorter userSorter, GameHallBo gameHallBo,
                 SysParamBo sysParamBo, DictWordBo dictWordBo, UserBo userBo, LearningDictBo selectedDictBo,
-                DictBo dictBo)
+                DictBo dictBo, GameScheduler gameScheduler, MatchPolicy matchPolicy)
             throws IOException, InvalidMeaningFormatException, EmptySpellException, ParseException {
         this.id = id;
+        this.gameScheduler = gameScheduler;
+        this.matchmaker = new Matchmaker(matchPolicy, userSorter);
         this.socketService = socketService;
         this.system = system;
         this.wordCache = wordCache;
@@ -111,7 +113,11 @@ public class Hall {
      * 构造完成后再启动定时任务，避免在构造函数中将 this 发布到其他线程引发 this-escape 警告
      */
     public void startMonitoring() {
-        timer.scheduleAtFixedRate(new CheckRussiaRoomTask(readyRooms, waitingRooms, this), 0, 10000);
+        gameScheduler.scheduleAtFixedRate(this, new CheckRussiaRoomTask(this), 0, 10000);
+    }
+
+    public GameScheduler getGameScheduler() {
+        return gameScheduler;
     }
 
     /**
@@ -132,35 +138,42 @@ public class Hall {
     }
 
     /**
-     * 尝试进入某个已存在且处于等待状态（还缺少一个玩家）的游戏室，如果没有已存在的游戏室或所有游戏室已满，则创建一个新的游戏室并进入其中.
+     * 按匹配策略进入某个已存在且处于等待状态（还缺少一个玩家）的游戏室，如果没有合适的游戏室，则创建一个新的游戏室并进入其中.<br>
+     * 这里只做座位预占和登记（不加锁），用户进入游戏室的处理投递到游戏室的邮箱中执行
      *
      * @return
      */
-    private synchronized RussiaRoom assignRoomForUser(UserVo user, int exceptRoom) throws IllegalAccessException {
-        // 尝试进入一个waiting状态的游戏室
-        RussiaRoom roomToEnter = null;
-        for (RussiaRoom room : waitingRooms) {
-            if (!room.isPrivateRoom() && room.getId() != exceptRoom) {
-                roomToEnter = room;
-                break;
-            }
-        }
-
+    private RussiaRoom assignRoomForUser(UserVo user, int exceptRoom) {
+        RussiaRoom roomToEnter = matchmaker.match(user, exceptRoom);
         if (roomToEnter == null) {
-            roomToEnter = new RussiaRoom(user, this, wordCache, wordBo, userGameBo, rawWordBo, userSorter, sysParamBo, userBo, selectedDictBo, dictBo);
+            roomToEnter = newRoom(user, false);
         }
 
-        roomToEnter.userEnter(user);
-
+        enterRoom(user, roomToEnter);
         return roomToEnter;
     }
 
+    /**
+     * 创建游戏室、为创建者预占座位并登记到匹配子系统
+     */
+    private RussiaRoom newRoom(UserVo user, boolean privateRoom) {
+        RussiaRoom room = new RussiaRoom(user, this, wordCache, wordBo, userGameBo, rawWordBo, userSorter, sysParamBo, userBo, selectedDictBo, dictBo, privateRoom);
+        room.tryReserveSeat();
+        matchmaker.addRoom(room, user);
+        return room;
+    }
+
+    private void enterRoom(UserVo user, RussiaRoom room) {
+        matchmaker.bindUser(user, room);
+        room.postUserEnter(user);
+    }
+
     /**
      * 创建一个私有房间（仅通过房号进入，不参与大厅匹配）并让用户进入。
      */
-    public synchronized RussiaRoom createPrivateRoomForUser(UserVo user) throws IllegalAccessException {
-        RussiaRoom room = new RussiaRoom(user, this, wordCache, wordBo, userGameBo, rawWordBo, userSorter, sysParamBo, userBo, selectedDictBo, dictBo, true);
-        room.userEnter(user);
+    public RussiaRoom createPrivateRoomForUser(UserVo user) {
+        RussiaRoom room = newRoom(user, true);
+        enterRoom(user, room);
         return room;
     }
 
@@ -168,28 +181,13 @@ public class Hall {
      * 通过房间号加入房间（满员则失败）。
      * @return true=成功，false=失败
      */
-    public synchronized boolean joinRoomById(UserVo user, int roomId) throws IllegalAccessException {
-        for (RussiaRoom room : waitingRooms) {
-            if (room.getId() == roomId) {
-                if (room.getUsers().size() < 2) {
-                    room.userEnter(user);
-                    return true;
-                } else {
-                    return false;
-                }
-            }
+    public boolean joinRoomById(UserVo user, int roomId) {
+        RussiaRoom room = matchmaker.getRoom(roomId);
+        if (room == null || !room.tryReserveSeat()) {
+            return false;
         }
-        for (RussiaRoom room : readyRooms) {
-            if (room.getId() == roomId) {
-                if (room.getUsers().size() < 2) {
-                    room.userEnter(user);
-                    return true;
-                } else {
-                    return false;
-                }
-            }
-        }
-        return false;
+        enterRoom(user, room);
+        return true;
     }
 
     /**
@@ -198,52 +196,39 @@ public class Hall {
      * @param user
      * @return
      */
-    public synchronized RussiaRoom getRoomOfUser(UserVo user) {
-        for (RussiaRoom room : waitingRooms) {
-            if (room.hasUser(user)) {
-                return room;
-            }
-        }
-
-        // 尝试从就绪的游戏室中退出,退出后，该游戏室变为等待状态
-        for (RussiaRoom room : readyRooms) {
-            if (room.hasUser(user)) {
-                return room;
-            }
-        }
+    public RussiaRoom getRoomOfUser(UserVo user) {
+        return matchmaker.getRoomOfUser(user);
+    }
 
-        return null;
+    /**
+     * 用户进入游戏室失败时解除登记（用户已被分配到其他游戏室时不受影响）
+     */
+    void unbindUser(UserVo user, RussiaRoom room) {
+        matchmaker.unbindUser(user, room);
     }
 
     /**
-     * 删除一个游戏室
+     * 将用户请出指定的游戏室（如长时间未操作）。先解除登记再投递离开消息，用户随后重新进入时其进入消息排在离开消息之后
      */
-    public synchronized void removeRoom(RussiaRoom roomToDel) {
-        for (Iterator<RussiaRoom> i = waitingRooms.iterator(); i.hasNext(); ) {
-            RussiaRoom room = i.next();
-            if (room.equals(roomToDel)) {
-                i.remove();
-            }
-        }
+    void removeUserFromRoom(UserVo user, RussiaRoom room) {
+        matchmaker.unbindUser(user, room);
+        room.postUserLeave(user);
+    }
 
-        for (Iterator<RussiaRoom> i = readyRooms.iterator(); i.hasNext(); ) {
-            RussiaRoom room = i.next();
-            if (room.equals(roomToDel)) {
-                i.remove();
-            }
+    /**
+     * 删除空游戏室（在游戏室的邮箱中调用，此后才预占座位的用户进入时会重新登记该游戏室）
+     */
+    void removeRoomIfEmpty(RussiaRoom room) {
+        if (room.isEmpty()) {
+            matchmaker.removeRoom(room);
         }
     }
 
-    public synchronized void onRoomStateChanged(RussiaRoom theRoom) {
-        // 首先将room从队列中删除
-        removeRoom(theRoom);
-
-        // 更具room的state，将其加入相应队列
-        if (theRoom.getState() instanceof WaitState) {
-            waitingRooms.add(theRoom);
-        } else if (theRoom.getState() instanceof ReadyState) {
-            readyRooms.add(theRoom);
-        }
+    /**
+     * 游戏室状态变化（在游戏室的邮箱中调用）
+     */
+    public void onRoomStateChanged(RussiaRoom theRoom) {
+        matchmaker.onRoomStateChanged(theRoom);
     }
 
     public void sendEvent2User(UserVo user, String event, Object data) {
@@ -252,14 +237,13 @@ public class Hall {
 
     public void userEnter(UserVo user, int exceptRoom) throws IllegalAccessException {
         RussiaRoom room = assignRoomForUser(user, exceptRoom);
-        logger.info(String.format("%s 进入游戏大厅 %s, 房间:[%d,%s]", Util.getNickNameOfUser(user), name, room.getId(),
-                room.getState().getClass().getSimpleName()));
+        logger.info(String.format("%s 进入游戏大厅 %s, 房间:[%d]", Util.getNickNameOfUser(user), name, room.getId()));
     }
 
     public void userLeave(UserVo user) throws IllegalAccessException {
-        RussiaRoom room = getRoomOfUser(user);
+        RussiaRoom room = matchmaker.unbindUser(user);
         if (room != null) {
-            room.userLeave(user);
+            room.postUserLeave(user);
         }
         system.onUserLeaveHall(user, this);
         logger.info(String.format("%s 离开游戏大厅 %s", Util.getNickNameOfUser(user), name));
@@ -271,7 +255,7 @@ public class Hall {
         } else {
             RussiaRoom room = getRoomOfUser(user);
             if (room != null) {
-                room.processUserCmd(user, userCmd);
+                room.postUserCmd(user, userCmd);
             }
         }
     }
@@ -308,16 +292,20 @@ public class Hall {
      */
     public int getUserCount() {
         int count = 0;
-        for (RussiaRoom room : readyRooms) {
-            count += room.getUsers().size();
-        }
-        for (RussiaRoom room : waitingRooms) {
+        for (RussiaRoom room : matchmaker.getRooms()) {
             count += room.getUsers().size();
         }
         return count;
     }
 
-    public List<RussiaRoom> getWaitingRooms() {
-        return waitingRooms;
+    /**
+     * 大厅中所有未清除的游戏室（等待中、就绪、私有）
+     */
+    public Collection<RussiaRoom> getRooms() {
+        return matchmaker.getRooms();
+    }
+
+    public int getWaitingRoomCount() {
+        return matchmaker.getWaitingRoomCount();
     }
 }
@@ -0,0 +1,18 @@
+package beidanci.service.socket.system.game.russia;
+
+import beidanci.api.model.UserVo;
+
+/**
+ * 大厅匹配策略：为进入大厅的用户从等待中的游戏室里选择一个<br>
+ * 策略在用户的请求线程中调用，不加锁；等待中的游戏室随时可能被其他用户预占，以 {@link RussiaRoom#tryReserveSeat} 成功为准
+ */
+public interface MatchPolicy {
+
+    /**
+     * @param userRank     用户的总积分排名（积分为零的用户为-1）
+     * @param waitingRooms 等待中的公开游戏室（按等待先后和房主排名索引）
+     * @param exceptRoom   用户不想进入的游戏室
+     * @return 已为用户预占座位的游戏室，没有合适的游戏室时返回null（由大厅新建游戏室，等不到对手时由机器人补位）
+     */
+    RussiaRoom match(UserVo user, int userRank, WaitingRooms waitingRooms, int exceptRoom);
+}
@@ -0,0 +1,100 @@
+package beidanci.service.socket.system.game.russia;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import beidanci.api.model.UserVo;
+import beidanci.service.socket.system.game.russia.state.ReadyState;
+import beidanci.service.socket.system.game.russia.state.WaitState;
+import beidanci.service.util.UserSorter;
+
+/**
+ * 游戏大厅的匹配子系统：游戏室号 -> 游戏室、用户 -> 所在游戏室、等待对手的公开游戏室（按等待先后和房主排名索引），
+ * 都是并发容器，用户进出大厅和游戏室状态变化都不需要大厅锁。<br>
+ * 游戏室的状态变化只在它自己的邮箱中登记，同一游戏室的登记不会并发；选择哪个等待中的游戏室由 {@link MatchPolicy} 决定
+ */
+class Matchmaker {
+    private final Map<Integer, RussiaRoom> rooms = new ConcurrentHashMap<>();
+    private final WaitingRooms waitingRooms = new WaitingRooms();
+    private final Map<UserVo, RussiaRoom> roomOfUser = new ConcurrentHashMap<>();
+    private final MatchPolicy policy;
+    private final UserSorter userSorter;
+
+    Matchmaker(MatchPolicy policy, UserSorter userSorter) {
+        this.policy = policy;
+        this.userSorter = userSorter;
+    }
+
+    /**
+     * 按匹配策略为用户选择一个等待中的游戏室并预占座位，没有合适的返回null
+     */
+    RussiaRoom match(UserVo user, int exceptRoom) {
+        return policy.match(user, rankOf(user), waitingRooms, exceptRoom);
+    }
+
+    /**
+     * 登记新建的游戏室（创建者已预占座位）。公开游戏室立即进入等待队列，不必等创建者的进入消息处理完就能被匹配到
+     */
+    void addRoom(RussiaRoom room, UserVo host) {
+        rooms.put(room.getId(), room);
+        if (!room.isPrivateRoom()) {
+            waitingRooms.addIfAbsent(room, rankOf(host));
+        }
+    }
+
+    /**
+     * 游戏室状态变化后更新索引（在游戏室的邮箱中调用）
+     */
+    void onRoomStateChanged(RussiaRoom room) {
+        if (room.getState() instanceof WaitState) {
+            rooms.put(room.getId(), room);
+            if (!room.isPrivateRoom()) {
+                UserVo host = room.getUsers().keySet().iterator().next();
+                waitingRooms.addIfAbsent(room, rankOf(host));
+            }
+        } else if (room.getState() instanceof ReadyState) {
+            rooms.put(room.getId(), room);
+            waitingRooms.remove(room.getId());
+        } else {
+            removeRoom(room);
+        }
+    }
+
+    void removeRoom(RussiaRoom room) {
+        rooms.remove(room.getId(), room);
+        waitingRooms.remove(room.getId());
+    }
+
+    RussiaRoom getRoom(int roomId) {
+        return rooms.get(roomId);
+    }
+
+    Collection<RussiaRoom> getRooms() {
+        return rooms.values();
+    }
+
+    int getWaitingRoomCount() {
+        return waitingRooms.size();
+    }
+
+    RussiaRoom getRoomOfUser(UserVo user) {
+        return roomOfUser.get(user);
+    }
+
+    void bindUser(UserVo user, RussiaRoom room) {
+        roomOfUser.put(user, room);
+    }
+
+    RussiaRoom unbindUser(UserVo user) {
+        return roomOfUser.remove(user);
+    }
+
+    void unbindUser(UserVo user, RussiaRoom room) {
+        roomOfUser.remove(user, room);
+    }
+
+    private int rankOf(UserVo user) {
+        return user.getUserName() == null ? -1 : userSorter.getOrderOfUser(user.getUserName());
+    }
+}
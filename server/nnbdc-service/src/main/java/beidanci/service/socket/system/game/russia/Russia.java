@@ -7,9 +7,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.annotation.PostConstruct;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import beidanci.api.model.UserVo;
@@ -27,6 +30,7 @@ import beidanci.service.exception.ParseException;
 import beidanci.service.socket.SocketService;
 import beidanci.service.socket.UserCmd;
 import beidanci.service.socket.system.MySystem;
+import beidanci.service.socket.system.game.GameScheduler;
 import beidanci.service.socket.system.game.russia.state.ReadyState;
 import beidanci.service.store.WordCache;
 import beidanci.service.util.UserSorter;
@@ -68,6 +72,26 @@ public class Russia implements MySystem {
     @Autowired
     DictBo dictBo;
 
+    @Autowired
+    GameScheduler gameScheduler;
+
+    /**
+     * 大厅匹配策略：first（先到先得）或 scoreBand（按总积分排名分段匹配）
+     */
+    @Value("${gameMatch.policy:first}")
+    private String matchPolicyName;
+
+    @Value("${gameMatch.rankBand:500}")
+    private int rankBand;
+
+    @Value("${gameMatch.bandTimeoutMs:5000}")
+    private long bandTimeoutMs;
+
+    /**
+     * 所有大厅共用的匹配策略（无状态）
+     */
+    private MatchPolicy matchPolicy;
+
     /**
      * 系统中所有游戏大厅, key 为大厅的Id
      */
@@ -78,6 +102,18 @@ public class Russia implements MySystem {
      */
     private final Map<UserVo, Hall> users = new ConcurrentHashMap<>();
 
+    @PostConstruct
+    public void init() {
+        if ("scoreBand".equals(matchPolicyName)) {
+            matchPolicy = new ScoreBandMatchPolicy(rankBand, bandTimeoutMs);
+        } else {
+            if (!"first".equals(matchPolicyName)) {
+                log.warn(String.format("未知的匹配策略[%s]，使用先到先得", matchPolicyName));
+            }
+            matchPolicy = new FirstWaitingRoomPolicy();
+        }
+    }
+
     @Override
     public void processUserCmd(final UserVo user, UserCmd userCmd) throws IOException, IllegalAccessException, InvalidMeaningFormatException, EmptySpellException, ParseException {
         SocketService socketService = SocketService.getInstance();
@@ -96,7 +132,7 @@ public class Russia implements MySystem {
                         hall = gameHalls.get(hallId);
                         if (hall == null) {
                             hall = new Hall(hallId, this, socketService, wordCache, wordBo, userGameBo, rawWordBo,
-                                    userSorter, gameHallBo, sysParamBo, dictWordBo, userBo, selectedDictBo, dictBo);
+                                    userSorter, gameHallBo, sysParamBo, dictWordBo, userBo, selectedDictBo, dictBo, gameScheduler, matchPolicy);
                             // 构造完成后再启动定时任务，避免 this-escape
                             hall.startMonitoring();
                             gameHalls.put(hallId, hall);
@@ -118,7 +154,7 @@ public class Russia implements MySystem {
                         hall = gameHalls.get(hallId);
                         if (hall == null) {
                             hall = new Hall(hallId, this, socketService, wordCache, wordBo, userGameBo, rawWordBo,
-                                    userSorter, gameHallBo, sysParamBo, dictWordBo, userBo, selectedDictBo, dictBo);
+                                    userSorter, gameHallBo, sysParamBo, dictWordBo, userBo, selectedDictBo, dictBo, gameScheduler, matchPolicy);
                             hall.startMonitoring();
                             gameHalls.put(hallId, hall);
                         }
@@ -138,7 +174,7 @@ public class Russia implements MySystem {
                         hall = gameHalls.get(hallId);
                         if (hall == null) {
                             hall = new Hall(hallId, this, socketService, wordCache, wordBo, userGameBo, rawWordBo,
-                                    userSorter, gameHallBo, sysParamBo, dictWordBo, userBo, selectedDictBo, dictBo);
+                                    userSorter, gameHallBo, sysParamBo, dictWordBo, userBo, selectedDictBo, dictBo, gameScheduler, matchPolicy);
                             hall.startMonitoring();
                             gameHalls.put(hallId, hall);
                         }
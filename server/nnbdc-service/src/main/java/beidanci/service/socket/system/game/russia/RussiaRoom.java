@@ -20,6 +20,8 @@ import beidanci.service.bo.UserBo;
 import beidanci.service.bo.UserGameBo;
 import beidanci.service.bo.WordBo;
 import beidanci.service.socket.UserCmd;
+import beidanci.service.socket.system.game.GameScheduler;
+import beidanci.service.socket.system.game.SerialMailbox;
 import beidanci.service.socket.system.game.russia.state.EmptyState;
 import beidanci.service.socket.system.game.russia.state.ReadyState;
 import beidanci.service.socket.system.game.russia.state.RoomState;
@@ -28,6 +30,11 @@ import beidanci.service.store.WordCache;
 import beidanci.service.util.UserSorter;
 import beidanci.service.util.Util;
 
+/**
+ * 游戏室<br>
+ * 游戏室的所有状态变更（用户进出、用户命令、定时事件）都投递到游戏室的串行邮箱中按序执行，游戏室及其状态对象
+ * （RoomState、UserGameData）只会被邮箱的逻辑线程访问，无需加锁
+ */
 public class RussiaRoom {
     private static final Logger log = LoggerFactory.getLogger(RussiaRoom.class);
 
@@ -49,13 +56,24 @@ public class RussiaRoom {
     /**
      * 游戏室的当前状态，如果有一个人，为WaitSate；有两个人，为ReadyState; 没有人，为ExistingState
      */
-    private RoomState state;
+    private volatile RoomState state;
 
     /**
      * 是否为私有房间（仅通过房号进入，不参与大厅匹配）
      */
     private final boolean privateRoom;
 
+    /**
+     * 游戏室的串行邮箱
+     */
+    private final SerialMailbox mailbox;
+
+    /**
+     * 已占用的座位数（已在游戏室中的用户 + 已分配到本游戏室、进入消息尚在邮箱中的用户），由大厅分配游戏室时预占，
+     * 保证不会有超过两个用户被分配到同一个游戏室
+     */
+    private final AtomicInteger seats = new AtomicInteger();
+
     private final WordCache wordCache;
 
     private final WordBo wordBo;
@@ -97,6 +115,102 @@ public class RussiaRoom {
         this.userBo = userBo;
         this.dictBo = dictBo;
         this.privateRoom = privateRoom;
+        this.mailbox = hall.getGameScheduler().newMailbox("russia-room-" + roomId);
+    }
+
+    /**
+     * 把任务投递到游戏室的邮箱中执行
+     */
+    public void post(Runnable action) {
+        mailbox.execute(action);
+    }
+
+    /**
+     * 延迟指定时间后在游戏室的邮箱中执行（游戏室变空时自动取消）
+     */
+    public GameScheduler.Task schedule(Runnable action, long delayMs) {
+        return hall.getGameScheduler().schedule(this, mailbox, action, delayMs);
+    }
+
+    /**
+     * 预占一个座位，游戏室已满（或已预占满）时返回false
+     */
+    public boolean tryReserveSeat() {
+        while (true) {
+            int current = seats.get();
+            if (current >= 2) {
+                return false;
+            }
+            if (seats.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 游戏室中没有用户，也没有正在进入的用户
+     */
+    public boolean isEmpty() {
+        return seats.get() == 0;
+    }
+
+    /**
+     * 让已预占座位的用户进入游戏室（在邮箱中执行）
+     */
+    public void postUserEnter(UserVo user) {
+        post(() -> {
+            try {
+                userEnter(user);
+            } catch (IllegalAccessException | RuntimeException e) {
+                log.error("用户进入游戏室失败", e);
+                abortUserEnter(user);
+            }
+        });
+    }
+
+    /**
+     * 已预占座位的用户进入失败（在邮箱中执行）：释放座位、解除大厅中的登记，已加入用户表的从中移除并让游戏室状态与剩余用户一致
+     */
+    private void abortUserEnter(UserVo user) {
+        seats.decrementAndGet();
+        hall.unbindUser(user, this);
+        if (users.remove(user) != null) {
+            try {
+                onUserCountChanged(user);
+            } catch (IllegalAccessException | RuntimeException e) {
+                log.error("用户进入失败后恢复游戏室状态失败", e);
+            }
+        }
+    }
+
+    /**
+     * 让用户离开游戏室（在邮箱中执行）
+     */
+    public void postUserLeave(UserVo user) {
+        post(() -> {
+            try {
+                userLeave(user);
+            } catch (IllegalAccessException e) {
+                log.error("用户离开游戏室失败", e);
+            }
+        });
+    }
+
+    /**
+     * 在邮箱中处理用户命令
+     */
+    public void postUserCmd(UserVo user, UserCmd userCmd) {
+        post(() -> {
+            try {
+                processUserCmd(user, userCmd);
+            } catch (IllegalAccessException e) {
+                log.error("处理用户命令失败: " + userCmd, e);
+            }
+        });
+    }
+
+    public SerialMailbox getMailbox() {
+        return mailbox;
     }
 
     /**
@@ -114,6 +228,10 @@ public class RussiaRoom {
             case 2 -> new ReadyState(this, wordCache, wordBo, userGameBo, dictWordBo, userSorter, sysParamBo, userBo, dictBo);
             default -> new EmptyState(this);
         };
+        if (state instanceof EmptyState) {
+            // 游戏室已空，取消其尚未执行的定时任务（机器人进入、触底判定等）
+            hall.getGameScheduler().cancelAll(this);
+        }
         state.enter();
         hall.onRoomStateChanged(this);
         
@@ -204,30 +322,45 @@ public class RussiaRoom {
     }
 
     /**
-     * 延迟调度机器人进入房间
+     * 延迟调度机器人进入房间<br>
+     * 创建机器人要查询数据库，在阻塞任务线程池中进行，创建好后再投递回邮箱进入房间，不占用游戏室邮箱的线程
      * @param humanUser 人类玩家，用于创建机器人
      */
     private void scheduleBotEntry(UserVo humanUser) {
         // 延迟2-8秒后机器人进入房间，模拟真实用户的行为
         long delayMs = 2000 + (long)(Math.random() * 6000);
-        new java.util.Timer().schedule(new java.util.TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    // 再次检查房间状态，确保用户还在等待
-                    if (users.size() == 1 && state instanceof WaitState) {
-                        UserVo bot = createBot(humanUser);
-                        if (bot != null) {
-                            userEnter(bot);
-                        }
+        schedule(() -> {
+            // 再次检查房间状态，确保用户还在等待（并且大厅没有刚把另一位用户分配进来）
+            if (users.size() == 1 && state instanceof WaitState && tryReserveSeat()) {
+                hall.getGameScheduler().executeBlocking(() -> {
+                    UserVo bot = null;
+                    try {
+                        bot = createBot(humanUser);
+                    } finally {
+                        UserVo createdBot = bot;
+                        post(() -> botEnter(createdBot, humanUser));
                     }
-                } catch (IllegalAccessException e) {
-                    log.error("机器人进入房间失败", e);
-                }
+                });
             }
         }, delayMs);
     }
 
+    /**
+     * 已预占座位的机器人进入房间（在邮箱中执行）；机器人创建失败、或等待的用户已离开时释放座位
+     */
+    private void botEnter(UserVo bot, UserVo humanUser) {
+        if (bot == null || !users.containsKey(humanUser)) {
+            seats.decrementAndGet();
+            return;
+        }
+        try {
+            userEnter(bot);
+        } catch (IllegalAccessException | RuntimeException e) {
+            log.error("机器人进入房间失败", e);
+            abortUserEnter(bot);
+        }
+    }
+
     /**
      * 创建机器人用户
      */
@@ -300,6 +433,7 @@ public class RussiaRoom {
                 broadcastEvent("leaveRoom", new Object[]{user.getId(), Util.getNickNameOfUser(user)});
 
                 i.remove();
+                seats.decrementAndGet();
 
                 onUserCountChanged(user);
             }
@@ -309,6 +443,12 @@ public class RussiaRoom {
 
     public void processUserCmd(UserVo user, UserCmd userCmd) throws IllegalAccessException {
         log.info("Processing cmd: " + userCmd);
+        if (!users.containsKey(user)) {
+            // 用户在命令到达之前已离开游戏室（如被判定为长时间未操作）
+            log.warn(String.format("用户[%s]已不在游戏室[%d]中，忽略命令[%s]", Util.getNickNameOfUser(user), roomId,
+                    userCmd.getCmd()));
+            return;
+        }
 
         if (userCmd.getCmd().equals("CHAT")) {// 聊天命令，直接处理
             broadcastEvent("Chat", new ChatObject(user.getId(), Util.getNickNameOfUser(user), userCmd.getArgs()[0]));
@@ -0,0 +1,95 @@
+package beidanci.service.socket.system.game.russia;
+
+import java.util.Iterator;
+
+import beidanci.api.model.UserVo;
+
+/**
+ * 按总积分排名分段匹配：优先进入房主排名与用户最接近、且相差不超过 rankBand 的游戏室；房主等待超过 bandTimeoutMs
+ * 后不再限制排名（按等待先后）。没有积分的用户只与没有积分的房主同段。都不满足时由大厅新建游戏室，等不到对手时由机器人补位。<br>
+ * 只查看排名段内和等待队列队首的游戏室，匹配的开销取决于排名段内的游戏室数，而不是等待中的游戏室总数
+ */
+public class ScoreBandMatchPolicy implements MatchPolicy {
+    private final int rankBand;
+    private final long bandTimeoutMs;
+
+    public ScoreBandMatchPolicy(int rankBand, long bandTimeoutMs) {
+        this.rankBand = rankBand;
+        this.bandTimeoutMs = bandTimeoutMs;
+    }
+
+    @Override
+    public RussiaRoom match(UserVo user, int userRank, WaitingRooms waitingRooms, int exceptRoom) {
+        RussiaRoom room = userRank < 0
+                ? reserveFirst(waitingRooms.ascendingByRank(-1, -1).iterator(), exceptRoom)
+                : reserveNearest(userRank, waitingRooms, exceptRoom);
+        return room != null ? room : reserveTimedOut(waitingRooms, exceptRoom);
+    }
+
+    /**
+     * 从用户的排名向两侧同时展开，按排名距离由近到远尝试排名段内的游戏室
+     */
+    private RussiaRoom reserveNearest(int userRank, WaitingRooms waitingRooms, int exceptRoom) {
+        int maxRank = (int) Math.min((long) userRank + rankBand, Integer.MAX_VALUE);
+        int minRank = Math.max(userRank - rankBand, 0);
+        Iterator<WaitingRoom> higher = waitingRooms.ascendingByRank(userRank, maxRank).iterator();
+        Iterator<WaitingRoom> lower = waitingRooms.descendingByRank(minRank, userRank - 1).iterator();
+        WaitingRoom nextHigher = next(higher);
+        WaitingRoom nextLower = next(lower);
+        while (nextHigher != null || nextLower != null) {
+            WaitingRoom candidate;
+            if (nextLower == null || (nextHigher != null
+                    && distance(userRank, nextHigher.getHostRank()) <= distance(userRank, nextLower.getHostRank()))) {
+                candidate = nextHigher;
+                nextHigher = next(higher);
+            } else {
+                candidate = nextLower;
+                nextLower = next(lower);
+            }
+            if (candidate.getRoom().getId() != exceptRoom && candidate.getRoom().tryReserveSeat()) {
+                return candidate.getRoom();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 排名段内没有可进入的游戏室时，按等待先后尝试已等待超时的游戏室（只需查看队首，遇到未超时的即可停止）
+     */
+    private RussiaRoom reserveTimedOut(WaitingRooms waitingRooms, int exceptRoom) {
+        long now = System.currentTimeMillis();
+        for (WaitingRoom waitingRoom : waitingRooms.inWaitingOrder()) {
+            if (waitingRoom.getWaitingMillis(now) < bandTimeoutMs) {
+                break;
+            }
+            if (waitingRoom.getRoom().getId() != exceptRoom && waitingRoom.getRoom().tryReserveSeat()) {
+                return waitingRoom.getRoom();
+            }
+        }
+        return null;
+    }
+
+    private static RussiaRoom reserveFirst(Iterator<WaitingRoom> candidates, int exceptRoom) {
+        while (candidates.hasNext()) {
+            RussiaRoom room = candidates.next().getRoom();
+            if (room.getId() != exceptRoom && room.tryReserveSeat()) {
+                return room;
+            }
+        }
+        return null;
+    }
+
+    private static WaitingRoom next(Iterator<WaitingRoom> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * 两个排名的距离，没有积分（排名为-1）的用户只与同样没有积分的用户同段
+     */
+    static int distance(int rank1, int rank2) {
+        if (rank1 < 0 || rank2 < 0) {
+            return rank1 < 0 && rank2 < 0 ? 0 : Integer.MAX_VALUE;
+        }
+        return Math.abs(rank1 - rank2);
+    }
+}
@@ -0,0 +1,50 @@
+package beidanci.service.socket.system.game.russia;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 匹配队列中一个等待对手的游戏室，记录房主（先进入的用户）的总积分排名和开始等待的时间
+ */
+public final class WaitingRoom {
+    private static final AtomicLong nextSeq = new AtomicLong();
+
+    private final RussiaRoom room;
+
+    /**
+     * 房主的总积分排名，积分为零为-1
+     */
+    private final int hostRank;
+
+    private final long waitingSince;
+
+    /**
+     * 进入队列的顺序号，先进入的较小
+     */
+    private final long seq;
+
+    WaitingRoom(RussiaRoom room, int hostRank) {
+        this.room = room;
+        this.hostRank = hostRank;
+        this.waitingSince = System.currentTimeMillis();
+        this.seq = nextSeq.incrementAndGet();
+    }
+
+    public RussiaRoom getRoom() {
+        return room;
+    }
+
+    public int getHostRank() {
+        return hostRank;
+    }
+
+    long getSeq() {
+        return seq;
+    }
+
+    /**
+     * 已等待的时间（毫秒）
+     */
+    public long getWaitingMillis(long now) {
+        return now - waitingSince;
+    }
+}
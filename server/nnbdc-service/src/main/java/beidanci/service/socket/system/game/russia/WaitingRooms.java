@@ -0,0 +1,82 @@
+package beidanci.service.socket.system.game.russia;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 等待对手的公开游戏室，同时按开始等待的先后和房主排名索引，匹配时只需查看队首或排名相近的一段，不必遍历所有游戏室。<br>
+ * 同一游戏室的登记和移除以游戏室号为单位串行执行，不同游戏室之间不加锁
+ */
+public final class WaitingRooms {
+    private final Map<Integer, WaitingRoom> byRoomId = new ConcurrentHashMap<>();
+
+    /**
+     * 键为 {@link WaitingRoom#getSeq()}，即开始等待的先后
+     */
+    private final ConcurrentSkipListMap<Long, WaitingRoom> byWaitingOrder = new ConcurrentSkipListMap<>();
+
+    /**
+     * 键为 {@link #rankKey}，按房主排名、再按游戏室号排序
+     */
+    private final ConcurrentSkipListMap<Long, WaitingRoom> byRank = new ConcurrentSkipListMap<>();
+
+    /**
+     * 游戏室不在队列中时加入队列
+     */
+    void addIfAbsent(RussiaRoom room, int hostRank) {
+        byRoomId.computeIfAbsent(room.getId(), id -> {
+            WaitingRoom waitingRoom = new WaitingRoom(room, hostRank);
+            byWaitingOrder.put(waitingRoom.getSeq(), waitingRoom);
+            byRank.put(rankKey(hostRank, id), waitingRoom);
+            return waitingRoom;
+        });
+    }
+
+    void remove(int roomId) {
+        byRoomId.computeIfPresent(roomId, (id, waitingRoom) -> {
+            byWaitingOrder.remove(waitingRoom.getSeq(), waitingRoom);
+            byRank.remove(rankKey(waitingRoom.getHostRank(), id), waitingRoom);
+            return null;
+        });
+    }
+
+    public int size() {
+        return byRoomId.size();
+    }
+
+    /**
+     * 按开始等待的先后排列（等待最久的在前），遍历时不复制
+     */
+    public Collection<WaitingRoom> inWaitingOrder() {
+        return byWaitingOrder.values();
+    }
+
+    /**
+     * 房主排名在 [minRank, maxRank] 范围内的游戏室，按排名从低到高排列，遍历时不复制
+     */
+    public Collection<WaitingRoom> ascendingByRank(int minRank, int maxRank) {
+        return minRank > maxRank ? Collections.emptyList() : rankRange(minRank, maxRank).values();
+    }
+
+    /**
+     * 房主排名在 [minRank, maxRank] 范围内的游戏室，按排名从高到低排列，遍历时不复制
+     */
+    public Collection<WaitingRoom> descendingByRank(int minRank, int maxRank) {
+        return minRank > maxRank ? Collections.emptyList() : rankRange(minRank, maxRank).descendingMap().values();
+    }
+
+    private ConcurrentNavigableMap<Long, WaitingRoom> rankRange(int minRank, int maxRank) {
+        return byRank.subMap(rankKey(minRank, 0), true, rankKey(maxRank, Integer.MAX_VALUE), true);
+    }
+
+    /**
+     * 高32位为排名（有符号，没有积分的-1排在最前），低32位为游戏室号
+     */
+    private static long rankKey(int rank, int roomId) {
+        return ((long) rank << 32) | (roomId & 0xFFFFFFFFL);
+    }
+}
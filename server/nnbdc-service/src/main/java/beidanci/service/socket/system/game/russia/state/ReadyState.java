@@ -1,8 +1,5 @@
 package beidanci.service.socket.system.game.russia.state;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import org.apache.commons.lang3.NotImplementedException;
 
 import beidanci.api.model.UserVo;
@@ -14,6 +11,7 @@ import beidanci.service.bo.UserGameBo;
 import beidanci.service.bo.WordBo;
 import beidanci.service.po.SysParam;
 import beidanci.service.socket.UserCmd;
+import beidanci.service.socket.system.game.GameScheduler;
 import beidanci.service.socket.system.game.russia.RussiaRoom;
 import beidanci.service.socket.system.game.russia.UserGameData;
 import beidanci.service.store.WordCache;
@@ -45,152 +43,144 @@ public class ReadyState extends RoomState {
         return isPlaying;
     }
 
-    // 前端上报下落触底 ETA 的调度器与任务表（按用户）
-    private final java.util.Timer fallTimer = new java.util.Timer(true);
-    private final java.util.Map<String, java.util.TimerTask> fallTasks = new java.util.concurrent.ConcurrentHashMap<>();
+    // 前端上报下落触底 ETA 的任务表（按用户），任务在大厅共用的调度器中执行
+    private final java.util.Map<String, GameScheduler.Task> fallTasks = new java.util.concurrent.ConcurrentHashMap<>();
     // 同一单词最多只+1的防抖标记：userId -> 是否已对当前下落单词做过+1
     private final java.util.Map<String, java.lang.Boolean> stackAddedOnce = new java.util.concurrent.ConcurrentHashMap<>();
     // 机器人自动开始游戏的定时任务
-    private java.util.TimerTask botAutoStartTask = null;
+    private GameScheduler.Task botAutoStartTask = null;
     // 记录机器人上次的堆叠行数，用于检测是否被攻击
     private int botLastStackRows = 0;
     // 机器人使用道具的延迟任务（避免立即反击, 显得更真实）
-    private java.util.TimerTask botPropsDelayTask = null;
+    private GameScheduler.Task botPropsDelayTask = null;
+    // 机器人下一次动作（用道具 + 答题）的任务
+    private GameScheduler.Task botActionTask = null;
 
     /**
      * 递归调度机器人动作（用道具 + 答题），避免局部 lambda 的捕获初始化问题。
      */
-    private void scheduleBotNext(java.util.Timer botTimer, long delayMs, UserVo botUser, UserVo humanUser, int[] idx) {
-        botTimer.schedule(new java.util.TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    if (!isPlaying) {
-                        cancel();
-                        return;
-                    }
+    private void scheduleBotNext(long delayMs, UserVo botUser, UserVo humanUser, int[] idx) {
+        botActionTask = room.schedule(() -> {
+            try {
+                if (!isPlaying) {
+                    return;
+                }
 
-                    // 机器人所依附的“真实玩家”历史胜率（机器人昵称与胜率均来自该玩家）
-                    double botWinRatio = 0.5;
-                    try {
-                        beidanci.api.model.UserGameVo gameVo = botUser.getGameByName("russia");
-                        Integer winCountObj = gameVo.getWinCount();
-                        Integer loseCountObj = gameVo.getLoseCount();
-                        int w = winCountObj != null ? winCountObj : 0;
-                        int l = loseCountObj != null ? loseCountObj : 0;
-                        int total = Math.max(1, w + l);
-                        botWinRatio = w * 1.0 / total;
-                    } catch (Exception ignored2) {
-                    }
+                // 机器人所依附的“真实玩家”历史胜率（机器人昵称与胜率均来自该玩家）
+                double botWinRatio = 0.5;
+                try {
+                    beidanci.api.model.UserGameVo gameVo = botUser.getGameByName("russia");
+                    Integer winCountObj = gameVo.getWinCount();
+                    Integer loseCountObj = gameVo.getLoseCount();
+                    int w = winCountObj != null ? winCountObj : 0;
+                    int l = loseCountObj != null ? loseCountObj : 0;
+                    int total = Math.max(1, w + l);
+                    botWinRatio = w * 1.0 / total;
+                } catch (Exception ignored2) {
+                }
 
-                    // 正确率：人类越强，机器人越强 [0.45, 0.95] - 保持原有正确率
-                    double correctRate = Math.min(0.95, Math.max(0.45, 0.45 + botWinRatio * 0.5));
-                    // 思考时间：正确率越低，思考时间越长，上界接近“单词落到底部”的时间
-                    long now = System.currentTimeMillis();
-                    long sinceLastOp = now - room.getUserPlayData(humanUser).getLastOperationTime();
-                    final long minDelay = 2000; // 提高机器人答题速度20%：从2500减少到2000
-                    final long maxDelay = 4800; // 提高机器人答题速度20%：从6000减少到4800
-                    long baseDelay = (long) (maxDelay - (correctRate - 0.45) / (0.95 - 0.45) * (maxDelay - minDelay));
-                    long thinkDelay = Math.max(minDelay, Math.min(maxDelay, Math.max(baseDelay, sinceLastOp)));
-                    long jitter = (long) ((Math.random() - 0.5) * 600); // 增加随机性
-                    thinkDelay = Math.max(minDelay, Math.min(maxDelay, thinkDelay + jitter));
-
-                    // --- 自动使用道具（添加延迟，模拟人类反应时间） ---
-                    UserGameData botData = room.getUserPlayData(botUser);
-                    int currentStackRows = botData.getStackRows();
-
-                    // 检测堆叠行数是否增加（说明被对手攻击了）
-                    if (currentStackRows > botLastStackRows && botData.getPropsCounts()[1] > 0
-                            && botPropsDelayTask == null) {
-                        // 堆叠行数增加了，延迟300ms-2秒后使用"减一行"道具，模拟人类反应时间
-                        long delayMs = 300L + (long) (Math.random() * 1700L);
-                        botPropsDelayTask = new java.util.TimerTask() {
-                            @Override
-                            public void run() {
-                                try {
-                                    if (!isPlaying) {
-                                        cancel();
-                                        return;
-                                    }
-                                    UserGameData currentBotData = room.getUserPlayData(botUser);
-                                    if (currentBotData.getPropsCounts()[1] > 0 && currentBotData.getStackRows() > 0) {
-                                        UserCmd propsCmd = new UserCmd(userBo);
-                                        propsCmd.setUserBo(userBo);
-                                        java.lang.reflect.Field fUserId2 = UserCmd.class.getDeclaredField("userId");
-                                        fUserId2.setAccessible(true);
-                                        fUserId2.set(propsCmd, botUser.getId());
-                                        java.lang.reflect.Field fSystem2 = UserCmd.class.getDeclaredField("system");
-                                        fSystem2.setAccessible(true);
-                                        fSystem2.set(propsCmd, "russia");
-                                        java.lang.reflect.Field fCmd2 = UserCmd.class.getDeclaredField("cmd");
-                                        fCmd2.setAccessible(true);
-                                        fCmd2.set(propsCmd, "USE_PROPS");
-                                        java.lang.reflect.Field fArgs2 = UserCmd.class.getDeclaredField("args");
-                                        fArgs2.setAccessible(true);
-                                        fArgs2.set(propsCmd, new String[] { "1" });
-                                        room.processUserCmd(botUser, propsCmd);
-                                        // 打印机器人使用"减一行"日志
-                                        org.slf4j.LoggerFactory.getLogger(ReadyState.class)
-                                                .info(String.format("🤖 机器人[%s] 延迟%.1f秒后使用了道具[减一行]，库存：加一行=%d，减一行=%d",
-                                                        beidanci.service.util.Util.getNickNameOfUser(botUser),
-                                                        delayMs / 1000.0,
-                                                        currentBotData.getPropsCounts()[0],
-                                                        currentBotData.getPropsCounts()[1]));
-                                    }
-                                    botPropsDelayTask = null;
-                                } catch (Exception ignored) {
-                                }
+                // 正确率：人类越强，机器人越强 [0.45, 0.95] - 保持原有正确率
+                double correctRate = Math.min(0.95, Math.max(0.45, 0.45 + botWinRatio * 0.5));
+                // 思考时间：正确率越低，思考时间越长，上界接近“单词落到底部”的时间
+                long now = System.currentTimeMillis();
+                long sinceLastOp = now - room.getUserPlayData(humanUser).getLastOperationTime();
+                final long minDelay = 2000; // 提高机器人答题速度20%：从2500减少到2000
+                final long maxDelay = 4800; // 提高机器人答题速度20%：从6000减少到4800
+                long baseDelay = (long) (maxDelay - (correctRate - 0.45) / (0.95 - 0.45) * (maxDelay - minDelay));
+                long thinkDelay = Math.max(minDelay, Math.min(maxDelay, Math.max(baseDelay, sinceLastOp)));
+                long jitter = (long) ((Math.random() - 0.5) * 600); // 增加随机性
+                thinkDelay = Math.max(minDelay, Math.min(maxDelay, thinkDelay + jitter));
+
+                // --- 自动使用道具（添加延迟，模拟人类反应时间） ---
+                UserGameData botData = room.getUserPlayData(botUser);
+                int currentStackRows = botData.getStackRows();
+
+                // 检测堆叠行数是否增加（说明被对手攻击了）
+                if (currentStackRows > botLastStackRows && botData.getPropsCounts()[1] > 0
+                        && botPropsDelayTask == null) {
+                    // 堆叠行数增加了，延迟300ms-2秒后使用"减一行"道具，模拟人类反应时间
+                    long propsDelayMs = 300L + (long) (Math.random() * 1700L);
+                    botPropsDelayTask = room.schedule(() -> {
+                        try {
+                            if (!isPlaying) {
+                                return;
                             }
-                        };
-                        fallTimer.schedule(botPropsDelayTask, delayMs);
-                    }
-
-                    // 更新记录的堆叠行数
-                    botLastStackRows = currentStackRows;
-                    if (botData.getPropsCounts()[0] > 0) {
-                        UserCmd propsCmd2 = new UserCmd(userBo);
-                        propsCmd2.setUserBo(userBo);
-                        java.lang.reflect.Field fUserId3 = UserCmd.class.getDeclaredField("userId");
-                        fUserId3.setAccessible(true);
-                        fUserId3.set(propsCmd2, botUser.getId());
-                        java.lang.reflect.Field fSystem3 = UserCmd.class.getDeclaredField("system");
-                        fSystem3.setAccessible(true);
-                        fSystem3.set(propsCmd2, "russia");
-                        java.lang.reflect.Field fCmd3 = UserCmd.class.getDeclaredField("cmd");
-                        fCmd3.setAccessible(true);
-                        fCmd3.set(propsCmd2, "USE_PROPS");
-                        java.lang.reflect.Field fArgs3 = UserCmd.class.getDeclaredField("args");
-                        fArgs3.setAccessible(true);
-                        fArgs3.set(propsCmd2, new String[] { "0" });
-                        room.processUserCmd(botUser, propsCmd2);
-                    }
+                            UserGameData currentBotData = room.getUserPlayData(botUser);
+                            if (currentBotData.getPropsCounts()[1] > 0 && currentBotData.getStackRows() > 0) {
+                                UserCmd propsCmd = new UserCmd(userBo);
+                                propsCmd.setUserBo(userBo);
+                                java.lang.reflect.Field fUserId2 = UserCmd.class.getDeclaredField("userId");
+                                fUserId2.setAccessible(true);
+                                fUserId2.set(propsCmd, botUser.getId());
+                                java.lang.reflect.Field fSystem2 = UserCmd.class.getDeclaredField("system");
+                                fSystem2.setAccessible(true);
+                                fSystem2.set(propsCmd, "russia");
+                                java.lang.reflect.Field fCmd2 = UserCmd.class.getDeclaredField("cmd");
+                                fCmd2.setAccessible(true);
+                                fCmd2.set(propsCmd, "USE_PROPS");
+                                java.lang.reflect.Field fArgs2 = UserCmd.class.getDeclaredField("args");
+                                fArgs2.setAccessible(true);
+                                fArgs2.set(propsCmd, new String[] { "1" });
+                                room.processUserCmd(botUser, propsCmd);
+                                // 打印机器人使用"减一行"日志
+                                org.slf4j.LoggerFactory.getLogger(ReadyState.class)
+                                        .info(String.format("🤖 机器人[%s] 延迟%.1f秒后使用了道具[减一行]，库存：加一行=%d，减一行=%d",
+                                                beidanci.service.util.Util.getNickNameOfUser(botUser),
+                                                propsDelayMs / 1000.0,
+                                                currentBotData.getPropsCounts()[0],
+                                                currentBotData.getPropsCounts()[1]));
+                            }
+                            botPropsDelayTask = null;
+                        } catch (Exception ignored) {
+                        }
+                    }, propsDelayMs);
+                }
 
-                    // 答题：保持原有正确率，主要调整速度
-                    double jitterRate = (Math.random() - 0.5) * 0.1;
-                    boolean correct = Math.random() < Math.min(0.98, Math.max(0.02, correctRate + jitterRate));
-
-                    UserCmd cmd = new UserCmd(userBo);
-                    cmd.setUserBo(userBo);
-                    java.lang.reflect.Field fUserId = UserCmd.class.getDeclaredField("userId");
-                    fUserId.setAccessible(true);
-                    fUserId.set(cmd, botUser.getId());
-                    java.lang.reflect.Field fSystem = UserCmd.class.getDeclaredField("system");
-                    fSystem.setAccessible(true);
-                    fSystem.set(cmd, "russia");
-                    java.lang.reflect.Field fCmd = UserCmd.class.getDeclaredField("cmd");
-                    fCmd.setAccessible(true);
-                    fCmd.set(cmd, "GET_NEXT_WORD");
-                    java.lang.reflect.Field fArgs = UserCmd.class.getDeclaredField("args");
-                    fArgs.setAccessible(true);
-                    fArgs.set(cmd, new String[] { String.valueOf(idx[0]++), correct ? "true" : "false", "" });
-                    room.processUserCmd(botUser, cmd);
-
-                    // 下一次
-                    scheduleBotNext(botTimer, thinkDelay, botUser, humanUser, idx);
-                } catch (IllegalAccessException | IllegalArgumentException | NoSuchFieldException
-                        | SecurityException ignored) {
-                    cancel();
+                // 更新记录的堆叠行数
+                botLastStackRows = currentStackRows;
+                if (botData.getPropsCounts()[0] > 0) {
+                    UserCmd propsCmd2 = new UserCmd(userBo);
+                    propsCmd2.setUserBo(userBo);
+                    java.lang.reflect.Field fUserId3 = UserCmd.class.getDeclaredField("userId");
+                    fUserId3.setAccessible(true);
+                    fUserId3.set(propsCmd2, botUser.getId());
+                    java.lang.reflect.Field fSystem3 = UserCmd.class.getDeclaredField("system");
+                    fSystem3.setAccessible(true);
+                    fSystem3.set(propsCmd2, "russia");
+                    java.lang.reflect.Field fCmd3 = UserCmd.class.getDeclaredField("cmd");
+                    fCmd3.setAccessible(true);
+                    fCmd3.set(propsCmd2, "USE_PROPS");
+                    java.lang.reflect.Field fArgs3 = UserCmd.class.getDeclaredField("args");
+                    fArgs3.setAccessible(true);
+                    fArgs3.set(propsCmd2, new String[] { "0" });
+                    room.processUserCmd(botUser, propsCmd2);
                 }
+
+                // 答题：保持原有正确率，主要调整速度
+                double jitterRate = (Math.random() - 0.5) * 0.1;
+                boolean correct = Math.random() < Math.min(0.98, Math.max(0.02, correctRate + jitterRate));
+
+                UserCmd cmd = new UserCmd(userBo);
+                cmd.setUserBo(userBo);
+                java.lang.reflect.Field fUserId = UserCmd.class.getDeclaredField("userId");
+                fUserId.setAccessible(true);
+                fUserId.set(cmd, botUser.getId());
+                java.lang.reflect.Field fSystem = UserCmd.class.getDeclaredField("system");
+                fSystem.setAccessible(true);
+                fSystem.set(cmd, "russia");
+                java.lang.reflect.Field fCmd = UserCmd.class.getDeclaredField("cmd");
+                fCmd.setAccessible(true);
+                fCmd.set(cmd, "GET_NEXT_WORD");
+                java.lang.reflect.Field fArgs = UserCmd.class.getDeclaredField("args");
+                fArgs.setAccessible(true);
+                fArgs.set(cmd, new String[] { String.valueOf(idx[0]++), correct ? "true" : "false", "" });
+                room.processUserCmd(botUser, cmd);
+
+                // 下一次
+                scheduleBotNext(thinkDelay, botUser, humanUser, idx);
+            } catch (IllegalAccessException | IllegalArgumentException | NoSuchFieldException
+                    | SecurityException ignored) {
+                // 不再调度下一次
             }
         }, delayMs);
     }
@@ -202,27 +192,21 @@ public class ReadyState extends RoomState {
             return;
         // 新词开始下落，重置“一次性+1”标记
         stackAddedOnce.put(user.getId(), Boolean.FALSE);
-        java.util.TimerTask task = new java.util.TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    if (!isPlaying) {
-                        cancel();
-                        return;
-                    }
-                    // 若在ETA到达时该用户没有提交答题（近似判断：lastUserCmd不是GET_NEXT_WORD或时间未更新），则判定触底堆叠+1
-                    tryAddStackOnce(user, "触底");
-                } catch (Exception ignored) {
-                    cancel();
+        GameScheduler.Task task = room.schedule(() -> {
+            try {
+                if (!isPlaying) {
+                    return;
                 }
+                // 若在ETA到达时该用户没有提交答题（近似判断：lastUserCmd不是GET_NEXT_WORD或时间未更新），则判定触底堆叠+1
+                tryAddStackOnce(user, "触底");
+            } catch (Exception ignored) {
             }
-        };
+        }, Math.max(1, etaMs));
         fallTasks.put(user.getId(), task);
-        fallTimer.schedule(task, Math.max(1, etaMs));
     }
 
     private void cancelFallTask(UserVo user) {
-        java.util.TimerTask old = fallTasks.remove(user.getId());
+        GameScheduler.Task old = fallTasks.remove(user.getId());
         if (old != null)
             old.cancel();
     }
@@ -267,45 +251,40 @@ public class ReadyState extends RoomState {
                 long delayMs = 3000L + (long) (Math.random() * 7000L);
                 final UserVo botUser = user;
 
-                botAutoStartTask = new java.util.TimerTask() {
-                    @Override
-                    public void run() {
-                        try {
-                            // 检查机器人是否还在房间内且还未开始
-                            if (room.getUsers().containsKey(botUser)) {
-                                UserGameData botData = room.getUserPlayData(botUser);
-                                if (botData != null && !botData.isMatchStarted() && !isPlaying) {
-                                    // 模拟机器人点击开始按钮
-                                    UserCmd startCmd = new UserCmd(userBo);
-                                    startCmd.setUserBo(userBo);
-                                    java.lang.reflect.Field fUserId = UserCmd.class.getDeclaredField("userId");
-                                    fUserId.setAccessible(true);
-                                    fUserId.set(startCmd, botUser.getId());
-                                    java.lang.reflect.Field fSystem = UserCmd.class.getDeclaredField("system");
-                                    fSystem.setAccessible(true);
-                                    fSystem.set(startCmd, "russia");
-                                    java.lang.reflect.Field fCmd = UserCmd.class.getDeclaredField("cmd");
-                                    fCmd.setAccessible(true);
-                                    fCmd.set(startCmd, "START_GAME");
-                                    java.lang.reflect.Field fArgs = UserCmd.class.getDeclaredField("args");
-                                    fArgs.setAccessible(true);
-                                    fArgs.set(startCmd, new String[] {});
-
-                                    room.processUserCmd(botUser, startCmd);
-
-                                    org.slf4j.LoggerFactory.getLogger(ReadyState.class)
-                                            .info(String.format("🤖 机器人[%s]自动点击开始按钮完成，已调用processUserCmd",
-                                                    Util.getNickNameOfUser(botUser)));
-                                }
+                botAutoStartTask = room.schedule(() -> {
+                    try {
+                        // 检查机器人是否还在房间内且还未开始
+                        if (room.getUsers().containsKey(botUser)) {
+                            UserGameData botData = room.getUserPlayData(botUser);
+                            if (botData != null && !botData.isMatchStarted() && !isPlaying) {
+                                // 模拟机器人点击开始按钮
+                                UserCmd startCmd = new UserCmd(userBo);
+                                startCmd.setUserBo(userBo);
+                                java.lang.reflect.Field fUserId = UserCmd.class.getDeclaredField("userId");
+                                fUserId.setAccessible(true);
+                                fUserId.set(startCmd, botUser.getId());
+                                java.lang.reflect.Field fSystem = UserCmd.class.getDeclaredField("system");
+                                fSystem.setAccessible(true);
+                                fSystem.set(startCmd, "russia");
+                                java.lang.reflect.Field fCmd = UserCmd.class.getDeclaredField("cmd");
+                                fCmd.setAccessible(true);
+                                fCmd.set(startCmd, "START_GAME");
+                                java.lang.reflect.Field fArgs = UserCmd.class.getDeclaredField("args");
+                                fArgs.setAccessible(true);
+                                fArgs.set(startCmd, new String[] {});
+
+                                room.processUserCmd(botUser, startCmd);
+
+                                org.slf4j.LoggerFactory.getLogger(ReadyState.class)
+                                        .info(String.format("🤖 机器人[%s]自动点击开始按钮完成，已调用processUserCmd",
+                                                Util.getNickNameOfUser(botUser)));
                             }
-                        } catch (Exception e) {
-                            org.slf4j.LoggerFactory.getLogger(ReadyState.class)
-                                    .error("机器人自动开始失败", e);
                         }
+                    } catch (Exception e) {
+                        org.slf4j.LoggerFactory.getLogger(ReadyState.class)
+                                .error("机器人自动开始失败", e);
                     }
-                };
-
-                fallTimer.schedule(botAutoStartTask, delayMs);
+                }, delayMs);
 
                 org.slf4j.LoggerFactory.getLogger(ReadyState.class)
                         .info(String.format("🤖 已调度机器人[%s]在%.1f秒后自动开始",
@@ -463,41 +442,38 @@ public class ReadyState extends RoomState {
             long delayMs = 2000L + (long) (Math.random() * 3000L);
             final UserVo bot = anotherUser;
             final UserVo humanUser = user;
-            new Timer(true).schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    try {
-                        // 机器人有10%的概率选择离开而不是开始游戏，更真实
-                        // （因为人类已经点击开始，所以离开概率略低于主动开始时的概率）
-                        double leaveChance = 0.10;
-                        if (Math.random() < leaveChance) {
-                            org.slf4j.LoggerFactory.getLogger(ReadyState.class)
-                                    .info(String.format("🤖 机器人[%s]在人类玩家开始后选择离开游戏（延迟%.1f秒后的决定）",
-                                            Util.getNickNameOfUser(bot), delayMs / 1000.0));
-                            // 让机器人离开房间
-                            room.userLeave(bot);
-                            return;
-                        }
-
-                        // 90%概率：先广播机器人点击了开始
-                        room.broadcastEvent("userStarted", bot.getId());
+            room.schedule(() -> {
+                try {
+                    // 机器人有10%的概率选择离开而不是开始游戏，更真实
+                    // （因为人类已经点击开始，所以离开概率略低于主动开始时的概率）
+                    double leaveChance = 0.10;
+                    if (Math.random() < leaveChance) {
                         org.slf4j.LoggerFactory.getLogger(ReadyState.class)
-                                .info(String.format("✅ 已广播机器人[%s]的userStarted事件",
-                                        Util.getNickNameOfUser(bot)));
+                                .info(String.format("🤖 机器人[%s]在人类玩家开始后选择离开游戏（延迟%.1f秒后的决定）",
+                                        Util.getNickNameOfUser(bot), delayMs / 1000.0));
+                        // 让机器人离开房间
+                        room.userLeave(bot);
+                        return;
+                    }
 
-                        // 设置机器人为已开始状态
-                        UserGameData botPlayData = room.getUserPlayData(bot);
-                        UserGameData humanPlayData = room.getUserPlayData(humanUser);
-                        botPlayData.setMatchStarted(true);
+                    // 90%概率：先广播机器人点击了开始
+                    room.broadcastEvent("userStarted", bot.getId());
+                    org.slf4j.LoggerFactory.getLogger(ReadyState.class)
+                            .info(String.format("✅ 已广播机器人[%s]的userStarted事件",
+                                    Util.getNickNameOfUser(bot)));
 
-                        // 检查双方是否都已开始，如果是则开始游戏
-                        if (botPlayData.isMatchStarted() && humanPlayData.isMatchStarted()) {
-                            startGame(humanUser, bot, humanPlayData, botPlayData);
-                        }
-                    } catch (Exception e) {
-                        org.slf4j.LoggerFactory.getLogger(ReadyState.class)
-                                .error("机器人延迟开始失败", e);
+                    // 设置机器人为已开始状态
+                    UserGameData botPlayData = room.getUserPlayData(bot);
+                    UserGameData humanPlayData = room.getUserPlayData(humanUser);
+                    botPlayData.setMatchStarted(true);
+
+                    // 检查双方是否都已开始，如果是则开始游戏
+                    if (botPlayData.isMatchStarted() && humanPlayData.isMatchStarted()) {
+                        startGame(humanUser, bot, humanPlayData, botPlayData);
                     }
+                } catch (Exception e) {
+                    org.slf4j.LoggerFactory.getLogger(ReadyState.class)
+                            .error("机器人延迟开始失败", e);
                 }
             }, delayMs);
             return; // 机器人需要延迟，直接返回，不继续执行后面的开始游戏逻辑
@@ -532,7 +508,7 @@ public class ReadyState extends RoomState {
         room.broadcastEvent("sysCmd", "BEGIN");
         isPlaying = true;
         // 清空历史触底计时
-        fallTasks.values().forEach(java.util.TimerTask::cancel);
+        fallTasks.values().forEach(GameScheduler.Task::cancel);
         fallTasks.clear();
         // 清空堆叠标记，避免上一局游戏状态影响新游戏
         stackAddedOnce.clear();
@@ -557,11 +533,15 @@ public class ReadyState extends RoomState {
         // 若存在机器人：
         // 1) 根据对手历史胜率动态模拟答题：胜率越低，思考时间越长，并加入随机性
         // 2) 同时根据局势自动使用道具（自救优先，其次进攻），使用与答题共享的调度器
+        if (botActionTask != null) {
+            // 上一局的机器人动作可能还未结束（本局开始时 isPlaying 又变为 true），避免两条动作链同时运行
+            botActionTask.cancel();
+            botActionTask = null;
+        }
         if (botUser != null) {
-            final java.util.Timer botTimer = new java.util.Timer(true);
             final int[] idx = new int[] { 0 };
             // 首次调度：设置合理的初始延迟，让机器人与人类基本同步开始
-            scheduleBotNext(botTimer, 800L, botUser, humanUser, idx);
+            scheduleBotNext(800L, botUser, humanUser, idx);
         }
 
         // 两位玩家各扣除若干魔法泡泡（按照系统配置）
@@ -588,6 +568,11 @@ public class ReadyState extends RoomState {
             botPropsDelayTask.cancel();
             botPropsDelayTask = null;
         }
+        // 取消机器人的下一次动作
+        if (botActionTask != null) {
+            botActionTask.cancel();
+            botActionTask = null;
+        }
 
         // 游戏正在进行中，用户退出，判为输家，另一方判为赢家
         if (isPlaying) {
@@ -597,7 +582,7 @@ public class ReadyState extends RoomState {
             room.broadcastEvent("loser", loser.getId());
             gameOverProcessor.adjustUserScore(winer, loser);
             isPlaying = false;
-            fallTasks.values().forEach(java.util.TimerTask::cancel);
+            fallTasks.values().forEach(GameScheduler.Task::cancel);
             fallTasks.clear();
             // 清空堆叠标记
             stackAddedOnce.clear();
@@ -0,0 +1,322 @@
+package beidanci.service.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import beidanci.api.Result;
+import beidanci.api.model.DictRes;
+import beidanci.api.model.DictResDelta;
+import beidanci.service.util.DictResBinaryCodec;
+import beidanci.service.util.JsonResponseWriter;
+import beidanci.util.CountingOutputStream;
+
+/**
+ * 系统词典资源缓存<br>
+ * 以 (dictId, sysDbVersion, 格式) 为键，把gzip压缩后的 Result&lt;DictRes&gt; JSON（或 {@link DictResBinaryCodec} 二进制编码）保存在本地磁盘上，
+ * 命中时直接把文件内容传输到应答，不再查询数据库和序列化。
+ * 系统数据有变更时（{@link beidanci.service.bo.SysDbLogBo#logOperation}）全局版本号递增，旧的缓存随之失效。
+ * 同时在内存中缓存最近生成的增量包（{@link DictResDelta}）
+ */
+@Component
+public class DictResCache {
+    private static final Logger log = LoggerFactory.getLogger(DictResCache.class);
+
+    private static final String FILE_SUFFIX = ".gz";
+
+    /**
+     * 正在写入的临时文件，写完后改名为正式的缓存文件
+     */
+    private static final String TMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * 缓存文件的编码格式
+     */
+    public enum Format {
+        JSON("application/json;charset=UTF-8", ".json"),
+        COLUMNAR(DictResBinaryCodec.MEDIA_TYPE, ".bin");
+
+        private final String contentType;
+        private final String fileType;
+
+        Format(String contentType, String fileType) {
+            this.contentType = contentType;
+            this.fileType = fileType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    /**
+     * 只缓存ID由这些字符组成的词典（ID要用作文件名）
+     */
+    private static final Pattern CACHEABLE_DICT_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    @Autowired
+    JsonResponseWriter jsonResponseWriter;
+
+    @Value("${dictResCache.dir:${java.io.tmpdir}/nnbdc/dict-res}")
+    private String cacheDir;
+
+    private Path dir;
+
+    /**
+     * 各词典当前的缓存文件（每种格式一个）
+     */
+    private final ConcurrentHashMap<String, CachedDictRes> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 各词典的构建锁，避免并发请求同时构建同一个词典的缓存
+     */
+    private final ConcurrentHashMap<String, Object> buildLocks = new ConcurrentHashMap<>();
+
+    @Value("${dictResCache.maxDeltaEntries:256}")
+    private int maxDeltaEntries;
+
+    /**
+     * 已生成的增量包，键为 dictId:fromVersion:toVersion（日志不会被修改，所以增量包生成后不会过期），按最近使用淘汰
+     */
+    private final Map<String, DictResDelta> deltas = Collections.synchronizedMap(new LinkedHashMap<String, DictResDelta>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DictResDelta> eldest) {
+            return size() > maxDeltaEntries;
+        }
+    });
+
+    /**
+     * 加载词典资源（查询数据库）
+     */
+    @FunctionalInterface
+    public interface DictResLoader {
+        DictRes load() throws IOException, ParseException;
+    }
+
+    /**
+     * 一个已缓存的词典资源文件
+     */
+    public static class CachedDictRes {
+        private final String dictId;
+        private final int version;
+        private final Format format;
+        private final Path file;
+        private final long gzipLength;
+        private final long originalLength;
+
+        CachedDictRes(String dictId, int version, Format format, Path file, long gzipLength, long originalLength) {
+            this.dictId = dictId;
+            this.version = version;
+            this.format = format;
+            this.file = file;
+            this.gzipLength = gzipLength;
+            this.originalLength = originalLength;
+        }
+
+        public String getDictId() {
+            return dictId;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public Format getFormat() {
+            return format;
+        }
+
+        /**
+         * gzip压缩后的字节数
+         */
+        public long getGzipLength() {
+            return gzipLength;
+        }
+
+        /**
+         * 未压缩的字节数
+         */
+        public long getOriginalLength() {
+            return originalLength;
+        }
+
+        public String getETag() {
+            return "\"" + dictId + "-" + version + (format == Format.JSON ? "" : "-" + format.name().toLowerCase()) + "\"";
+        }
+
+        /**
+         * 把gzip压缩的内容原样传输到输出流（不解压、不重新编码）。
+         * Servlet 的输出流不是文件描述符，FileChannel.transferTo 会退化为经堆内缓冲区的逐块复制，并不是零拷贝
+         */
+        public void transferGzipTo(OutputStream out) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = 0;
+                long size = channel.size();
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            }
+            out.flush();
+        }
+
+        /**
+         * 解压后传输到输出流（用于不支持gzip的客户端）
+         */
+        public void transferTo(OutputStream out) throws IOException {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+                in.transferTo(out);
+            }
+            out.flush();
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        dir = Paths.get(cacheDir);
+        Files.createDirectories(dir);
+        // 进程重启后不知道旧文件对应的版本是否仍然有效，直接清空；进程在写入过程中退出时会留下临时文件，一并删除
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*{" + FILE_SUFFIX + "," + TMP_FILE_SUFFIX + "}")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        log.info("词典资源缓存目录: {}", dir.toAbsolutePath());
+    }
+
+    public static boolean isCacheableDictId(String dictId) {
+        return dictId != null && CACHEABLE_DICT_ID.matcher(dictId).matches();
+    }
+
+    /**
+     * 获取指定版本的词典资源缓存，不存在则调用 loader 加载并写入缓存
+     *
+     * @param sysDbVersion 当前的系统数据版本号
+     */
+    public CachedDictRes getOrLoad(String dictId, int sysDbVersion, Format format, DictResLoader loader) throws IOException, ParseException {
+        CachedDictRes entry = get(dictId, sysDbVersion, format);
+        if (entry != null) {
+            return entry;
+        }
+
+        String key = entryKey(dictId, format);
+        Object buildLock = buildLocks.computeIfAbsent(key, k -> new Object());
+        synchronized (buildLock) {
+            entry = get(dictId, sysDbVersion, format);
+            if (entry != null) {
+                return entry;
+            }
+
+            DictRes dictRes = loader.load();
+            Path file = dir.resolve(dictId + "-" + sysDbVersion + format.fileType + FILE_SUFFIX);
+            Path tmpFile = Files.createTempFile(dir, dictId + "-", TMP_FILE_SUFFIX);
+            long originalLength;
+            long gzipLength;
+            try {
+                if (format == Format.COLUMNAR) {
+                    CountingOutputStream fileOut = new CountingOutputStream(Files.newOutputStream(tmpFile));
+                    CountingOutputStream bodyOut = new CountingOutputStream(new GZIPOutputStream(fileOut));
+                    try (OutputStream out = bodyOut) {
+                        DictResBinaryCodec.encodeDictRes(dictRes, out);
+                    }
+                    originalLength = bodyOut.getByteCount();
+                    gzipLength = fileOut.getByteCount();
+                } else {
+                    JsonResponseWriter.WriteStats stats;
+                    try (OutputStream out = Files.newOutputStream(tmpFile)) {
+                        stats = jsonResponseWriter.writeGzip(Result.success(dictRes), out);
+                    }
+                    originalLength = stats.getOriginalBytes();
+                    gzipLength = stats.getTransferredBytes();
+                }
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmpFile);
+            }
+
+            entry = new CachedDictRes(dictId, sysDbVersion, format, file, gzipLength, originalLength);
+            CachedDictRes old = entries.put(key, entry);
+            if (old != null && !old.file.equals(file)) {
+                deleteFile(old.file);
+            }
+            log.info("词典资源缓存已生成, dictId: {}, 版本: {}, 格式: {}, 原始大小: {}字节, 压缩后: {}字节",
+                    dictId, sysDbVersion, format, originalLength, gzipLength);
+            return entry;
+        }
+    }
+
+    private static String entryKey(String dictId, Format format) {
+        return dictId + format.fileType;
+    }
+
+    /**
+     * 获取指定版本的词典资源缓存，不存在返回null
+     */
+    public CachedDictRes get(String dictId, int sysDbVersion, Format format) {
+        CachedDictRes entry = entries.get(entryKey(dictId, format));
+        if (entry != null && entry.version == sysDbVersion && Files.exists(entry.file)) {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * 获取词典资源从 fromVersion 到 toVersion 的增量包，不存在则调用 loader 生成
+     */
+    public DictResDelta getOrLoadDelta(String dictId, int fromVersion, int toVersion, Supplier<DictResDelta> loader) {
+        String key = dictId + ":" + fromVersion + ":" + toVersion;
+        DictResDelta delta = deltas.get(key);
+        if (delta == null) {
+            // 并发生成同一个增量包的结果相同，不需要加锁
+            delta = loader.get();
+            deltas.put(key, delta);
+        }
+        return delta;
+    }
+
+    /**
+     * 清除所有词典资源缓存（系统数据变更时调用）
+     */
+    public void invalidateAll() {
+        for (String key : entries.keySet()) {
+            CachedDictRes entry = entries.remove(key);
+            if (entry != null) {
+                deleteFile(entry.file);
+            }
+        }
+    }
+
+    private void deleteFile(Path file) {
+        try {
+            // 正在传输该文件的请求不受影响（已打开的文件句柄仍然有效）
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除词典资源缓存文件失败: {}", file, e);
+        }
+    }
+}
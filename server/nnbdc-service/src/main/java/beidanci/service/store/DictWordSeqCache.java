@@ -0,0 +1,210 @@
+package beidanci.service.store;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import beidanci.service.bo.DictWordBo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 单词书的 序号 -> 单词 数组（按需从dict_word加载，按最近使用淘汰）<br>
+ * 取下一个要学习的单词时在内存中按序号扫描，不必每个序号查询一次数据库。
+ * 单词书的单词或序号有变化时需调用 {@link #invalidate} 使其失效。失效的单词书在当前事务结束前读到的是未提交的数据，
+ * 不放入缓存，事务结束（提交或回滚）后再清除一次
+ */
+@Component
+public class DictWordSeqCache {
+
+    /**
+     * 一本单词书中按序号排列的单词（同时给出单词ID和单词编号，见 {@link WordOrdinals}）。加载后不再修改，可被多个请求共享
+     */
+    public static final class DictWordSeq {
+        private final String[] wordIds;
+        private final int[] ordinals;
+
+        private DictWordSeq(String[] wordIds, int[] ordinals) {
+            this.wordIds = wordIds;
+            this.ordinals = ordinals;
+        }
+
+        /**
+         * 最大序号（序号从1开始，可能有空缺）
+         */
+        public int getMaxSeq() {
+            return wordIds.length;
+        }
+
+        /**
+         * 指定序号的单词ID，序号空缺时为null
+         */
+        public String getWordId(int seq) {
+            return wordIds[seq - 1];
+        }
+
+        /**
+         * 指定序号的单词编号，序号空缺时为-1
+         */
+        public int getOrdinal(int seq) {
+            return ordinals[seq - 1];
+        }
+
+        /**
+         * 序号不大于指定值的所有单词（以单词编号表示）
+         */
+        public BitSet getOrdinalsUpTo(int seq) {
+            BitSet result = new BitSet();
+            for (int i = 0; i < Math.min(seq, ordinals.length); i++) {
+                if (ordinals[i] >= 0) {
+                    result.set(ordinals[i]);
+                }
+            }
+            return result;
+        }
+    }
+
+    @Autowired
+    DictWordBo dictWordBo;
+
+    @Autowired
+    WordOrdinals wordOrdinals;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${dictWordSeqCache.maxDicts:2000}")
+    private int maxDicts;
+
+    /**
+     * 键为单词书ID
+     */
+    private final Map<String, DictWordSeq> seqsOfDicts = Collections.synchronizedMap(new LinkedHashMap<String, DictWordSeq>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DictWordSeq> eldest) {
+            return size() > maxDicts;
+        }
+    });
+
+    /**
+     * 每次使缓存失效时递增，加载期间失效过的数组不再放入缓存（可能是旧数据）
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 事务中失效的单词书集合里表示"所有单词书"的元素
+     */
+    private static final String ALL_DICTS = "*";
+
+    private Counter hitCounter;
+    private Counter missCounter;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("nnbdc.dict.seq.cache.size", seqsOfDicts, Map::size)
+                .description("已缓存序号数组的单词书数")
+                .register(meterRegistry);
+        hitCounter = Counter.builder("nnbdc.dict.seq.cache.requests")
+                .description("读取单词书序号数组的次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        missCounter = Counter.builder("nnbdc.dict.seq.cache.requests")
+                .description("读取单词书序号数组的次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取单词书中按序号排列的单词
+     */
+    public DictWordSeq get(String dictId) {
+        DictWordSeq seq = seqsOfDicts.get(dictId);
+        if (seq != null) {
+            hitCounter.increment();
+            return seq;
+        }
+        missCounter.increment();
+        long currentGeneration = generation.get();
+        String[] wordIds = dictWordBo.loadWordIdsBySeq(dictId);
+        int[] ordinals = new int[wordIds.length];
+        for (int i = 0; i < wordIds.length; i++) {
+            ordinals[i] = wordIds[i] == null ? -1 : wordOrdinals.ordinalOf(wordIds[i]);
+        }
+        seq = new DictWordSeq(wordIds, ordinals);
+        if (currentGeneration == generation.get() && !invalidatedInCurrentTransaction(dictId)) {
+            seq = putIfAbsent(dictId, seq);
+        }
+        return seq;
+    }
+
+    private DictWordSeq putIfAbsent(String dictId, DictWordSeq seq) {
+        synchronized (seqsOfDicts) {
+            DictWordSeq existing = seqsOfDicts.get(dictId);
+            if (existing != null) {
+                return existing;
+            }
+            seqsOfDicts.put(dictId, seq);
+            return seq;
+        }
+    }
+
+    /**
+     * 单词书的单词或序号有变化时调用
+     *
+     * @param dictId 为null时清除所有单词书
+     */
+    public void invalidate(String dictId) {
+        evict(dictId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        // 事务结束前，本事务读到的是未提交的数据（回滚后就不存在），不能放入缓存；
+        // 其他请求在提交前也可能读到旧数据并放入缓存。所以事务结束（无论提交还是回滚）后再清除一次
+        @SuppressWarnings("unchecked")
+        Set<String> invalidated = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (invalidated == null) {
+            Set<String> dicts = new HashSet<>();
+            invalidated = dicts;
+            TransactionSynchronizationManager.bindResource(this, dicts);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DictWordSeqCache.this);
+                    for (String dict : dicts) {
+                        evict(ALL_DICTS.equals(dict) ? null : dict);
+                    }
+                }
+            });
+        }
+        invalidated.add(dictId == null ? ALL_DICTS : dictId);
+    }
+
+    private boolean invalidatedInCurrentTransaction(String dictId) {
+        @SuppressWarnings("unchecked")
+        Set<String> invalidated = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        return invalidated != null && (invalidated.contains(dictId) || invalidated.contains(ALL_DICTS));
+    }
+
+    private void evict(String dictId) {
+        generation.incrementAndGet();
+        if (dictId == null) {
+            seqsOfDicts.clear();
+        } else {
+            seqsOfDicts.remove(dictId);
+        }
+    }
+}
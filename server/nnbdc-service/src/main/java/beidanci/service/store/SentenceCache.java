@@ -1,13 +1,24 @@
 package beidanci.service.store;
 
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
 import beidanci.api.Result;
@@ -23,6 +34,9 @@ import beidanci.service.po.Sentence;
 import beidanci.service.po.User;
 import beidanci.service.po.WordSentence;
 import beidanci.service.util.Util;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 /**
  * 管理系统中所有例句
@@ -31,9 +45,47 @@ import beidanci.service.util.Util;
  */
 @Component
 public class SentenceCache {
-    private final ConcurrentHashMap<String, ConcurrentHashMap<SentenceVo, Object>> sentencesByWord = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(SentenceCache.class);
+
+    /**
+     * 所有例句的倒排索引（单词 -> 例句），修改时需持有本对象的锁。启动后在后台加载，加载完成前查询例句仍然查询数据库
+     */
+    private volatile SentenceIndex index = SentenceIndex.empty();
+
+    private volatile boolean ready = false;
+
+    /**
+     * 后台加载期间对缓存的修改（加载完成后按顺序应用到新索引上），不在加载时为null。由本对象的锁保护
+     */
+    private List<Consumer<SentenceIndex>> changesDuringLoad;
+
+    /**
+     * 已完成分词的例句数 / 需要加载的例句总数，用于报告加载进度
+     */
+    private final AtomicLong loadedCount = new AtomicLong();
+    private volatile long totalCount;
+
+    private Timer loadTimer;
+
+    /**
+     * 是否在启动后加载例句缓存。目前没有查询路径读取本缓存，默认关闭，避免每次启动都全表扫描例句并占用堆内存
+     */
+    @Value("${sentenceCache.enabled:false}")
+    private boolean enabled;
 
-    private final ConcurrentHashMap<String, SentenceVo> sentencesById = new ConcurrentHashMap<>();
+    @Value("${sentenceCache.loadChunkSize:5000}")
+    private int loadChunkSize;
+
+    @Value("${sentenceCache.loadParallelism:0}")
+    private int loadParallelism;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    /**
+     * 例句作者（同一作者的所有例句共用一个UserVo）
+     */
+    private final ConcurrentHashMap<String, UserVo> authorsById = new ConcurrentHashMap<>();
 
     @Autowired
     SentenceBo sentenceBo;
@@ -43,48 +95,155 @@ public class SentenceCache {
     WordSentenceBo wordSentenceBo;
 
 
-    private SentenceVo sentence2Vo(final Sentence sentence) {
-        String english = sentence.getEnglish();
-        User author = sentence.getAuthor();
-        UserVo authorVo = new UserVo();
-        authorVo.setId(author.getId());
-        authorVo.setUserName(author.getUserName());
-        authorVo.setDisplayNickName(author.getDisplayNickName());
+    @PostConstruct
+    public void init() {
+        Gauge.builder("nnbdc.sentence.cache.sentences", this, cache -> cache.index.size())
+                .description("例句缓存中的例句数")
+                .register(meterRegistry);
+        Gauge.builder("nnbdc.sentence.cache.load.progress", this, SentenceCache::getLoadProgress)
+                .description("例句缓存的加载进度（0~1）")
+                .register(meterRegistry);
+        loadTimer = Timer.builder("nnbdc.sentence.cache.load")
+                .description("启动时加载例句缓存的耗时")
+                .register(meterRegistry);
+    }
 
-        return new SentenceVo(sentence.getId(), english, sentence.getChinese(), sentence.getTheType(),
-                sentence.getEnglishDigest(), sentence.getHandCount(), sentence.getFootCount(), authorVo);
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            log.info("例句缓存未启用（sentenceCache.enabled=false），不加载");
+            return;
+        }
+        Thread loader = new Thread(this::loadAll, "sentence-cache-loader");
+        loader.setDaemon(true);
+        loader.start();
     }
 
-    public void putSentenceToCache(final SentenceVo sentence, boolean addToWordForcelly) {
-        // 把例句加入到Map（按ID）
-        sentencesById.put(sentence.getId(), sentence);
+    /**
+     * 加载所有例句：以游标方式分批读取例句，每读满一批就提交到ForkJoinPool中分词，读取与分词同时进行；
+     * 全部读完后并行合并各批的分词结果，最后一次性替换当前索引
+     */
+    private void loadAll() {
+        synchronized (this) {
+            changesDuringLoad = new ArrayList<>();
+        }
+        long startTime = System.nanoTime();
+        int parallelism = loadParallelism > 0 ? loadParallelism : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            loadedCount.set(0);
+            totalCount = sentenceBo.getSentenceCount();
+            log.info(String.format("开始加载例句缓存, 例句数(%d), 每批%d个, 并行度%d", totalCount, loadChunkSize, parallelism));
 
-        // 把例句拆分成若干单词，并加入到Map(按单词)
-        List<String> words = Util.splitSentence2Words(sentence.getEnglish());
-        for (String spell : words) {
-            if (!sentencesByWord.containsKey(spell)) {
-                synchronized (sentencesByWord) {
-                    if (!sentencesByWord.containsKey(spell)) {
-                        ConcurrentHashMap<SentenceVo, Object> sentenceVos = new ConcurrentHashMap<>();
-                        sentencesByWord.put(spell, sentenceVos);
+            List<ForkJoinTask<SentenceIndex.Chunk>> tasks = new ArrayList<>();
+            List<SentenceVo> batch = new ArrayList<>(loadChunkSize);
+            int[] nextNo = {0};
+            Runnable submitBatch = () -> {
+                List<SentenceVo> vos = new ArrayList<>(batch);
+                int firstNo = nextNo[0];
+                nextNo[0] += vos.size();
+                batch.clear();
+                tasks.add(pool.submit(() -> {
+                    SentenceIndex.Chunk chunk = SentenceIndex.tokenize(firstNo, vos);
+                    long loaded = loadedCount.addAndGet(chunk.size());
+                    if (totalCount > 0 && (loaded - chunk.size()) * 10 / totalCount != loaded * 10 / totalCount) {
+                        log.info(String.format("例句缓存加载进度: %d/%d", loaded, totalCount));
                     }
+                    return chunk;
+                }));
+            };
+            sentenceBo.scrollSentenceVos(loadChunkSize, authorsById, vo -> {
+                batch.add(vo);
+                if (batch.size() == loadChunkSize) {
+                    submitBatch.run();
                 }
+            });
+            if (!batch.isEmpty()) {
+                submitBatch.run();
             }
-            ConcurrentHashMap<SentenceVo, Object> sentenceVos = sentencesByWord.get(spell);
-            if (addToWordForcelly || sentenceVos.size() < 100) { // 单词超过100个例句则不再添加，提高启动性能
-                sentenceVos.put(sentence, sentence);
+
+            List<SentenceIndex.Chunk> chunks = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<SentenceIndex.Chunk> task : tasks) {
+                chunks.add(task.join());
             }
+            SentenceIndex newIndex = SentenceIndex.merge(chunks, pool);
+            publish(newIndex);
+
+            long elapsed = System.nanoTime() - startTime;
+            loadTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info(String.format("例句缓存加载完毕！例句数(%d), 单词数(%d), 耗时%dms", newIndex.size(), newIndex.wordCount(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsed)));
+        } catch (Exception e) {
+            synchronized (this) {
+                changesDuringLoad = null;
+            }
+            log.error("加载例句缓存失败, 继续从数据库查询例句", e);
+        } finally {
+            pool.shutdown();
         }
     }
 
-    public void reloadSentence(String sentenceId) throws InvalidMeaningFormatException, EmptySpellException, ParseException, IOException {
-        // 从缓存中移除例句
-        removeSentenceFromCache(sentenceId);
+    /**
+     * 把加载期间发生的修改应用到新索引后替换当前索引
+     */
+    private synchronized void publish(SentenceIndex newIndex) {
+        for (Consumer<SentenceIndex> change : changesDuringLoad) {
+            change.accept(newIndex);
+        }
+        changesDuringLoad = null;
+        index = newIndex;
+        ready = true;
+    }
 
-        // 重新从数据库加载例句到缓存
+    /**
+     * 在当前索引上执行修改，正在加载时同时记录下来，以便加载完成后应用到新索引上
+     */
+    private void applyChange(Consumer<SentenceIndex> change) {
+        change.accept(index);
+        if (changesDuringLoad != null) {
+            changesDuringLoad.add(change);
+        }
+    }
+
+    private double getLoadProgress() {
+        if (ready) {
+            return 1;
+        }
+        long total = totalCount;
+        return total == 0 ? 0 : (double) loadedCount.get() / total;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private SentenceVo sentence2Vo(final Sentence sentence) {
+        String english = sentence.getEnglish();
+        User author = sentence.getAuthor();
+        UserVo authorVo = authorsById.computeIfAbsent(author.getId(), id -> {
+            UserVo vo = new UserVo();
+            vo.setId(author.getId());
+            vo.setUserName(author.getUserName());
+            vo.setDisplayNickName(author.getDisplayNickName());
+            return vo;
+        });
+
+        return new SentenceVo(sentence.getId(), english, sentence.getChinese(), sentence.getTheType(),
+                sentence.getEnglishDigest(), sentence.getHandCount(), sentence.getFootCount(), authorVo);
+    }
+
+    /**
+     * 把例句加入缓存（已存在则替换），并按例句中的单词建立索引
+     */
+    public synchronized void putSentenceToCache(final SentenceVo sentence) {
+        applyChange(idx -> idx.add(sentence));
+    }
+
+    public void reloadSentence(String sentenceId) throws InvalidMeaningFormatException, EmptySpellException, ParseException, IOException {
+        // 重新从数据库加载例句到缓存（替换旧的例句）
         Sentence sentence = sentenceBo.findById(sentenceId);
         SentenceVo sentenceVo = sentence2Vo(sentence);
-        putSentenceToCache(sentenceVo, true);
+        putSentenceToCache(sentenceVo);
     }
 
     /**
@@ -92,37 +251,41 @@ public class SentenceCache {
      *
      * @param sentenceId
      */
-    public void removeSentenceFromCache(String sentenceId) throws InvalidMeaningFormatException, EmptySpellException, ParseException, IOException {
-        SentenceVo existing = getSentenceById(sentenceId);
-        if (existing != null) {
-            // 把例句从缓存清除
-            List<String> dynamicLinkedWords = Util.splitSentence2Words(existing.getEnglish());
-            for (String word : dynamicLinkedWords) {
-                sentencesByWord.get(word).remove(existing);
-            }
-            sentencesById.remove(sentenceId);
-        }
+    public synchronized void removeSentenceFromCache(String sentenceId) throws InvalidMeaningFormatException, EmptySpellException, ParseException, IOException {
+        applyChange(idx -> idx.remove(sentenceId));
     }
 
 
-    public HashSet<SentenceVo> getSentencesOfWord(String spell) {
-        HashSet<SentenceVo> sentences = new HashSet<>();
-        for (String word : Util.getVariantsOfWord(spell)) {
-            ConcurrentHashMap<SentenceVo, Object> sents = sentencesByWord.get(word);
-            if (sents != null) {
-                sentences.addAll(sents.keySet());
-            }
+    /**
+     * 获取包含指定单词（及其变形）的所有例句，按加入缓存的顺序排列
+     */
+    public List<SentenceVo> getSentencesOfWord(String spell) {
+        if (!ready) {
+            return sentenceBo.findSentencesContainingWords(Util.getVariantsOfWord(spell), authorsById);
         }
-        return sentences;
+        return index.getSentencesOfWords(Util.getVariantsOfWord(spell));
     }
 
     public SentenceVo getSentenceById(String id) {
-        return sentencesById.get(id);
+        if (!ready) {
+            return sentenceBo.getSentenceVo(id, authorsById);
+        }
+        return index.get(id);
     }
 
-    public void refreshSentenceVo(SentenceVo newVo) {
-        SentenceVo old = getSentenceById(newVo.getId());
-        old.setEnglish(newVo.getEnglish());
+    public synchronized void refreshSentenceVo(SentenceVo newVo) {
+        // 英文变了，例句包含的单词也可能变了，需要按旧的英文移除后重新建立索引。
+        // 缓存中的例句可能正被其他请求读取，不能修改，以旧例句的其他字段和新的英文生成新的例句
+        String english = newVo.getEnglish();
+        applyChange(idx -> {
+            SentenceVo old = idx.remove(newVo.getId());
+            if (old != null) {
+                SentenceVo refreshed = new SentenceVo(old.getId(), english, old.getChinese(), old.getTheType(),
+                        old.getEnglishDigest(), old.getHandCount(), old.getFootCount(), old.getAuthor());
+                refreshed.setWordMeaning(old.getWordMeaning());
+                idx.add(refreshed);
+            }
+        });
     }
 
     public List<WordSentence> getWordLinksOfASentence(String sentenceId) {
@@ -141,7 +304,7 @@ public class SentenceCache {
      */
     public Result<List<SentenceVo>> check() {
         List<SentenceVo> vos = new LinkedList<>();
-        for (SentenceVo vo : sentencesById.values()) {
+        for (SentenceVo vo : index.values()) {
             if (vo.getId() == null) {
                 vos.add(vo);
             }
@@ -150,19 +313,13 @@ public class SentenceCache {
             return new Result<>(ErrorCode.CODE_BAD_SENTENCE, String.format("foud %s sentences whose id is null", vos.size()), vos);
         }
 
-        vos = new LinkedList<>();
-        for (ConcurrentHashMap<SentenceVo, Object> map : sentencesByWord.values()) {
-            for (Map.Entry<SentenceVo, Object> entry : map.entrySet()) {
-                SentenceVo vo = entry.getKey();
-                if (vo.getId() == null) {
-                    vos.add(vo);
-                }
-            }
-        }
-        if (!vos.isEmpty()) {
-            return new Result<>(ErrorCode.CODE_BAD_SENTENCE, String.format("foud %s sentences whose id is null!", vos.size()), vos);
-        }
-
         return Result.success(null);
     }
+
+    public int getSentenceCount() {
+        if (!ready) {
+            return (int) sentenceBo.getSentenceCount();
+        }
+        return index.size();
+    }
 }
@@ -0,0 +1,290 @@
+package beidanci.service.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import beidanci.api.model.SentenceVo;
+import beidanci.service.util.Util;
+
+/**
+ * 例句的倒排索引<br>
+ * 每个例句分配一个稠密的整数编号（例句对象存放在以编号为下标的数组中），每个单词对应一个升序排列的例句编号数组，
+ * 不再为每个单词维护一个 Map。<br>
+ * 读操作不加锁；写操作（{@link #add} / {@link #remove}）必须由调用方串行执行。
+ * 单词的例句编号数组在修改时整体替换（写时复制），读取方拿到的数组不会再变化。
+ */
+final class SentenceIndex {
+    private static final int[] NO_POSTINGS = new int[0];
+
+    /**
+     * 以例句编号为下标，已删除的例句对应位置为null
+     */
+    private volatile SentenceVo[] sentences;
+
+    /**
+     * 下一个可分配的例句编号（只由写线程访问）
+     */
+    private int nextNo;
+
+    private final ConcurrentHashMap<String, Integer> noOfSentence;
+
+    private final ConcurrentHashMap<String, int[]> postingsByWord;
+
+    private SentenceIndex(SentenceVo[] sentences, int nextNo, ConcurrentHashMap<String, Integer> noOfSentence,
+                          ConcurrentHashMap<String, int[]> postingsByWord) {
+        this.sentences = sentences;
+        this.nextNo = nextNo;
+        this.noOfSentence = noOfSentence;
+        this.postingsByWord = postingsByWord;
+    }
+
+    static SentenceIndex empty() {
+        return new SentenceIndex(new SentenceVo[1024], 0, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
+    /**
+     * 对一批连续编号的例句分词，生成这批例句内部的 单词 -> 例句编号 列表。各批之间互不依赖，可以并行执行
+     *
+     * @param firstNo 这批例句中第一个例句的编号
+     */
+    static Chunk tokenize(int firstNo, List<SentenceVo> vos) {
+        Map<String, IntBuffer> buffers = new HashMap<>();
+        int no = firstNo;
+        for (SentenceVo vo : vos) {
+            for (String word : Util.splitSentence2Words(vo.getEnglish())) {
+                buffers.computeIfAbsent(word, k -> new IntBuffer()).addDistinct(no);
+            }
+            no++;
+        }
+        return new Chunk(firstNo, vos.toArray(new SentenceVo[0]), buffers);
+    }
+
+    /**
+     * 把按编号顺序排列的各批分词结果合并为完整的索引。各批的编号区间首尾相接，按批次顺序拼接每个单词的例句编号即为升序，
+     * 不同单词的拼接互不相关，指定了pool时在pool中并行执行
+     */
+    static SentenceIndex merge(List<Chunk> chunks, ForkJoinPool pool) {
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.sentences.length;
+        }
+        SentenceVo[] sentences = new SentenceVo[Math.max(1024, total + total / 8)];
+        ConcurrentHashMap<String, Integer> noOfSentence = new ConcurrentHashMap<>(total * 4 / 3 + 1);
+        Set<String> words = new HashSet<>();
+        for (Chunk chunk : chunks) {
+            System.arraycopy(chunk.sentences, 0, sentences, chunk.firstNo, chunk.sentences.length);
+            words.addAll(chunk.postings.keySet());
+        }
+
+        ConcurrentHashMap<String, int[]> postingsByWord = new ConcurrentHashMap<>(words.size() * 4 / 3 + 1);
+        Runnable mergeTask = () -> {
+            chunks.parallelStream().forEach(chunk -> {
+                for (int i = 0; i < chunk.sentences.length; i++) {
+                    noOfSentence.merge(chunk.sentences[i].getId(), chunk.firstNo + i, Math::max);
+                }
+            });
+            words.parallelStream().forEach(word -> {
+                int length = 0;
+                for (Chunk chunk : chunks) {
+                    IntBuffer buffer = chunk.postings.get(word);
+                    length += buffer == null ? 0 : buffer.size;
+                }
+                int[] postings = new int[length];
+                int pos = 0;
+                for (Chunk chunk : chunks) {
+                    IntBuffer buffer = chunk.postings.get(word);
+                    if (buffer != null) {
+                        System.arraycopy(buffer.values, 0, postings, pos, buffer.size);
+                        pos += buffer.size;
+                    }
+                }
+                postingsByWord.put(word, postings);
+            });
+        };
+        if (pool == null) {
+            mergeTask.run();
+        } else {
+            // 在指定的pool中启动并行流，流的子任务也会在该pool中执行
+            pool.submit(mergeTask).join();
+        }
+
+        // 同一个例句ID出现多次时只保留编号最大的一个，其余编号的位置置空（查询时跳过）
+        if (noOfSentence.size() != total) {
+            for (Chunk chunk : chunks) {
+                for (int i = 0; i < chunk.sentences.length; i++) {
+                    int no = chunk.firstNo + i;
+                    if (noOfSentence.get(chunk.sentences[i].getId()) != no) {
+                        sentences[no] = null;
+                    }
+                }
+            }
+        }
+        return new SentenceIndex(sentences, total, noOfSentence, postingsByWord);
+    }
+
+    SentenceVo get(String sentenceId) {
+        Integer no = noOfSentence.get(sentenceId);
+        return no == null ? null : sentences[no];
+    }
+
+    /**
+     * 加入例句（已存在则替换）
+     */
+    void add(SentenceVo vo) {
+        remove(vo.getId());
+
+        int no = nextNo++;
+        SentenceVo[] current = sentences;
+        if (no >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            sentences = current;
+        }
+        current[no] = vo;
+        noOfSentence.put(vo.getId(), no);
+
+        // 新编号总是最大的，追加到末尾即可保持升序
+        for (String word : new LinkedHashSet<>(Util.splitSentence2Words(vo.getEnglish()))) {
+            int[] postings = postingsByWord.getOrDefault(word, NO_POSTINGS);
+            int[] newPostings = Arrays.copyOf(postings, postings.length + 1);
+            newPostings[postings.length] = no;
+            postingsByWord.put(word, newPostings);
+        }
+    }
+
+    /**
+     * 删除例句，返回被删除的例句（不存在则返回null）
+     */
+    SentenceVo remove(String sentenceId) {
+        Integer no = noOfSentence.remove(sentenceId);
+        if (no == null) {
+            return null;
+        }
+        SentenceVo vo = sentences[no];
+        for (String word : new LinkedHashSet<>(Util.splitSentence2Words(vo.getEnglish()))) {
+            int[] postings = postingsByWord.get(word);
+            int pos = postings == null ? -1 : Arrays.binarySearch(postings, no);
+            if (pos < 0) {
+                continue;
+            }
+            if (postings.length == 1) {
+                postingsByWord.remove(word);
+            } else {
+                int[] newPostings = new int[postings.length - 1];
+                System.arraycopy(postings, 0, newPostings, 0, pos);
+                System.arraycopy(postings, pos + 1, newPostings, pos, postings.length - pos - 1);
+                postingsByWord.put(word, newPostings);
+            }
+        }
+        sentences[no] = null;
+        return vo;
+    }
+
+    /**
+     * 获取包含任意一个指定单词的例句（合并各单词的例句编号数组，按编号升序，不重复）
+     */
+    List<SentenceVo> getSentencesOfWords(List<String> words) {
+        int[][] lists = new int[words.size()][];
+        int listCount = 0;
+        int total = 0;
+        for (String word : words) {
+            int[] postings = postingsByWord.get(word);
+            if (postings != null) {
+                lists[listCount++] = postings;
+                total += postings.length;
+            }
+        }
+
+        SentenceVo[] current = sentences;
+        List<SentenceVo> result = new ArrayList<>(total);
+        int[] heads = new int[listCount];
+        int last = -1;
+        while (true) {
+            int min = Integer.MAX_VALUE;
+            int minList = -1;
+            for (int i = 0; i < listCount; i++) {
+                if (heads[i] < lists[i].length && lists[i][heads[i]] < min) {
+                    min = lists[i][heads[i]];
+                    minList = i;
+                }
+            }
+            if (minList == -1) {
+                break;
+            }
+            heads[minList]++;
+            if (min != last) {
+                last = min;
+                SentenceVo vo = min < current.length ? current[min] : null;
+                if (vo != null) {
+                    result.add(vo);
+                }
+            }
+        }
+        return result;
+    }
+
+    Collection<SentenceVo> values() {
+        List<SentenceVo> values = new ArrayList<>(noOfSentence.size());
+        SentenceVo[] current = sentences;
+        for (Integer no : noOfSentence.values()) {
+            SentenceVo vo = no < current.length ? current[no] : null;
+            if (vo != null) {
+                values.add(vo);
+            }
+        }
+        return values;
+    }
+
+    int size() {
+        return noOfSentence.size();
+    }
+
+    int wordCount() {
+        return postingsByWord.size();
+    }
+
+    /**
+     * 一批连续编号的例句及其分词结果（见 {@link #tokenize}）
+     */
+    static final class Chunk {
+        private final int firstNo;
+        private final SentenceVo[] sentences;
+        private final Map<String, IntBuffer> postings;
+
+        private Chunk(int firstNo, SentenceVo[] sentences, Map<String, IntBuffer> postings) {
+            this.firstNo = firstNo;
+            this.sentences = sentences;
+            this.postings = postings;
+        }
+
+        int size() {
+            return sentences.length;
+        }
+    }
+
+    private static final class IntBuffer {
+        private int[] values = new int[4];
+        private int size;
+
+        /**
+         * 追加编号（同一例句中重复出现的单词只记录一次）
+         */
+        void addDistinct(int value) {
+            if (size > 0 && values[size - 1] == value) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package beidanci.service.store;
+
+import java.util.BitSet;
+
+/**
+ * 一个用户的单词状态位图（以 {@link WordOrdinals} 分配的单词编号为下标）<br>
+ * 由 {@link UserWordStateCache} 加载和更新，所有方法都持有本对象的锁
+ */
+public final class UserWordState {
+
+    public enum Kind {
+        /**
+         * 正在学习（learning_word）
+         */
+        LEARNING,
+        /**
+         * 已掌握（mastered_word）
+         */
+        MASTERED
+    }
+
+    private final BitSet[] words = new BitSet[Kind.values().length];
+
+    private boolean loaded;
+
+    UserWordState() {
+        for (int i = 0; i < words.length; i++) {
+            words[i] = new BitSet();
+        }
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized void markLoaded() {
+        this.loaded = true;
+    }
+
+    synchronized void set(Kind kind, int ordinal, boolean value) {
+        words[kind.ordinal()].set(ordinal, value);
+    }
+
+    public synchronized boolean contains(Kind kind, int ordinal) {
+        return words[kind.ordinal()].get(ordinal);
+    }
+
+    /**
+     * 处于任意一种指定状态的单词（返回副本，调用方可以修改）
+     */
+    public synchronized BitSet union(Kind... kinds) {
+        BitSet result = new BitSet();
+        for (Kind kind : kinds) {
+            result.or(words[kind.ordinal()]);
+        }
+        return result;
+    }
+
+    public synchronized int count(Kind kind) {
+        return words[kind.ordinal()].cardinality();
+    }
+
+    /**
+     * 估算占用的堆内存（字节）。位图不压缩，每个位图的大小取决于其中最大的单词编号
+     */
+    synchronized long estimateHeapBytes() {
+        long bytes = 32;
+        for (BitSet bitSet : words) {
+            bytes += 40 + bitSet.size() / 8;
+        }
+        return bytes;
+    }
+}
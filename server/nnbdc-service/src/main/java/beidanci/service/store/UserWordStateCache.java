@@ -0,0 +1,226 @@
+package beidanci.service.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import beidanci.api.model.UserDbLogDto;
+import beidanci.service.bo.UserBo;
+import beidanci.service.util.JsonUtils;
+import beidanci.service.util.Util;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 活跃用户的单词状态位图（正在学习、已掌握），第一次用到时从数据库加载，按最近使用淘汰<br>
+ * 单词状态的变更在事务提交后应用到已加载的位图上：同步日志由 SyncBo 提交，服务端自己的修改由相应的Bo提交；
+ * 无法逐个单词应用的变更（如批量删除）调用 {@link #invalidate}，下次使用时重新加载
+ */
+@Component
+public class UserWordStateCache {
+
+    @Autowired
+    UserBo userBo;
+
+    @Autowired
+    WordOrdinals wordOrdinals;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${userWordState.maxUsers:1000}")
+    private int maxUsers;
+
+    private final Map<String, UserWordState> states = Collections.synchronizedMap(new LinkedHashMap<String, UserWordState>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, UserWordState> eldest) {
+            return size() > maxUsers;
+        }
+    });
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Timer loadTimer;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("nnbdc.user.word.state.users", states, Map::size)
+                .description("已加载单词状态位图的用户数")
+                .register(meterRegistry);
+        Gauge.builder("nnbdc.user.word.state.heap", this, UserWordStateCache::estimateHeapBytes)
+                .description("用户单词状态位图占用的堆内存（估算值）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("nnbdc.user.word.state.ordinals", wordOrdinals, WordOrdinals::size)
+                .description("已分配编号的单词数")
+                .register(meterRegistry);
+        hitCounter = Counter.builder("nnbdc.user.word.state.requests")
+                .description("读取用户单词状态位图的次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        missCounter = Counter.builder("nnbdc.user.word.state.requests")
+                .description("读取用户单词状态位图的次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        loadTimer = Timer.builder("nnbdc.user.word.state.load")
+                .description("从数据库加载用户单词状态位图的耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 估算所有已缓存的位图占用的堆内存（字节）
+     */
+    private long estimateHeapBytes() {
+        List<UserWordState> snapshot;
+        synchronized (states) {
+            snapshot = new ArrayList<>(states.values());
+        }
+        // 不能在持有 states 锁时再获取单个用户状态的锁（getState 中的加锁顺序与此相反）
+        long bytes = 0;
+        for (UserWordState state : snapshot) {
+            bytes += state.estimateHeapBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * 获取用户的单词状态（尚未加载则从数据库加载已提交的数据）
+     */
+    public UserWordState getState(String userId) {
+        UserWordState state;
+        synchronized (states) {
+            state = states.get(userId);
+            if (state == null) {
+                state = new UserWordState();
+                states.put(userId, state);
+            }
+        }
+
+        // 加载期间持有该用户状态的锁，提交后的变更会等加载完成再应用（重复应用同一变更不影响结果）
+        synchronized (state) {
+            if (state.isLoaded()) {
+                hitCounter.increment();
+                return state;
+            }
+            missCounter.increment();
+            long startTime = System.nanoTime();
+            try {
+                UserWordState loading = state;
+                userBo.loadWordStatesOfUser(userId, (kind, wordId) -> loading.set(kind, wordOrdinals.ordinalOf(wordId), true));
+                state.markLoaded();
+            } catch (RuntimeException e) {
+                states.remove(userId, state);
+                throw e;
+            }
+            loadTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+        return state;
+    }
+
+    /**
+     * 事务提交后设置（或清除）用户的若干单词的状态
+     */
+    public void setWords(String userId, UserWordState.Kind kind, Collection<String> wordIds, boolean value) {
+        if (wordIds.isEmpty()) {
+            return;
+        }
+        update(userId, state -> {
+            for (String wordId : wordIds) {
+                state.set(kind, wordOrdinals.ordinalOf(wordId), value);
+            }
+        });
+    }
+
+    public void setWord(String userId, UserWordState.Kind kind, String wordId, boolean value) {
+        setWords(userId, kind, Collections.singletonList(wordId), value);
+    }
+
+    /**
+     * 把客户端同步上来的日志中单词状态的变更在事务提交后应用到位图上（批量删除等无法逐个应用的变更则重新加载）
+     */
+    public void applySyncLogs(String userId, List<UserDbLogDto> logs) {
+        List<Consumer<UserWordState>> changes = new ArrayList<>();
+        for (UserDbLogDto log : logs) {
+            String tableName = log.getTblName().toLowerCase();
+            UserWordState.Kind kind = kindOfTable(tableName);
+            if (kind == null) {
+                continue;
+            }
+            String operation = log.getOperate().toUpperCase();
+            Map<?, ?> record = parseRecord(log);
+            String wordId = getField(record, "wordId");
+            if ("BATCH_DELETE".equals(operation) || wordId == null) {
+                invalidate(userId);
+                return;
+            }
+
+            int ordinal = wordOrdinals.ordinalOf(wordId);
+            boolean value = !"DELETE".equals(operation);
+            changes.add(state -> state.set(kind, ordinal, value));
+        }
+        if (!changes.isEmpty()) {
+            update(userId, state -> changes.forEach(change -> change.accept(state)));
+        }
+    }
+
+    private static UserWordState.Kind kindOfTable(String tableName) {
+        switch (tableName) {
+            case "learning_word":
+                return UserWordState.Kind.LEARNING;
+            case "mastered_word":
+                return UserWordState.Kind.MASTERED;
+            default:
+                return null;
+        }
+    }
+
+    private static Map<?, ?> parseRecord(UserDbLogDto log) {
+        try {
+            return JsonUtils.makeObject(log.getRecord(), Map.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String getField(Map<?, ?> record, String field) {
+        Object value = record != null ? record.get(field) : null;
+        return value != null && !"".equals(value) ? value.toString() : null;
+    }
+
+    /**
+     * 用户的单词状态有无法逐个应用的变更时调用，下次使用时重新加载
+     */
+    public void invalidate(String userId) {
+        states.remove(userId);
+        Util.runAfterCommit(() -> states.remove(userId));
+    }
+
+    /**
+     * 状态尚未加载的用户无需处理：提交后才开始的加载会读到新数据
+     */
+    private void update(String userId, Consumer<UserWordState> change) {
+        Util.runAfterCommit(() -> {
+            UserWordState state = states.get(userId);
+            if (state != null) {
+                synchronized (state) {
+                    if (state.isLoaded()) {
+                        change.accept(state);
+                    }
+                }
+            }
+        });
+    }
+}
@@ -2,14 +2,35 @@ package beidanci.service.store;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import beidanci.api.model.WordShortDescChineseVo;
 import beidanci.api.model.WordVo;
@@ -22,15 +43,30 @@ import beidanci.service.po.Word;
 import beidanci.service.po.WordSentence;
 import beidanci.service.util.BeanUtils;
 import beidanci.service.util.Util;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @Component
 public class WordCache {
     private static final Logger log = LoggerFactory.getLogger(WordCache.class);
 
     /**
-     * 词库中所有单词（按拼写索引）
+     * 词库中所有单词的内存索引（按拼写忽略大小写索引），启动后在后台加载，加载完成前按拼写查找单词仍然查询数据库
+     */
+    private volatile WordIndex index = WordIndex.EMPTY;
+
+    private volatile boolean indexReady = false;
+
+    /**
+     * 加载和更新索引都在这个线程中执行，保证按提交顺序应用单词的变更
      */
-    private final Map<String, WordVo> wordsBySpell = new HashMap<>();
+    private final ExecutorService indexUpdater = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "word-index-updater");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Autowired
     WordBo wordBo;
@@ -38,6 +74,200 @@ public class WordCache {
     @Autowired
     WordSentenceBo wordSentenceBo;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${wordCache.maxVoEntries:20000}")
+    private int maxVoEntries;
+
+    /**
+     * 已生成的WordVo，键为 单词ID|排除字段，按最近使用淘汰。同一个单词以相同的排除字段被反复读取（如每日学习流程），
+     * 只需通过反射生成一次。缓存的WordVo被多个请求共享，调用方不能修改
+     */
+    private final Map<String, WordVo> wordVos = Collections.synchronizedMap(new LinkedHashMap<String, WordVo>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WordVo> eldest) {
+            if (size() > maxVoEntries) {
+                voEvictionCounter.increment();
+                return true;
+            }
+            return false;
+        }
+    });
+
+    /**
+     * 每次清除WordVo缓存时递增，读取数据库期间缓存被清除过的WordVo不再放入缓存（可能是旧数据）
+     */
+    private final AtomicLong voGeneration = new AtomicLong();
+
+    /**
+     * 事务中清除过的单词集合里表示"所有单词"的元素
+     */
+    private static final String ALL_WORDS = "*";
+
+    private Timer fullLoadTimer;
+    private Timer incrementalLoadTimer;
+    private Timer lookupTimer;
+    private Counter voHitCounter;
+    private Counter voMissCounter;
+    private Counter voEvictionCounter;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("nnbdc.word.index.words", this, cache -> cache.index.size())
+                .description("单词内存索引中的单词数")
+                .register(meterRegistry);
+        Gauge.builder("nnbdc.word.index.heap", this, cache -> cache.index.getHeapBytes())
+                .description("单词内存索引占用的堆内存（估算值）")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        fullLoadTimer = Timer.builder("nnbdc.word.index.load")
+                .description("加载单词内存索引的耗时")
+                .tag("type", "full")
+                .register(meterRegistry);
+        incrementalLoadTimer = Timer.builder("nnbdc.word.index.load")
+                .description("加载单词内存索引的耗时")
+                .tag("type", "incremental")
+                .register(meterRegistry);
+        lookupTimer = Timer.builder("nnbdc.word.index.lookup")
+                .description("在单词内存索引中按拼写查找单词的耗时")
+                .register(meterRegistry);
+
+        Gauge.builder("nnbdc.word.vo.cache.size", wordVos, Map::size)
+                .description("已缓存的WordVo数")
+                .register(meterRegistry);
+        voHitCounter = Counter.builder("nnbdc.word.vo.cache.requests")
+                .description("读取WordVo的次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        voMissCounter = Counter.builder("nnbdc.word.vo.cache.requests")
+                .description("读取WordVo的次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        voEvictionCounter = Counter.builder("nnbdc.word.vo.cache.evictions")
+                .description("因超出容量被淘汰的WordVo数")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        indexUpdater.execute(this::loadIndex);
+    }
+
+    /**
+     * 定期全量重建索引，以包含不经过本服务直接导入数据库的单词
+     */
+    @Scheduled(cron = "${wordIndex.reloadCron:0 0 4 * * ?}")
+    public void reloadIndex() {
+        indexUpdater.execute(this::loadIndex);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        indexUpdater.shutdownNow();
+    }
+
+    private void loadIndex() {
+        try {
+            long startTime = System.nanoTime();
+            WordIndex newIndex = WordIndex.build(wordBo.loadWordIndexEntries(null));
+            long elapsed = System.nanoTime() - startTime;
+            fullLoadTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            index = newIndex;
+            indexReady = true;
+            evictWordVos(null);
+            log.info(String.format("单词内存索引加载完毕！单词数(%d), 估算内存%dKB, 耗时%dms", newIndex.size(),
+                    newIndex.getHeapBytes() / 1024, TimeUnit.NANOSECONDS.toMillis(elapsed)));
+        } catch (Exception e) {
+            log.error("加载单词内存索引失败", e);
+        }
+    }
+
+    /**
+     * 单词（或其释义）被修改、新增或删除后调用，在事务提交后重新加载这些单词并生成新的索引
+     */
+    public void onWordsChanged(Collection<String> wordIds) {
+        Set<String> ids = new HashSet<>(wordIds);
+        evictWordVos(ids);
+        Util.runAfterCommit(() -> indexUpdater.execute(() -> refreshIndex(ids)));
+    }
+
+    /**
+     * 单词的关联数据（图片、例句、中文描述等）有变化时，清除已缓存的WordVo。
+     * 这些单词在当前事务结束前读到的是未提交的数据，不放入缓存，事务结束（提交或回滚）后再清除一次
+     *
+     * @param wordIds 为null时清除所有单词
+     */
+    public void evictWordVos(Collection<String> wordIds) {
+        evict(wordIds);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+
+        // 事务结束前，本事务读到的是未提交的数据（回滚后就不存在），不能放入缓存；
+        // 其他请求在提交前也可能读到旧数据并放入缓存。所以事务结束（无论提交还是回滚）后再清除一次
+        @SuppressWarnings("unchecked")
+        Set<String> evicted = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        if (evicted == null) {
+            Set<String> ids = new HashSet<>();
+            evicted = ids;
+            TransactionSynchronizationManager.bindResource(this, ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(WordCache.this);
+                    evict(ids.contains(ALL_WORDS) ? null : ids);
+                }
+            });
+        }
+        if (wordIds == null) {
+            evicted.add(ALL_WORDS);
+        } else {
+            evicted.addAll(wordIds);
+        }
+    }
+
+    private boolean evictedInCurrentTransaction(String wordId) {
+        @SuppressWarnings("unchecked")
+        Set<String> evicted = (Set<String>) TransactionSynchronizationManager.getResource(this);
+        return evicted != null && (evicted.contains(wordId) || evicted.contains(ALL_WORDS));
+    }
+
+    private void evict(Collection<String> wordIds) {
+        voGeneration.incrementAndGet();
+        if (wordIds == null) {
+            wordVos.clear();
+            return;
+        }
+        synchronized (wordVos) {
+            for (Iterator<String> i = wordVos.keySet().iterator(); i.hasNext();) {
+                String key = i.next();
+                if (wordIds.contains(key.substring(0, key.indexOf('|')))) {
+                    i.remove();
+                }
+            }
+        }
+    }
+
+
+    private void refreshIndex(Set<String> wordIds) {
+        try {
+            long startTime = System.nanoTime();
+            List<WordIndex.Entry> entries = wordBo.loadWordIndexEntries(wordIds);
+            Set<String> deletedIds = new HashSet<>(wordIds);
+            for (WordIndex.Entry entry : entries) {
+                deletedIds.remove(entry.getId());
+            }
+            index = index.without(deletedIds).with(entries);
+            incrementalLoadTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            log.error(String.format("更新单词内存索引失败, 单词: %s", wordIds), e);
+        }
+    }
+
+    public boolean isIndexReady() {
+        return indexReady;
+    }
 
     private static int invalidCount = 0;
 
@@ -52,7 +282,13 @@ public class WordCache {
     }
 
     public WordVo getWordBySpell(String spell, String[] excludeFields) throws IOException, ParseException, InvalidMeaningFormatException, EmptySpellException {
-        return wordBo.getWordVoBySpell(spell, excludeFields);
+        if (!indexReady) {
+            return wordBo.getWordVoBySpell(spell, excludeFields);
+        }
+        long startTime = System.nanoTime();
+        WordIndex.Entry entry = index.getBySpell(spell);
+        lookupTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        return entry == null ? null : getIndexedWord(entry, excludeFields);
     }
 
     /**
@@ -62,26 +298,80 @@ public class WordCache {
      * @return
      */
     public WordVo getWordBySpell2(String spell, String[] excludeFields) throws InvalidMeaningFormatException, EmptySpellException, IOException, ParseException {
-        WordVo word = wordsBySpell.get(spell);
-        if (word == null) {
-            word = getWordBySpell(spell.toLowerCase(), excludeFields);
+        if (spell.isEmpty()) {
+            return null;
         }
-        if (word == null) {
-            word = getWordBySpell(spell.toUpperCase(), excludeFields);
+        String[] candidates = {spell, spell.toLowerCase(), spell.toUpperCase(),
+                spell.substring(0, 1).toUpperCase() + spell.substring(1)}; // 最后一个是首字母转换为大写
+        if (!indexReady) {
+            for (String candidate : candidates) {
+                WordVo word = wordBo.getWordVoBySpell(candidate, excludeFields);
+                if (word != null) {
+                    return word;
+                }
+            }
+            return null;
+        }
+
+        // 各种大小写形式都在同一个索引键下，查一次即可
+        long startTime = System.nanoTime();
+        WordIndex.Entry found = null;
+        WordIndex.Entry[] allCases = index.getAllCases(spell);
+        for (int i = 0; i < candidates.length && found == null; i++) {
+            for (WordIndex.Entry entry : allCases) {
+                if (entry.getSpell().equals(candidates[i])) {
+                    found = entry;
+                    break;
+                }
+            }
         }
+        lookupTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        return found == null ? null : getIndexedWord(found, excludeFields);
+    }
+
+    /**
+     * 读取索引中找到的单词，若单词已被删除（索引尚未更新）则按拼写重新查询数据库
+     */
+    private WordVo getIndexedWord(WordIndex.Entry entry, String[] excludeFields) throws IOException, ParseException, InvalidMeaningFormatException, EmptySpellException {
+        WordVo word = getWordById(entry.getId(), excludeFields);
         if (word == null) {
-            word = getWordBySpell(spell.substring(0, 1).toUpperCase() + spell.substring(1), excludeFields); // 首字母转换为大写
+            onWordsChanged(Collections.singletonList(entry.getId()));
+            word = wordBo.getWordVoBySpell(entry.getSpell(), excludeFields);
         }
         return word;
     }
 
+    /**
+     * 按ID获取单词，结果会被缓存并与其他调用方共享（不能修改）
+     */
     public WordVo getWordById(String id, String[] excludeFields) {
-        WordVo word = wordBo.getWordVoById(id, excludeFields);
+        String key = id + "|" + profileOf(excludeFields);
+        WordVo word = wordVos.get(key);
+        if (word != null) {
+            voHitCounter.increment();
+            return word;
+        }
+        voMissCounter.increment();
+        long generation = voGeneration.get();
+        word = wordBo.getWordVoById(id, excludeFields);
+        if (word != null && generation == voGeneration.get() && !evictedInCurrentTransaction(id)) {
+            wordVos.put(key, word);
+        }
         return word;
     }
 
+    /**
+     * 排除字段的规范形式（与顺序无关）
+     */
+    private static String profileOf(String[] excludeFields) {
+        if (excludeFields == null || excludeFields.length == 0) {
+            return "";
+        }
+        return String.join(",", new TreeSet<>(Arrays.asList(excludeFields)));
+    }
+
     public int getWordCount() {
-        return wordsBySpell.size();
+        return index.size();
     }
 
 
@@ -121,8 +411,4 @@ public class WordCache {
 
         return wordVo;
     }
-
-    public Map<String, WordVo> getWordsBySpell() {
-        return wordsBySpell;
-    }
 }
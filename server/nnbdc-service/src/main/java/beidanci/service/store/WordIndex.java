@@ -0,0 +1,166 @@
+package beidanci.service.store;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 词库中所有单词的只读内存索引（按拼写查找单词ID，单词内容仍按ID读取，见 WordCache）<br>
+ * 按忽略大小写后的拼写建立索引，同一个键下保留所有大小写形式（如 china/China）。
+ * 索引创建后不再修改，单词有变更时通过 {@link #with} / {@link #without} 生成新的索引（写时复制），
+ * 读取方无需加锁。
+ */
+public final class WordIndex {
+
+    /**
+     * 一个单词的索引项
+     */
+    public static final class Entry {
+        private final String id;
+        private final String spell;
+
+        public Entry(String id, String spell) {
+            this.id = id;
+            this.spell = spell;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getSpell() {
+            return spell;
+        }
+
+        /**
+         * 估算该索引项占用的堆内存（字节）
+         */
+        long estimateHeapBytes() {
+            return 24 + stringBytes(id) + stringBytes(spell);
+        }
+    }
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    public static final WordIndex EMPTY = new WordIndex(new HashMap<>(), new HashMap<>(), 0);
+
+    private final Map<String, Entry> entriesById;
+
+    /**
+     * 键为 {@link #foldSpell} 之后的拼写
+     */
+    private final Map<String, Entry[]> entriesByFoldedSpell;
+
+    private final long heapBytes;
+
+    private WordIndex(Map<String, Entry> entriesById, Map<String, Entry[]> entriesByFoldedSpell, long heapBytes) {
+        this.entriesById = entriesById;
+        this.entriesByFoldedSpell = entriesByFoldedSpell;
+        this.heapBytes = heapBytes;
+    }
+
+    public static String foldSpell(String spell) {
+        return spell.toLowerCase(Locale.ROOT);
+    }
+
+    public static WordIndex build(Collection<Entry> entries) {
+        Map<String, Entry> byId = new HashMap<>(entries.size() * 4 / 3 + 1);
+        for (Entry entry : entries) {
+            byId.put(entry.id, entry);
+        }
+        return fromEntriesById(byId);
+    }
+
+    private static WordIndex fromEntriesById(Map<String, Entry> byId) {
+        Map<String, Entry[]> bySpell = new HashMap<>(byId.size() * 4 / 3 + 1);
+        long heapBytes = 0;
+        for (Entry entry : byId.values()) {
+            bySpell.merge(foldSpell(entry.spell), new Entry[] {entry}, (a, b) -> {
+                Entry[] merged = Arrays.copyOf(a, a.length + 1);
+                merged[a.length] = b[0];
+                return merged;
+            });
+            heapBytes += entry.estimateHeapBytes();
+        }
+        // 两个HashMap的节点和桶数组，以及拼写键和单元素数组
+        heapBytes += (long) byId.size() * (32 + 8) * 2;
+        heapBytes += (long) bySpell.size() * (arrayBytes(1) + 8);
+        return new WordIndex(byId, bySpell, heapBytes);
+    }
+
+    /**
+     * 生成加入（或替换）了指定单词的新索引，当前索引不受影响
+     */
+    public WordIndex with(Collection<Entry> changed) {
+        Map<String, Entry> byId = new HashMap<>(entriesById);
+        for (Entry entry : changed) {
+            byId.put(entry.id, entry);
+        }
+        return fromEntriesById(byId);
+    }
+
+    /**
+     * 生成去掉了指定单词的新索引，当前索引不受影响
+     */
+    public WordIndex without(Collection<String> wordIds) {
+        Map<String, Entry> byId = new HashMap<>(entriesById);
+        byId.keySet().removeAll(wordIds);
+        return fromEntriesById(byId);
+    }
+
+    public Entry getById(String wordId) {
+        return entriesById.get(wordId);
+    }
+
+    /**
+     * 按拼写精确查找（区分大小写）
+     */
+    public Entry getBySpell(String spell) {
+        for (Entry entry : getAllCases(spell)) {
+            if (entry.spell.equals(spell)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取与指定拼写只有大小写区别的所有单词
+     */
+    public Entry[] getAllCases(String spell) {
+        Entry[] entries = entriesByFoldedSpell.get(foldSpell(spell));
+        return entries == null ? NO_ENTRIES : entries;
+    }
+
+    public int size() {
+        return entriesById.size();
+    }
+
+    /**
+     * 估算的索引占用堆内存（字节）
+     */
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    private static long stringBytes(String s) {
+        if (s == null) {
+            return 0;
+        }
+        boolean latin1 = true;
+        for (int i = 0; i < s.length() && latin1; i++) {
+            latin1 = s.charAt(i) < 256;
+        }
+        return 24 + align(16 + (latin1 ? s.length() : s.length() * 2L));
+    }
+
+    private static long arrayBytes(int length) {
+        return align(16 + length * 4L);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
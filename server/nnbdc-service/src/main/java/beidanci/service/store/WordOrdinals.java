@@ -0,0 +1,52 @@
+package beidanci.service.store;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 为单词ID分配从0开始的稠密整数编号，以便用位图（BitSet）表示单词集合<br>
+ * 编号在第一次用到某个单词时分配，进程运行期间不变（单词被删除后编号也不回收）
+ */
+@Component
+public class WordOrdinals {
+    private final ConcurrentHashMap<String, Integer> ordinalOfWord = new ConcurrentHashMap<>();
+
+    /**
+     * 以编号为下标的单词ID
+     */
+    private volatile String[] wordIds = new String[1024];
+
+    /**
+     * 已分配的编号数（由本对象的锁保护）
+     */
+    private int size;
+
+    public int ordinalOf(String wordId) {
+        Integer ordinal = ordinalOfWord.get(wordId);
+        return ordinal != null ? ordinal : assign(wordId);
+    }
+
+    private synchronized int assign(String wordId) {
+        Integer existing = ordinalOfWord.get(wordId);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal = size++;
+        if (ordinal >= wordIds.length) {
+            wordIds = Arrays.copyOf(wordIds, wordIds.length * 2);
+        }
+        wordIds[ordinal] = wordId;
+        ordinalOfWord.put(wordId, ordinal);
+        return ordinal;
+    }
+
+    public String wordIdOf(int ordinal) {
+        return wordIds[ordinal];
+    }
+
+    public int size() {
+        return ordinalOfWord.size();
+    }
+}
@@ -5,7 +5,6 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -39,17 +38,14 @@ import beidanci.service.po.Po;
 public class BeanUtils {
     private static final Logger log = LoggerFactory.getLogger(BeanUtils.class);
 
-    private static final Map<Class<?>, MethodAccess> methodMap = new ConcurrentHashMap<>();
+    // 以下缓存和 cache、isFieldExcluded 为包内可见，测试代码中逐对象反射转换的对照实现也使用它们
+    static final Map<Class<?>, MethodAccess> methodMap = new ConcurrentHashMap<>();
 
-    private static final Map<String, Integer> methodIndexMap = new ConcurrentHashMap<>();
+    static final Map<String, Integer> methodIndexMap = new ConcurrentHashMap<>();
 
-    private static final Map<Class<?>, List<Field>> fieldMap = new ConcurrentHashMap<>();
+    static final Map<Class<?>, List<Field>> fieldMap = new ConcurrentHashMap<>();
 
-    /**
-     * 函数调用深度（用于检测无穷递归）
-     */
-    private static final ThreadLocal<Integer> callDeep = new ThreadLocal<>();
-    private static final Integer MAX_CALL_DEEP = 50;// 最大允许函数调用深度
+    static final Integer MAX_CALL_DEEP = 50;// 最大允许函数调用深度
 
     /**
      * 由持久对象（PO）生成值对象（VO）。VO各字段值由PO同名字段复制而来，如果某字段本身也是VO，在复制过程中会由PO自动转换为VO。<br>
@@ -61,11 +57,20 @@ public class BeanUtils {
      * @return
      */
     public static <T extends Vo> T makeVo(Po po, Class<T> voClass, String[] excludeFields) {
-        HashSet<String> excludes = excludeFields == null ? new HashSet<>() : new HashSet<>(Arrays.asList(excludeFields));
-        callDeep.set(0);
-        T vo = doMakeVo(po, voClass, excludes, "");
-        assert (callDeep.get().equals(0));
-        return vo;
+        if (po == null) {
+            return null;
+        }
+        po = unproxy(po);
+        List<String> excludeList = excludeFields == null ? Collections.emptyList() : Arrays.asList(excludeFields);
+        PlanKey key = new PlanKey(po.getClass(), voClass, excludeList, "");
+        MappingPlan plan = rootPlans.get(key);
+        if (plan == null) {
+            HashSet<String> excludes = new HashSet<>(excludeList);
+            plan = compilePlan(po.getClass(), voClass, excludes, "");
+            // 键中的排除字段列表要复制一份，调用方之后修改数组不影响缓存
+            rootPlans.putIfAbsent(new PlanKey(po.getClass(), voClass, new ArrayList<>(excludeList), ""), plan);
+        }
+        return voClass.cast(plan.apply(po, 1));
     }
 
     public static <T extends Vo> T makeVo(Po po, Class<T> voClass) {
@@ -101,103 +106,246 @@ public class BeanUtils {
         return result2;
     }
 
-    @SuppressWarnings({"deprecation", "unchecked"})
-    private static <T extends Vo> T doMakeVo(Po po, Class<T> voClass, HashSet<String> excludeFields, String fullFieldName) {
-        if (po == null) {
-            return null;
-        }
+    /**
+     * 映射计划中字段的类型
+     */
+    private static final int VALUE_FIELD = 0;
+    private static final int VO_FIELD = 1;
+    private static final int VO_LIST_FIELD = 2;
+    private static final int NON_VO_LIST_FIELD = 3;
 
-        // 进入函数，增加调用深度
-        callDeep.set(callDeep.get() + 1);
-        if (callDeep.get() > MAX_CALL_DEEP) {
-            throw new RuntimeException("函数调用深度大于" + MAX_CALL_DEEP + ": " + fullFieldName);
+    /**
+     * 映射计划的缓存键：(PO类, VO类, 排除字段, 字段路径)
+     */
+    private static final class PlanKey {
+        private final Class<?> poClass;
+        private final Class<?> voClass;
+        private final Object excludes;
+        private final String path;
+        private final int hash;
+
+        PlanKey(Class<?> poClass, Class<?> voClass, Object excludes, String path) {
+            this.poClass = poClass;
+            this.voClass = voClass;
+            this.excludes = excludes;
+            this.path = path;
+            this.hash = ((poClass.hashCode() * 31 + voClass.hashCode()) * 31 + excludes.hashCode()) * 31 + path.hashCode();
         }
 
-        T vo;
-        try {
-            vo = voClass.newInstance();
-        } catch (InstantiationException | IllegalAccessException e) {
-            throw new RuntimeException(e);
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey) o;
+            return poClass == other.poClass && voClass == other.voClass && path.equals(other.path)
+                    && excludes.equals(other.excludes);
         }
 
-        MethodAccess destMethodAccess = methodMap.get(voClass);
-        if (destMethodAccess == null) {
-            destMethodAccess = cache(vo);
+        @Override
+        public int hashCode() {
+            return hash;
         }
+    }
 
-        // 由于PO对象可能为动态包装的Proxy(Hibernate会把lazy load的属性包装为Proxy)，所以需要特殊处理
-        String poClassName = po.getClass().getName();
-        int suffix = poClassName.indexOf("_$$");
-        if (suffix != -1) {
-            po = initializeAndUnproxy(po);
-        }
-        MethodAccess srcMethodAccess = methodMap.get(po.getClass());
-        if (srcMethodAccess == null) {
-            srcMethodAccess = cache(po);
+    /**
+     * makeVo() 入口处的映射计划，键中的排除字段为调用方传入的数组内容（List）
+     */
+    private static final Map<PlanKey, MappingPlan> rootPlans = new ConcurrentHashMap<>();
+
+    /**
+     * 子对象的映射计划，键中的排除字段为规范化后的 Set
+     */
+    private static final Map<PlanKey, MappingPlan> childPlans = new ConcurrentHashMap<>();
+
+    /**
+     * 把某个PO类转换为某个VO类的映射计划（在特定的排除字段和字段路径下）。<br>
+     * 字段是否被排除、get/set方法的索引、子对象的类型都在生成计划时确定，转换每个对象时只需顺序执行，
+     * 不再拼接字符串或查找Map。子对象的计划在第一次用到时生成（VO之间可能循环引用）
+     */
+    private static final class MappingPlan {
+        private final Class<?> poClass;
+        private final Class<? extends Vo> voClass;
+        private final Set<String> excludes;
+        private final MethodAccess srcAccess;
+        private final MethodAccess destAccess;
+        private final String[] fieldNames;
+        private final int[] getIndexes;
+        private final int[] setIndexes;
+        private final int[] kinds;
+        private final Class<?>[] childVoClasses;
+        private final String[] childPaths;
+
+        /**
+         * 各字段最近一次使用的子对象计划（子对象的PO类通常固定，不一致时再到 childPlans 中查找）
+         */
+        private final MappingPlan[] lastChildPlans;
+
+        MappingPlan(Class<?> poClass, Class<? extends Vo> voClass, Set<String> excludes, List<Field> fields,
+                    List<Integer> getIndexes, List<Integer> setIndexes, List<Integer> kinds, List<Class<?>> childVoClasses,
+                    String path) {
+            this.poClass = poClass;
+            this.voClass = voClass;
+            this.excludes = excludes;
+            this.srcAccess = methodMap.get(poClass);
+            this.destAccess = methodMap.get(voClass);
+            int count = fields.size();
+            this.fieldNames = new String[count];
+            this.getIndexes = new int[count];
+            this.setIndexes = new int[count];
+            this.kinds = new int[count];
+            this.childVoClasses = new Class<?>[count];
+            this.childPaths = new String[count];
+            this.lastChildPlans = new MappingPlan[count];
+            for (int i = 0; i < count; i++) {
+                fieldNames[i] = fields.get(i).getName();
+                this.getIndexes[i] = getIndexes.get(i);
+                this.setIndexes[i] = setIndexes.get(i);
+                this.kinds[i] = kinds.get(i);
+                this.childVoClasses[i] = childVoClasses.get(i);
+                childPaths[i] = path + "." + fieldNames[i];
+            }
         }
 
-        List<Field> fieldList = fieldMap.get(voClass);
-        for (Field field : fieldList) {
+        @SuppressWarnings("deprecation")
+        Vo apply(Po po, int depth) {
+            Vo vo;
             try {
-                final String fullName = fullFieldName + "." + field.getName();
-                if (isFieldExcluded(voClass.getSimpleName(), field.getName(), fullName, excludeFields)) {
-                    continue;
-                }
-                String fieldName = StringUtils.capitalize(field.getName());
-                String getKey = po.getClass().getName() + "." + "get" + fieldName;
-                String setkey = vo.getClass().getName() + "." + "set" + fieldName;
-                Integer getIndex = methodIndexMap.get(getKey);
-                if (getIndex != null) {
-                    int setIndex = methodIndexMap.get(setkey);
-                    Object srcValue = srcMethodAccess.invoke(po, getIndex);
+                vo = voClass.newInstance();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
 
+            for (int i = 0; i < kinds.length; i++) {
+                try {
+                    Object srcValue = srcAccess.invoke(po, getIndexes[i]);
                     Object destValue = srcValue;
-                    if (Vo.class.isAssignableFrom(field.getType())) {
-                        if (log.isTraceEnabled()) {
-                            log.trace(String.format("voClass[%s] fieldName[%s] fieldType[%s]", voClass.getSimpleName(),
-                                    field.getName(), field.getType().getSimpleName()));
-                        }
-                        if (srcValue != null && !(srcValue instanceof Po)) {
-                            throw new RuntimeException(String.format("期望是Po但实际是%s--", srcValue.getClass())
-                                    + String.format("voClass[%s] fieldName[%s] fieldType[%s]", voClass.getSimpleName(),
-                                    field.getName(), field.getType().getSimpleName()));
-                        }
-                        destValue = doMakeVo((Po) srcValue, (Class<T>) field.getType(), excludeFields, fullName);
-                    } else if (List.class.isAssignableFrom(field.getType())) {
-                        Type fc = field.getGenericType();
-                        if (fc instanceof ParameterizedType pt) {
-                            Class<?> genericClazz = (Class<?>) pt.getActualTypeArguments()[0];
-                            if (log.isTraceEnabled()) {
-                                log.trace(String.format("voClass[%s] fieldName[%s] fieldType[%s] genericClazz[%s]",
-                                        voClass.getSimpleName(), field.getName(), field.getType().getSimpleName(),
-                                        genericClazz.getSimpleName()));
+                    switch (kinds[i]) {
+                        case VO_FIELD:
+                            if (srcValue != null && !(srcValue instanceof Po)) {
+                                throw new RuntimeException(String.format("期望是Po但实际是%s--", srcValue.getClass())
+                                        + String.format("voClass[%s] fieldName[%s] fieldType[%s]", voClass.getSimpleName(),
+                                        fieldNames[i], childVoClasses[i].getSimpleName()));
                             }
-                            List<Po> srcList = (List<Po>) srcValue;
-                            destValue = new ArrayList<>();
+                            destValue = applyChild(i, (Po) srcValue, depth);
+                            break;
+                        case VO_LIST_FIELD:
+                            List<?> srcList = (List<?>) srcValue;
+                            List<Vo> destList = new ArrayList<>(srcList == null ? 0 : srcList.size());
                             if (srcList != null) {
-                                if (!Vo.class.isAssignableFrom(genericClazz)) {
-                                    throw new RuntimeException("List generic type is not a Vo: " + genericClazz.getName());
-                                }
-                                Class<? extends Vo> voType = (Class<? extends Vo>) genericClazz;
-                                for (Po srcListItem : srcList) {
-                                    Vo childVo = doMakeVo(srcListItem, voType, excludeFields, fullName);
-                                    ((List<Vo>) destValue).add(childVo);
+                                for (Object srcListItem : srcList) {
+                                    destList.add(applyChild(i, (Po) srcListItem, depth));
                                 }
                             }
-                        }
+                            destValue = destList;
+                            break;
+                        case NON_VO_LIST_FIELD:
+                            if (srcValue != null) {
+                                throw new RuntimeException("List generic type is not a Vo: " + childVoClasses[i].getName());
+                            }
+                            destValue = new ArrayList<>();
+                            break;
+                        default:
+                            break;
                     }
+                    destAccess.invoke(vo, setIndexes[i], destValue);
+                } catch (RuntimeException e) {
+                    log.error(String.format("处理%s.%s时发生异常", po.getClass().getName(), fieldNames[i]));
+                    throw e;
+                }
+            }
+            return vo;
+        }
 
-                    destMethodAccess.invoke(vo, setIndex, destValue);
+        private Vo applyChild(int i, Po po, int depth) {
+            if (po == null) {
+                return null;
+            }
+            if (depth + 1 > MAX_CALL_DEEP) {
+                throw new RuntimeException("函数调用深度大于" + MAX_CALL_DEEP + ": " + childPaths[i]);
+            }
+            po = unproxy(po);
+            MappingPlan plan = lastChildPlans[i];
+            if (plan == null || plan.poClass != po.getClass()) {
+                PlanKey key = new PlanKey(po.getClass(), childVoClasses[i], excludes, childPaths[i]);
+                plan = childPlans.get(key);
+                if (plan == null) {
+                    @SuppressWarnings("unchecked")
+                    Class<? extends Vo> childVoClass = (Class<? extends Vo>) childVoClasses[i];
+                    plan = compilePlan(po.getClass(), childVoClass, excludes, childPaths[i]);
+                    childPlans.putIfAbsent(key, plan);
                 }
-            } catch (RuntimeException e) {
-                log.error(String.format("处理%s.%s时发生异常", poClassName, field.getName()));
-                throw e;
+                lastChildPlans[i] = plan;
             }
+            return plan.apply(po, depth + 1);
         }
+    }
 
-        // 离开函数，减少调用深度
-        callDeep.set(callDeep.get() - 1);
-        return vo;
+    /**
+     * 生成把 poClass 转换为 voClass 的映射计划，字段的取舍规则与逐对象反射转换完全相同
+     *
+     * @param path 当前对象在整个对象图中的字段路径（如 .meaningItems.synonyms），用于判断字段是否被排除
+     */
+    private static MappingPlan compilePlan(Class<?> poClass, Class<? extends Vo> voClass, Set<String> excludes, String path) {
+        if (!methodMap.containsKey(voClass)) {
+            cache(voClass);
+        }
+        if (!methodMap.containsKey(poClass)) {
+            cache(poClass);
+        }
+        HashSet<String> excludeSet = excludes instanceof HashSet ? (HashSet<String>) excludes : new HashSet<>(excludes);
+
+        List<Field> fields = new ArrayList<>();
+        List<Integer> getIndexes = new ArrayList<>();
+        List<Integer> setIndexes = new ArrayList<>();
+        List<Integer> kinds = new ArrayList<>();
+        List<Class<?>> childVoClasses = new ArrayList<>();
+        for (Field field : fieldMap.get(voClass)) {
+            if (isFieldExcluded(voClass.getSimpleName(), field.getName(), path + "." + field.getName(), excludeSet)) {
+                continue;
+            }
+            String fieldName = StringUtils.capitalize(field.getName());
+            Integer getIndex = methodIndexMap.get(poClass.getName() + "." + "get" + fieldName);
+            if (getIndex == null) {
+                continue;
+            }
+            Integer setIndex = methodIndexMap.get(voClass.getName() + "." + "set" + fieldName);
+            if (setIndex == null) {
+                throw new RuntimeException(String.format("%s.%s没有set方法", voClass.getName(), field.getName()));
+            }
+
+            int kind = VALUE_FIELD;
+            Class<?> childVoClass = null;
+            if (Vo.class.isAssignableFrom(field.getType())) {
+                kind = VO_FIELD;
+                childVoClass = field.getType();
+            } else if (List.class.isAssignableFrom(field.getType())
+                    && field.getGenericType() instanceof ParameterizedType pt) {
+                childVoClass = (Class<?>) pt.getActualTypeArguments()[0];
+                kind = Vo.class.isAssignableFrom(childVoClass) ? VO_LIST_FIELD : NON_VO_LIST_FIELD;
+            }
+            if (log.isTraceEnabled()) {
+                log.trace(String.format("voClass[%s] fieldName[%s] fieldType[%s] kind[%d]", voClass.getSimpleName(),
+                        field.getName(), field.getType().getSimpleName(), kind));
+            }
+            fields.add(field);
+            getIndexes.add(getIndex);
+            setIndexes.add(setIndex);
+            kinds.add(kind);
+            childVoClasses.add(childVoClass);
+        }
+        return new MappingPlan(poClass, voClass, Collections.unmodifiableSet(excludeSet), fields, getIndexes, setIndexes,
+                kinds, childVoClasses, path);
+    }
+
+    /**
+     * 由于PO对象可能为动态包装的Proxy(Hibernate会把lazy load的属性包装为Proxy)，需要先还原为源对象
+     */
+    private static Po unproxy(Po po) {
+        if (po.getClass().getName().indexOf("_$$") != -1) {
+            return initializeAndUnproxy(po);
+        }
+        return po;
     }
 
     /**
@@ -263,8 +411,11 @@ public class BeanUtils {
      *
      * @return
      */
-    private static MethodAccess cache(Object obj) {
-        Class<? extends Object> clazz = obj.getClass();
+    static MethodAccess cache(Object obj) {
+        return cache(obj.getClass());
+    }
+
+    private static MethodAccess cache(Class<?> clazz) {
         synchronized (methodMap) {
             MethodAccess methodAccess = methodMap.get(clazz);
             if (methodAccess == null) {
@@ -398,7 +549,7 @@ public class BeanUtils {
      * @param excludeFields
      * @return
      */
-    private static boolean isFieldExcluded(String className, String fieldName, String fullFieldName, HashSet<String> excludeFields) {
+    static boolean isFieldExcluded(String className, String fieldName, String fullFieldName, HashSet<String> excludeFields) {
         int lastDotIndex = fullFieldName.lastIndexOf(".");
         final String path = fullFieldName.substring(0, lastDotIndex).replaceFirst("\\.", "");
         final String pureFieldName = fullFieldName.substring(lastDotIndex + 1);
@@ -0,0 +1,600 @@
+package beidanci.service.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.servlet.http.HttpServletRequest;
+
+import beidanci.api.model.DictDto;
+import beidanci.api.model.DictRes;
+import beidanci.api.model.DictWordDto;
+import beidanci.api.model.MeaningItemDto;
+import beidanci.api.model.SentenceDto;
+import beidanci.api.model.SimilarWordDto;
+import beidanci.api.model.SynonymDto;
+import beidanci.api.model.UserDbLogDto;
+import beidanci.api.model.WordDto;
+import beidanci.api.model.WordImageDto;
+
+/**
+ * 词典资源/用户数据库日志的紧凑二进制编码（按列存储），客户端通过 Accept: {@value #MEDIA_TYPE} 请求此格式。<br>
+ * 格式：4字节魔数 "NBDC"，1字节格式版本，1字节内容类型，然后依次是各个表。
+ * 每个表由若干块组成，块以行数（varint）开头，行数为0表示表结束；块内按列依次存放每一行的值：
+ * <ul>
+ * <li>文本：varint(字节数+1) + UTF-8字节，0表示null</li>
+ * <li>符号（ID、词性等重复出现的字符串）：0表示null，1表示新符号（后跟文本并加入符号表），n(≥2)表示符号表中第n-2个符号。
+ * 符号表在整个流中共享，编码和解码时同步建立，不需要预先传输</li>
+ * <li>整数：0表示null，否则为 zigzag(值)+1 的varint</li>
+ * <li>布尔：1字节，0=null，1=false，2=true</li>
+ * <li>时间：0表示null，否则为与本列上一个非null值的毫秒差 zigzag+1 的varint</li>
+ * </ul>
+ * 只有成功的应答使用此格式，失败的应答仍然是JSON（Content-Type 为 application/json）。
+ * 列表为null时按空列表编码，派生属性（如 WordDto.sound）不编码，由客户端自行计算
+ */
+public class DictResBinaryCodec {
+
+    public static final String MEDIA_TYPE = "application/x-nnbdc-columnar";
+
+    private static final byte[] MAGIC = {'N', 'B', 'D', 'C'};
+    private static final int FORMAT_VERSION = 1;
+
+    public static final int CONTENT_DICT_RES = 1;
+    public static final int CONTENT_USER_DB_LOGS = 2;
+
+    /**
+     * 每块最多行数，解码端可以逐块处理
+     */
+    private static final int BLOCK_SIZE = 4096;
+
+    /**
+     * 符号表最大长度，超过后新出现的符号不再加入符号表（编码和解码遵循相同规则）
+     */
+    private static final int MAX_SYMBOLS = 1 << 16;
+
+    private DictResBinaryCodec() {
+    }
+
+    public static boolean isAccepted(HttpServletRequest request) {
+        String accept = request.getHeader("Accept");
+        return accept != null && accept.contains(MEDIA_TYPE);
+    }
+
+    // ==================== 词典资源 ====================
+
+    public static void encodeDictRes(DictRes dictRes, OutputStream out) throws IOException {
+        ColumnarOutput output = new ColumnarOutput(out);
+        output.writeHeader(CONTENT_DICT_RES);
+        List<DictDto> dicts = new ArrayList<>();
+        if (dictRes.getDict() != null) {
+            dicts.add(dictRes.getDict());
+        }
+        dictTable().write(output, dicts);
+        dictWordTable().write(output, dictRes.getDictWords());
+        wordTable().write(output, dictRes.getWords());
+        meaningItemTable().write(output, dictRes.getMeaningItems());
+        similarWordTable().write(output, dictRes.getSimilarWords());
+        synonymTable().write(output, dictRes.getSynonyms());
+        sentenceTable().write(output, dictRes.getSentences());
+        wordImageTable().write(output, dictRes.getImages());
+        output.flush();
+    }
+
+    public static DictRes decodeDictRes(InputStream in) throws IOException {
+        ColumnarInput input = new ColumnarInput(in);
+        input.readHeader(CONTENT_DICT_RES);
+        List<DictDto> dicts = dictTable().read(input);
+        List<DictWordDto> dictWords = dictWordTable().read(input);
+        List<WordDto> words = wordTable().read(input);
+        List<MeaningItemDto> meaningItems = meaningItemTable().read(input);
+        List<SimilarWordDto> similarWords = similarWordTable().read(input);
+        List<SynonymDto> synonyms = synonymTable().read(input);
+        List<SentenceDto> sentences = sentenceTable().read(input);
+        List<WordImageDto> images = wordImageTable().read(input);
+        return new DictRes(dicts.isEmpty() ? null : dicts.get(0), dictWords, words, meaningItems, similarWords,
+                synonyms, sentences, images);
+    }
+
+    // ==================== 用户数据库日志 ====================
+
+    public static void encodeUserDbLogs(List<UserDbLogDto> logs, OutputStream out) throws IOException {
+        UserDbLogEncoder encoder = new UserDbLogEncoder(out);
+        for (UserDbLogDto log : logs) {
+            encoder.add(log);
+        }
+        encoder.finish();
+    }
+
+    public static List<UserDbLogDto> decodeUserDbLogs(InputStream in) throws IOException {
+        ColumnarInput input = new ColumnarInput(in);
+        input.readHeader(CONTENT_USER_DB_LOGS);
+        return userDbLogTable().read(input);
+    }
+
+    /**
+     * 逐条编码用户数据库日志（用于全量同步时边查询边输出），每满一块输出一次
+     */
+    public static class UserDbLogEncoder {
+        private final ColumnarOutput output;
+        private final Table<UserDbLogDto> table = userDbLogTable();
+        private final List<UserDbLogDto> block = new ArrayList<>(BLOCK_SIZE);
+
+        public UserDbLogEncoder(OutputStream out) throws IOException {
+            output = new ColumnarOutput(out);
+            output.writeHeader(CONTENT_USER_DB_LOGS);
+        }
+
+        public void add(UserDbLogDto log) throws IOException {
+            block.add(log);
+            if (block.size() == BLOCK_SIZE) {
+                table.writeBlock(output, block);
+                block.clear();
+            }
+        }
+
+        public void finish() throws IOException {
+            if (!block.isEmpty()) {
+                table.writeBlock(output, block);
+                block.clear();
+            }
+            output.writeVarLong(0);
+            output.flush();
+        }
+    }
+
+    // ==================== 表结构 ====================
+    // 时间列是有状态的（记录上一个值），所以每次编码/解码都新建表结构
+
+    private static Table<DictDto> dictTable() {
+        return new Table<>(DictDto::new, Arrays.asList(
+                symbol(DictDto::getId, DictDto::setId),
+                text(DictDto::getName, DictDto::setName),
+                symbol(DictDto::getOwnerId, DictDto::setOwnerId),
+                bool(DictDto::getIsShared, DictDto::setIsShared),
+                bool(DictDto::getIsReady, DictDto::setIsReady),
+                bool(DictDto::getVisible, DictDto::setVisible),
+                integer(DictDto::getWordCount, DictDto::setWordCount),
+                integer(DictDto::getPopularityLimit, DictDto::setPopularityLimit),
+                time(DictDto::getCreateTime, DictDto::setCreateTime),
+                time(DictDto::getUpdateTime, DictDto::setUpdateTime)));
+    }
+
+    private static Table<DictWordDto> dictWordTable() {
+        return new Table<>(DictWordDto::new, Arrays.asList(
+                symbol(DictWordDto::getDictId, DictWordDto::setDictId),
+                symbol(DictWordDto::getWordId, DictWordDto::setWordId),
+                integer(DictWordDto::getSeq, DictWordDto::setSeq),
+                time(DictWordDto::getCreateTime, DictWordDto::setCreateTime),
+                time(DictWordDto::getUpdateTime, DictWordDto::setUpdateTime)));
+    }
+
+    private static Table<WordDto> wordTable() {
+        return new Table<>(WordDto::new, Arrays.asList(
+                symbol(WordDto::getId, WordDto::setId),
+                text(WordDto::getSpell, WordDto::setSpell),
+                text(WordDto::getBritishPronounce, WordDto::setBritishPronounce),
+                text(WordDto::getAmericaPronounce, WordDto::setAmericaPronounce),
+                text(WordDto::getPronounce, WordDto::setPronounce),
+                integer(WordDto::getPopularity, WordDto::setPopularity),
+                symbol(WordDto::getGroupInfo, WordDto::setGroupInfo),
+                text(WordDto::getShortDesc, WordDto::setShortDesc),
+                text(WordDto::getLongDesc, WordDto::setLongDesc),
+                time(WordDto::getCreateTime, WordDto::setCreateTime),
+                time(WordDto::getUpdateTime, WordDto::setUpdateTime)));
+    }
+
+    private static Table<MeaningItemDto> meaningItemTable() {
+        return new Table<>(MeaningItemDto::new, Arrays.asList(
+                symbol(MeaningItemDto::getId, MeaningItemDto::setId),
+                symbol(MeaningItemDto::getWordId, MeaningItemDto::setWordId),
+                symbol(MeaningItemDto::getDictId, MeaningItemDto::setDictId),
+                symbol(MeaningItemDto::getCiXing, MeaningItemDto::setCiXing),
+                text(MeaningItemDto::getMeaning, MeaningItemDto::setMeaning),
+                integer(MeaningItemDto::getPopularity, (m, v) -> m.setPopularity(v != null ? v : 0)),
+                bool(MeaningItemDto::isUpdating, (m, v) -> m.setUpdating(Boolean.TRUE.equals(v))),
+                time(MeaningItemDto::getUpdatingStartAt, MeaningItemDto::setUpdatingStartAt),
+                time(MeaningItemDto::getCreateTime, MeaningItemDto::setCreateTime),
+                time(MeaningItemDto::getUpdateTime, MeaningItemDto::setUpdateTime)));
+    }
+
+    private static Table<SimilarWordDto> similarWordTable() {
+        return new Table<>(SimilarWordDto::new, Arrays.asList(
+                symbol(SimilarWordDto::getWordId, SimilarWordDto::setWordId),
+                symbol(SimilarWordDto::getSimilarWordId, SimilarWordDto::setSimilarWordId),
+                text(SimilarWordDto::getSimilarWordSpell, SimilarWordDto::setSimilarWordSpell),
+                integer(SimilarWordDto::getDistance, (s, v) -> s.setDistance(v != null ? v : 0))));
+    }
+
+    private static Table<SynonymDto> synonymTable() {
+        return new Table<>(SynonymDto::new, Arrays.asList(
+                symbol(SynonymDto::getMeaningItemId, SynonymDto::setMeaningItemId),
+                symbol(SynonymDto::getWordId, SynonymDto::setWordId),
+                text(SynonymDto::getSpell, SynonymDto::setSpell),
+                time(SynonymDto::getCreateTime, SynonymDto::setCreateTime),
+                time(SynonymDto::getUpdateTime, SynonymDto::setUpdateTime)));
+    }
+
+    private static Table<SentenceDto> sentenceTable() {
+        return new Table<>(SentenceDto::new, Arrays.asList(
+                text(SentenceDto::getId, SentenceDto::setId),
+                text(SentenceDto::getEnglish, SentenceDto::setEnglish),
+                text(SentenceDto::getChinese, SentenceDto::setChinese),
+                text(SentenceDto::getWordMeaning, SentenceDto::setWordMeaning),
+                text(SentenceDto::getEnglishDigest, SentenceDto::setEnglishDigest),
+                time(SentenceDto::getLastDiyUpdateTime, SentenceDto::setLastDiyUpdateTime),
+                symbol(SentenceDto::getTheType, SentenceDto::setTheType),
+                integer(SentenceDto::getFootCount, SentenceDto::setFootCount),
+                integer(SentenceDto::getHandCount, SentenceDto::setHandCount),
+                symbol(SentenceDto::getProducer, SentenceDto::setProducer),
+                bool(SentenceDto::getNeedTts, SentenceDto::setNeedTts),
+                symbol(SentenceDto::getMeaningItemId, SentenceDto::setMeaningItemId),
+                symbol(SentenceDto::getAuthorId, SentenceDto::setAuthorId),
+                time(SentenceDto::getCreateTime, SentenceDto::setCreateTime),
+                time(SentenceDto::getUpdateTime, SentenceDto::setUpdateTime)));
+    }
+
+    private static Table<WordImageDto> wordImageTable() {
+        return new Table<>(WordImageDto::new, Arrays.asList(
+                text(WordImageDto::getId, WordImageDto::setId),
+                symbol(WordImageDto::getWordId, WordImageDto::setWordId),
+                text(WordImageDto::getImageFile, WordImageDto::setImageFile),
+                integer(WordImageDto::getHand, WordImageDto::setHand),
+                integer(WordImageDto::getFoot, WordImageDto::setFoot),
+                symbol(WordImageDto::getAuthorId, WordImageDto::setAuthorId),
+                time(WordImageDto::getCreateTime, WordImageDto::setCreateTime),
+                time(WordImageDto::getUpdateTime, WordImageDto::setUpdateTime)));
+    }
+
+    private static Table<UserDbLogDto> userDbLogTable() {
+        return new Table<>(UserDbLogDto::new, Arrays.asList(
+                text(UserDbLogDto::getId, UserDbLogDto::setId),
+                symbol(UserDbLogDto::getUserId, UserDbLogDto::setUserId),
+                integer(UserDbLogDto::getVersion, UserDbLogDto::setVersion),
+                symbol(UserDbLogDto::getOperate, UserDbLogDto::setOperate),
+                symbol(UserDbLogDto::getTblName, UserDbLogDto::setTblName),
+                text(UserDbLogDto::getRecordId, UserDbLogDto::setRecordId),
+                text(UserDbLogDto::getRecord, UserDbLogDto::setRecord),
+                time(UserDbLogDto::getCreateTime, UserDbLogDto::setCreateTime),
+                time(UserDbLogDto::getUpdateTime, UserDbLogDto::setUpdateTime)));
+    }
+
+    // ==================== 列 ====================
+
+    private interface Column<T> {
+        void write(ColumnarOutput out, T row) throws IOException;
+
+        void read(ColumnarInput in, T row) throws IOException;
+    }
+
+    private static <T> Column<T> text(Function<T, String> getter, BiConsumer<T, String> setter) {
+        return new Column<T>() {
+            @Override
+            public void write(ColumnarOutput out, T row) throws IOException {
+                out.writeText(getter.apply(row));
+            }
+
+            @Override
+            public void read(ColumnarInput in, T row) throws IOException {
+                setter.accept(row, in.readText());
+            }
+        };
+    }
+
+    private static <T> Column<T> symbol(Function<T, String> getter, BiConsumer<T, String> setter) {
+        return new Column<T>() {
+            @Override
+            public void write(ColumnarOutput out, T row) throws IOException {
+                out.writeSymbol(getter.apply(row));
+            }
+
+            @Override
+            public void read(ColumnarInput in, T row) throws IOException {
+                setter.accept(row, in.readSymbol());
+            }
+        };
+    }
+
+    private static <T> Column<T> integer(Function<T, Integer> getter, BiConsumer<T, Integer> setter) {
+        return new Column<T>() {
+            @Override
+            public void write(ColumnarOutput out, T row) throws IOException {
+                Integer value = getter.apply(row);
+                out.writeVarLong(value == null ? 0 : zigzag(value) + 1);
+            }
+
+            @Override
+            public void read(ColumnarInput in, T row) throws IOException {
+                long raw = in.readVarLong();
+                setter.accept(row, raw == 0 ? null : (int) unzigzag(raw - 1));
+            }
+        };
+    }
+
+    private static <T> Column<T> bool(Function<T, Boolean> getter, BiConsumer<T, Boolean> setter) {
+        return new Column<T>() {
+            @Override
+            public void write(ColumnarOutput out, T row) throws IOException {
+                Boolean value = getter.apply(row);
+                out.writeByte(value == null ? 0 : (value ? 2 : 1));
+            }
+
+            @Override
+            public void read(ColumnarInput in, T row) throws IOException {
+                int raw = in.readByte();
+                setter.accept(row, raw == 0 ? null : raw == 2);
+            }
+        };
+    }
+
+    private static <T> Column<T> time(Function<T, Date> getter, BiConsumer<T, Date> setter) {
+        return new Column<T>() {
+            private long prevWritten;
+            private long prevRead;
+
+            @Override
+            public void write(ColumnarOutput out, T row) throws IOException {
+                Date value = getter.apply(row);
+                if (value == null) {
+                    out.writeVarLong(0);
+                } else {
+                    long millis = value.getTime();
+                    out.writeVarLong(zigzag(millis - prevWritten) + 1);
+                    prevWritten = millis;
+                }
+            }
+
+            @Override
+            public void read(ColumnarInput in, T row) throws IOException {
+                long raw = in.readVarLong();
+                if (raw == 0) {
+                    setter.accept(row, null);
+                } else {
+                    prevRead += unzigzag(raw - 1);
+                    setter.accept(row, new Date(prevRead));
+                }
+            }
+        };
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // ==================== 表 ====================
+
+    private static class Table<T> {
+        private final Supplier<T> factory;
+        private final List<Column<T>> columns;
+
+        Table(Supplier<T> factory, List<Column<T>> columns) {
+            this.factory = factory;
+            this.columns = columns;
+        }
+
+        void write(ColumnarOutput out, List<T> rows) throws IOException {
+            if (rows != null) {
+                for (int from = 0; from < rows.size(); from += BLOCK_SIZE) {
+                    writeBlock(out, rows.subList(from, Math.min(rows.size(), from + BLOCK_SIZE)));
+                }
+            }
+            out.writeVarLong(0);
+        }
+
+        void writeBlock(ColumnarOutput out, List<T> block) throws IOException {
+            out.writeVarLong(block.size());
+            for (Column<T> column : columns) {
+                for (T row : block) {
+                    column.write(out, row);
+                }
+            }
+        }
+
+        List<T> read(ColumnarInput in) throws IOException {
+            List<T> rows = new ArrayList<>();
+            int count;
+            while ((count = (int) in.readVarLong()) > 0) {
+                int from = rows.size();
+                for (int i = 0; i < count; i++) {
+                    rows.add(factory.get());
+                }
+                List<T> block = rows.subList(from, from + count);
+                for (Column<T> column : columns) {
+                    for (T row : block) {
+                        column.read(in, row);
+                    }
+                }
+            }
+            return rows;
+        }
+    }
+
+    // ==================== 底层读写 ====================
+
+    private static class ColumnarOutput {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private final Map<String, Integer> symbols = new HashMap<>();
+
+        ColumnarOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeHeader(int contentType) throws IOException {
+            for (byte b : MAGIC) {
+                writeByte(b);
+            }
+            writeByte(FORMAT_VERSION);
+            writeByte(contentType);
+        }
+
+        void writeByte(int b) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        void writeText(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            writeBytes(bytes);
+        }
+
+        void writeSymbol(String value) throws IOException {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            Integer index = symbols.get(value);
+            if (index != null) {
+                writeVarLong(index + 2L);
+                return;
+            }
+            writeVarLong(1);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes);
+            if (symbols.size() < MAX_SYMBOLS) {
+                symbols.put(value, symbols.size());
+            }
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length - position) {
+                flushBuffer();
+                if (bytes.length > buffer.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+    }
+
+    private static class ColumnarInput {
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private int limit;
+        private final List<String> symbols = new ArrayList<>();
+
+        ColumnarInput(InputStream in) {
+            this.in = in;
+        }
+
+        void readHeader(int expectedContentType) throws IOException {
+            for (byte b : MAGIC) {
+                if (readByte() != b) {
+                    throw new IOException("不是有效的二进制词典资源格式");
+                }
+            }
+            int version = readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("不支持的格式版本: " + version);
+            }
+            int contentType = readByte();
+            if (contentType != expectedContentType) {
+                throw new IOException("内容类型不匹配: " + contentType);
+            }
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    throw new EOFException();
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String readText() throws IOException {
+            long length = readVarLong();
+            return length == 0 ? null : readString((int) (length - 1));
+        }
+
+        String readSymbol() throws IOException {
+            long raw = readVarLong();
+            if (raw == 0) {
+                return null;
+            }
+            if (raw >= 2) {
+                return symbols.get((int) (raw - 2));
+            }
+            String value = readString((int) readVarLong());
+            if (symbols.size() < MAX_SYMBOLS) {
+                symbols.add(value);
+            }
+            return value;
+        }
+
+        private String readString(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                if (position == limit) {
+                    readByte();
+                    position--;
+                }
+                int n = Math.min(length - read, limit - position);
+                System.arraycopy(buffer, position, bytes, read, n);
+                position += n;
+                read += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
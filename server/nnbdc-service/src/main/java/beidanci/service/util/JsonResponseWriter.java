@@ -0,0 +1,178 @@
+package beidanci.service.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import beidanci.api.Result;
+import beidanci.util.CountingOutputStream;
+
+/**
+ * 把大对象以JSON格式写入HTTP应答（数据同步、词典资源下载等）<br>
+ * 只序列化一次：客户端支持gzip时，通过两个计数流同时统计压缩前后的字节数；不支持gzip时序列化为字节数组，以便设置Content-Length。
+ * 所有请求共用一个配置好的ObjectMapper（配置完成后是线程安全的）。
+ * 客户端请求二进制格式时，由 {@link #writeEncoded} 以相同的方式统计和压缩
+ */
+@Component
+public class JsonResponseWriter {
+
+    private final ObjectMapper mapper;
+
+    public JsonResponseWriter() {
+        mapper = new ObjectMapper();
+        mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        // 配置日期序列化为 ISO-8601 字符串格式，而不是时间戳
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.setDateFormat(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
+    }
+
+    /**
+     * 以流的方式逐步生成JSON内容
+     */
+    @FunctionalInterface
+    public interface JsonBodyWriter {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    /**
+     * 把应答内容按其他格式（如 {@link DictResBinaryCodec}）编码写入输出流
+     */
+    @FunctionalInterface
+    public interface BodyEncoder {
+        void encode(OutputStream out) throws IOException;
+    }
+
+    /**
+     * 一次写入的统计信息
+     */
+    public static class WriteStats {
+        private final boolean gzip;
+        private final long originalBytes;
+        private final long transferredBytes;
+
+        WriteStats(boolean gzip, long originalBytes, long transferredBytes) {
+            this.gzip = gzip;
+            this.originalBytes = originalBytes;
+            this.transferredBytes = transferredBytes;
+        }
+
+        public boolean isGzip() {
+            return gzip;
+        }
+
+        /**
+         * 压缩前的JSON字节数
+         */
+        public long getOriginalBytes() {
+            return originalBytes;
+        }
+
+        /**
+         * 实际传输的字节数
+         */
+        public long getTransferredBytes() {
+            return transferredBytes;
+        }
+
+        /**
+         * 压缩率（百分比），未压缩时为0
+         */
+        public double getCompressionRatio() {
+            if (!gzip || originalBytes <= 0) {
+                return 0.0;
+            }
+            return (1.0 - (double) transferredBytes / originalBytes) * 100.0;
+        }
+    }
+
+    public static boolean supportsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    /**
+     * 把对象序列化为JSON写入应答
+     */
+    public WriteStats write(Object body, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        if (supportsGzip(request)) {
+            // 使用 gzip 压缩时，由于压缩后大小未知，使用 chunked 模式
+            response.setHeader("Content-Encoding", "gzip");
+            return writeGzip(body, response.getOutputStream());
+        } else {
+            // 不压缩时使用 Content-Length 模式，这样客户端可以显示准确的进度
+            byte[] json = mapper.writeValueAsBytes(body);
+            response.setHeader("Content-Length", String.valueOf(json.length));
+            response.getOutputStream().write(json);
+            return new WriteStats(false, json.length, json.length);
+        }
+    }
+
+    /**
+     * 把对象序列化为gzip压缩的JSON写入输出流（写完后关闭输出流）
+     */
+    public WriteStats writeGzip(Object body, OutputStream out) throws IOException {
+        CountingOutputStream countingOut = new CountingOutputStream(out);
+        CountingOutputStream jsonOut = new CountingOutputStream(new GZIPOutputStream(countingOut));
+        mapper.writeValue(jsonOut, body);
+        return new WriteStats(true, jsonOut.getByteCount(), countingOut.getByteCount());
+    }
+
+    /**
+     * 以流的方式生成JSON并写入应答（chunked 模式），适用于无法预先在内存中构建完整对象的大应答
+     */
+    public WriteStats writeStreaming(JsonBodyWriter bodyWriter, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        boolean gzip = supportsGzip(request);
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        CountingOutputStream countingOut = new CountingOutputStream(response.getOutputStream());
+        OutputStream out = gzip ? new GZIPOutputStream(countingOut) : countingOut;
+        CountingOutputStream jsonOut = new CountingOutputStream(out);
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(jsonOut)) {
+            bodyWriter.write(gen);
+        }
+        return new WriteStats(gzip, jsonOut.getByteCount(), countingOut.getByteCount());
+    }
+
+    /**
+     * 以指定的内容类型写入非JSON格式的应答（chunked 模式），客户端支持时使用gzip压缩
+     */
+    public WriteStats writeEncoded(String contentType, BodyEncoder encoder, HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+        response.setContentType(contentType);
+        boolean gzip = supportsGzip(request);
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        CountingOutputStream countingOut = new CountingOutputStream(response.getOutputStream());
+        CountingOutputStream bodyOut = new CountingOutputStream(gzip ? new GZIPOutputStream(countingOut) : countingOut);
+        try (OutputStream out = bodyOut) {
+            encoder.encode(out);
+        }
+        return new WriteStats(gzip, bodyOut.getByteCount(), countingOut.getByteCount());
+    }
+
+    /**
+     * 写入失败应答（未压缩）
+     */
+    public void writeError(String msg, HttpServletResponse response) throws IOException {
+        String errorJson = mapper.writeValueAsString(Result.fail(msg));
+        PrintWriter writer = response.getWriter();
+        writer.write(errorJson);
+        writer.flush();
+    }
+}
@@ -2,21 +2,31 @@ package beidanci.service.util;
 
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.io.StringWriter;
 
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 public class JsonUtils {
 
+    /**
+     * 共享的ObjectMapper，配置完成后是线程安全的，避免每次序列化都重新创建
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        MAPPER.setSerializationInclusion(Include.NON_NULL);
+        MAPPER.configure(SerializationFeature.WRITE_ENUMS_USING_TO_STRING, true);
+        MAPPER.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        // 允许JSON包含实体类没有的属性
+        MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
     /**
      * 把数据对象直接格式化为JSON字符串发送出去
      *
@@ -33,20 +43,11 @@ public class JsonUtils {
     }
 
     public static String toJson(Object data) {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(Include.NON_NULL);
-        mapper.configure(SerializationFeature.WRITE_ENUMS_USING_TO_STRING, true);
-        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-        StringWriter sw = new StringWriter();
-        JsonGenerator gen;
         try {
-            gen = new JsonFactory().createGenerator(sw);
-            mapper.writeValue(gen, data);
-            gen.close();
+            return MAPPER.writeValueAsString(data);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return sw.toString();
     }
 
     public static <T> T makeObject(String json, Class<T> clazz) {
@@ -54,14 +55,8 @@ public class JsonUtils {
             return null;
         }
 
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.setSerializationInclusion(Include.NON_NULL);
-        mapper.configure(SerializationFeature.WRITE_ENUMS_USING_TO_STRING, true);
-        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
-        // 允许JSON包含实体类没有的属性
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         try {
-            return mapper.readValue(json, clazz);
+            return MAPPER.readValue(json, clazz);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -1,10 +1,11 @@
 package beidanci.service.util;
 
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -22,7 +23,8 @@ import beidanci.util.Utils;
 
 /**
  * 计算用户的排名<br>
- * 积分为零的用户不计入排名
+ * 积分为零的用户不计入排名。各排行榜（{@link RankType}）保存在持久化树堆中，单个用户积分变化时以O(log N)更新，
+ * 查询排名和按排名区间取用户不加锁
  *
  * @author Administrator
  */
@@ -39,6 +41,44 @@ public class UserSorter implements InitializingBean {
 
     private final Map<String, UserScoreRecord> userOrders = new ConcurrentHashMap<>();
 
+    /**
+     * 排行榜类型（积分相同时按用户名排序，保证顺序确定）
+     */
+    public enum RankType {
+        /**
+         * 总积分
+         */
+        SCORE(Comparator.comparingInt(UserScoreRecord::getTotalScore).reversed()),
+        /**
+         * 打卡率
+         */
+        DAKA_RATIO(Comparator.comparingDouble(UserScoreRecord::getDakaRatio).reversed()
+                .thenComparing(Comparator.comparingInt(UserScoreRecord::getTotalScore).reversed())),
+        /**
+         * 当前连续打卡天数
+         */
+        CONTINUOUS_DAKA_DAY_COUNT(Comparator.comparingInt(UserScoreRecord::getContinuousDakaDayCount).reversed()
+                .thenComparing(Comparator.comparingInt(UserScoreRecord::getTotalScore).reversed())),
+        /**
+         * 已掌握单词数
+         */
+        MASTERED_WORD_COUNT(Comparator.comparingInt(UserScoreRecord::getMasteredWordCount).reversed()
+                .thenComparing(Comparator.comparingInt(UserScoreRecord::getTotalScore).reversed()));
+
+        private final Comparator<UserScoreRecord> comparator;
+
+        RankType(Comparator<UserScoreRecord> order) {
+            this.comparator = order.thenComparing(UserScoreRecord::getUserName);
+        }
+    }
+
+    /**
+     * 每种排行榜一棵持久化树堆（treap），按 {@link RankType} 的顺序存放。
+     * 更新时只复制从根到被修改节点路径上的O(log N)个节点，然后整体替换根节点数组，
+     * 读取者拿到的始终是某一时刻完整的排名，不会看到排序到一半的状态
+     */
+    private volatile Node[] roots = new Node[RankType.values().length];
+
     /**
      * 获取指定用户的总积分排名
      *
@@ -46,10 +86,33 @@ public class UserSorter implements InitializingBean {
      * @return 用户总积分排名，如果没有该用户排名记录（用户积分为零），返回-1
      */
     public int getOrderOfUser(String userName) {
-        if (!userOrders.containsKey(userName)) {
+        return getRankOfUser(RankType.SCORE, userName);
+    }
+
+    /**
+     * 获取指定用户在指定排行榜中的排名
+     *
+     * @return 排名（从1开始），如果没有该用户排名记录（用户积分为零），返回-1
+     */
+    public int getRankOfUser(RankType type, String userName) {
+        UserScoreRecord record = userOrders.get(userName);
+        if (record == null) {
             return -1;
         }
-        return userOrders.get(userName).getOrder();
+        return rankOf(roots[type.ordinal()], record, type.comparator);
+    }
+
+    /**
+     * 获取指定排行榜中排名从 fromRank 开始的最多 count 个用户（按排名顺序），耗时O(log N + count)
+     *
+     * @param fromRank 起始排名（从1开始）
+     */
+    public List<UserScoreRecord> getRecordsByRank(RankType type, int fromRank, int count) {
+        List<UserScoreRecord> records = new ArrayList<>(Math.max(0, Math.min(count, 1000)));
+        int from = Math.max(fromRank, 1) - 1;
+        long to = (long) from + Math.max(count, 0);
+        collectRange(roots[type.ordinal()], from, (int) Math.min(to, Integer.MAX_VALUE), 0, records);
+        return records;
     }
 
     /**
@@ -61,14 +124,19 @@ public class UserSorter implements InitializingBean {
             log.info("正在初始化用户排序器...");
             List<User> users = userBo.findUsersTotalScoreMoreThan(0, false);
 
-            // 将用户加入到保存排序结果的哈西表，稍后对此哈希表进行排序
-            userOrders.clear();
-            for (User user : users) {
-                userOrders.put(user.getUserName(), new UserScoreRecord(user));
+            synchronized (this) {
+                Node[] newRoots = new Node[RankType.values().length];
+                Map<String, UserScoreRecord> records = new HashMap<>();
+                for (User user : users) {
+                    UserScoreRecord record = new UserScoreRecord(user);
+                    UserScoreRecord old = records.put(record.getUserName(), record);
+                    replace(newRoots, old, record);
+                }
+                roots = newRoots;
+                userOrders.keySet().retainAll(records.keySet());
+                userOrders.putAll(records);
             }
 
-            sort();
-
             long endTime = System.currentTimeMillis();
             log.info(String.format("用户排序器初始化完毕！用户数(%d), 耗时%dms", users.size(), endTime - startTime));
         } catch (Exception e) {
@@ -77,30 +145,184 @@ public class UserSorter implements InitializingBean {
         }
     }
 
-    private void sort() {
-        long startTime = System.currentTimeMillis();
-        List<UserScoreRecord> userSortRecords = new LinkedList<>(userOrders.values());
+    /**
+     * 用户积分变化后更新排名，每个用户的更新耗时为O(log N)
+     */
+    public void onUserChanged(List<User> changedUsers) {
+        for (User user : changedUsers) {
+            UserScoreRecord record = new UserScoreRecord(user);
+            synchronized (this) {
+                Node[] newRoots = roots.clone();
+                UserScoreRecord old = userOrders.get(record.getUserName());
+                if (record.getTotalScore() > 0) {
+                    replace(newRoots, old, record);
+                    roots = newRoots;
+                    userOrders.put(record.getUserName(), record);
+                } else {
+                    // 积分为零的用户不计入排名
+                    replace(newRoots, old, null);
+                    roots = newRoots;
+                    userOrders.remove(record.getUserName());
+                }
+            }
+        }
+    }
+
+    /**
+     * 在每棵树中用新记录替换旧记录（都可以为null）
+     */
+    private static void replace(Node[] roots, UserScoreRecord old, UserScoreRecord record) {
+        for (RankType type : RankType.values()) {
+            int i = type.ordinal();
+            if (old != null) {
+                roots[i] = delete(roots[i], old, type.comparator);
+            }
+            if (record != null) {
+                roots[i] = insert(roots[i], new Node(record, priorityOf(record), null, null), type.comparator);
+            }
+        }
+    }
+
+    /**
+     * 参与排名的用户数
+     */
+    public int getRankedUserCount() {
+        return size(roots[RankType.SCORE.ordinal()]);
+    }
+
+    // ==================== 持久化树堆 ====================
+
+    private static final class Node {
+        final UserScoreRecord record;
+        final int priority;
+        final int size;
+        final Node left;
+        final Node right;
+
+        Node(UserScoreRecord record, int priority, Node left, Node right) {
+            this.record = record;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        Node with(Node left, Node right) {
+            return new Node(record, priority, left, right);
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
 
-        // 对用户列表进行排序
-        Collections.sort(userSortRecords, (UserScoreRecord o1, UserScoreRecord o2) -> o2.getTotalScore() - o1.getTotalScore());
+    /**
+     * 节点优先级取自用户名的哈希，同一用户每次更新的优先级相同
+     */
+    private static int priorityOf(UserScoreRecord record) {
+        int h = record.userName.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
 
-        // 保存排序结果到哈希表，以加快查询速度
-        userOrders.clear();
-        for (int i = 0; i < userSortRecords.size(); i++) {
-            UserScoreRecord userScoreRecord = userSortRecords.get(i);
-            userScoreRecord.setOrder(i + 1);
-            userOrders.put(userScoreRecord.getUserName(), userScoreRecord);
+    /**
+     * 排在 record 之前的用户数 + 1（record 不在树中时，返回它插入后的排名）
+     */
+    private static int rankOf(Node node, UserScoreRecord record, Comparator<UserScoreRecord> cmp) {
+        int before = 0;
+        while (node != null) {
+            int c = cmp.compare(record, node.record);
+            if (c == 0) {
+                before += size(node.left);
+                break;
+            } else if (c < 0) {
+                node = node.left;
+            } else {
+                before += size(node.left) + 1;
+                node = node.right;
+            }
         }
+        return before + 1;
+    }
 
-        long endTime = System.currentTimeMillis();
-        log.info(String.format("对用户积分进行排名，耗时:%dms", endTime - startTime));
+    /**
+     * 按顺序收集位置在 [from, to) 范围内的记录（位置从0开始），offset 为该子树最左节点的位置
+     */
+    private static void collectRange(Node node, int from, int to, int offset, List<UserScoreRecord> out) {
+        if (node == null || from >= to) {
+            return;
+        }
+        int index = offset + size(node.left);
+        if (from < index) {
+            collectRange(node.left, from, to, offset, out);
+        }
+        if (from <= index && index < to) {
+            out.add(node.record);
+        }
+        if (index + 1 < to) {
+            collectRange(node.right, from, to, index + 1, out);
+        }
     }
 
-    public void onUserChanged(List<User> changedUsers) {
-        for (User user : changedUsers) {
-            userOrders.put(user.getUserName(), new UserScoreRecord(user));
+    private static Node insert(Node node, Node newNode, Comparator<UserScoreRecord> cmp) {
+        if (node == null) {
+            return newNode;
+        }
+        if (newNode.priority > node.priority) {
+            Node[] parts = split(node, newNode.record, cmp);
+            return newNode.with(parts[0], parts[1]);
+        }
+        if (cmp.compare(newNode.record, node.record) < 0) {
+            return node.with(insert(node.left, newNode, cmp), node.right);
+        } else {
+            return node.with(node.left, insert(node.right, newNode, cmp));
+        }
+    }
+
+    /**
+     * 把树拆成排在 record 之前的部分和其余部分
+     */
+    private static Node[] split(Node node, UserScoreRecord record, Comparator<UserScoreRecord> cmp) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        if (cmp.compare(node.record, record) < 0) {
+            Node[] parts = split(node.right, record, cmp);
+            return new Node[]{node.with(node.left, parts[0]), parts[1]};
+        } else {
+            Node[] parts = split(node.left, record, cmp);
+            return new Node[]{parts[0], node.with(parts[1], node.right)};
+        }
+    }
+
+    private static Node delete(Node node, UserScoreRecord record, Comparator<UserScoreRecord> cmp) {
+        if (node == null) {
+            return null;
+        }
+        int c = cmp.compare(record, node.record);
+        if (c == 0) {
+            return merge(node.left, node.right);
+        } else if (c < 0) {
+            return node.with(delete(node.left, record, cmp), node.right);
+        } else {
+            return node.with(node.left, delete(node.right, record, cmp));
+        }
+    }
+
+    /**
+     * 合并两棵树（left 中的节点都排在 right 之前）
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.with(left.left, merge(left.right, right));
+        } else {
+            return right.with(merge(left, right.left), right.right);
         }
-        sort();
     }
 
     @Override
@@ -124,9 +346,6 @@ public class UserSorter implements InitializingBean {
          */
         int score;
 
-        // 总积分排名
-        int order;
-
         // 打卡率
         double dakaRatio;
 
@@ -193,7 +412,6 @@ public class UserSorter implements InitializingBean {
             this.continuousDakaDayCount = user.getContinuousDakaDayCount();
             this.masteredWordCount = user.getMasteredWordsCount();
             this.lastDakaDate = user.getLastDakaDate();
-            this.order = -1;
         }
 
         public String getUserName() {
@@ -204,12 +422,11 @@ public class UserSorter implements InitializingBean {
             return score;
         }
 
+        /**
+         * 总积分排名（按当前的排名计算）
+         */
         public int getOrder() {
-            return order;
-        }
-
-        public void setOrder(int order) {
-            this.order = order;
+            return rankOf(roots[RankType.SCORE.ordinal()], this, RankType.SCORE.comparator);
         }
 
         public int getScore() {
@@ -0,0 +1,138 @@
+package beidanci.service.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import beidanci.service.exception.DbVersionNotMatchException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 用户数据同步锁（进程内，每个正在同步的用户一把锁）<br>
+ * 同一用户的多个客户端同时同步时，在借用数据库连接之前就在内存中排队，
+ * 而不是各自占用一个连接阻塞在 user_db_version 的行锁上。排队过长或等待超时的同步直接被拒绝，客户端稍后重试。
+ * 锁只在有同步正在进行或等待时存在，不同用户之间互不影响。
+ * 数据库中的版本号CAS更新仍然作为最终的安全校验（例如多实例部署时）
+ */
+@Component
+public class UserSyncLockManager {
+    private static final Logger log = LoggerFactory.getLogger(UserSyncLockManager.class);
+
+    /**
+     * userId -> 该用户的同步锁，持有或等待的请求数降为0时删除
+     */
+    private final Map<String, UserLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * 获取锁的最长等待时间（毫秒）
+     */
+    private final long maxWaitMillis;
+
+    /**
+     * 每个用户允许排队等待的最大同步数，超过则直接拒绝
+     */
+    private final int maxQueueLength;
+
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    private static final class UserLock extends ReentrantLock {
+        /**
+         * 持有或等待该锁的请求数，只在 locks 的 compute 中修改
+         */
+        private int users;
+
+        private UserLock() {
+            super(true);
+        }
+    }
+
+    public UserSyncLockManager(MeterRegistry meterRegistry,
+                               @Value("${userSync.lock.maxWaitMillis:10000}") long maxWaitMillis,
+                               @Value("${userSync.lock.maxQueueLength:4}") int maxQueueLength) {
+        this.maxWaitMillis = maxWaitMillis;
+        this.maxQueueLength = maxQueueLength;
+
+        Gauge.builder("nnbdc.sync.lock.queue.depth", this, UserSyncLockManager::getQueueDepth)
+                .description("等待用户同步锁的请求数")
+                .register(meterRegistry);
+        Gauge.builder("nnbdc.sync.lock.users", locks, Map::size)
+                .description("正在同步（或等待同步）的用户数")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("nnbdc.sync.lock.wait")
+                .description("获取用户同步锁的等待时间")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("nnbdc.sync.lock.rejected")
+                .description("因排队过长或等待超时被拒绝的同步请求数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取指定用户的同步锁，获取成功后必须调用 {@link #unlock(String)} 释放
+     *
+     * @throws DbVersionNotMatchException 同一用户排队过长或等待超时（与版本冲突一样，客户端应稍后重试）
+     */
+    public void lock(String userId) throws DbVersionNotMatchException {
+        boolean[] rejected = new boolean[1];
+        UserLock lock = locks.compute(userId, (k, userLock) -> {
+            UserLock result = userLock != null ? userLock : new UserLock();
+            // users 包括持有者，等待者为 users - 1
+            if (result.users > maxQueueLength) {
+                rejected[0] = true;
+            } else {
+                result.users++;
+            }
+            return result;
+        });
+        if (rejected[0]) {
+            rejectedCounter.increment();
+            throw new DbVersionNotMatchException(String.format("用户[%s]正在同步中，本次同步失败（请重试）", userId));
+        }
+
+        long startTime = System.nanoTime();
+        boolean locked;
+        try {
+            locked = lock.tryLock(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            locked = false;
+        }
+        waitTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+
+        if (!locked) {
+            release(userId);
+            rejectedCounter.increment();
+            log.warn("等待用户[{}]的同步锁超时({}ms)", userId, maxWaitMillis);
+            throw new DbVersionNotMatchException(String.format("用户[%s]正在同步中，本次同步失败（请重试）", userId));
+        }
+    }
+
+    public void unlock(String userId) {
+        locks.get(userId).unlock();
+        release(userId);
+    }
+
+    private void release(String userId) {
+        locks.computeIfPresent(userId, (k, userLock) -> --userLock.users == 0 ? null : userLock);
+    }
+
+    /**
+     * 当前等待同步锁的请求总数
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for (ReentrantLock lock : locks.values()) {
+            depth += lock.getQueueLength();
+        }
+        return depth;
+    }
+}
@@ -36,6 +36,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.net.ssl.HostnameVerifier;
@@ -56,6 +57,7 @@ import org.apache.commons.mail.SimpleEmail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -100,10 +102,31 @@ import net.sf.json.JSONSerializer;
 public class Util {
     private static final Logger log = LoggerFactory.getLogger(Util.class);
 
+    /**
+     * 例句中单词之间的分隔符（预先编译，分词时不必每次都编译正则表达式）
+     */
+    private static final Pattern SENTENCE_WORD_SEPARATOR = Pattern.compile(" |\\.|,|!|\"|\\?|\\(|\\)|:|;");
+
     public static boolean isInTransaction() {
         return TransactionSynchronizationManager.isActualTransactionActive();
     }
 
+    /**
+     * 在当前事务提交后执行（不在事务中时立即执行），用于在数据提交后更新内存缓存
+     */
+    public static void runAfterCommit(Runnable task) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
     public static String makeJson(Object data) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         mapper.setSerializationInclusion(Include.NON_NULL);
@@ -947,7 +970,7 @@ public class Util {
     }
 
     public static List<String> splitSentence2Words(String english) {
-        String[] words = english.split(" |\\.|,|!|\"|\\?|\\(|\\)|:|;");
+        String[] words = SENTENCE_WORD_SEPARATOR.split(english);
         List<String> puredWords = new ArrayList<>(words.length);
         for (String spell : words) {
             spell = StringUtils.strip(spell, " '-");
@@ -0,0 +1,166 @@
+package beidanci.service.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+
+import beidanci.api.model.UserVo;
+import beidanci.api.model.WordVo;
+import beidanci.service.po.Level;
+import beidanci.service.po.MeaningItem;
+import beidanci.service.po.Sentence;
+import beidanci.service.po.User;
+import beidanci.service.po.Word;
+
+/**
+ * 比较 {@link BeanUtils#makeVo}（预先生成的映射计划）与逐对象反射转换（{@link ReflectiveVoMapper#makeVo}）的耗时，
+ * 分别测试 Word→WordVo 和 User→UserVo，并核对两种方式的转换结果一致。
+ * 用法：java beidanci.service.util.BeanUtilsBenchmark [每轮转换次数]
+ */
+public class BeanUtilsBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+
+    private static final String[] WORD_EXCLUDES = {"SynonymVo.meaningItem", "SynonymVo.word", "similarWords", "DictVo.dictWords"};
+    private static final String[] USER_EXCLUDES = {"invitedBy", "StudyGroupVo.creator", "StudyGroupVo.users",
+            "StudyGroupVo.managers", "StudyGroupVo.studyGroupPosts", "UserGameVo.user"};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Word word = makeWord();
+        User user = makeUser("15118");
+
+        checkSame(() -> BeanUtils.makeVo(word, WordVo.class, WORD_EXCLUDES),
+                () -> ReflectiveVoMapper.makeVo(word, WordVo.class, WORD_EXCLUDES));
+        checkSame(() -> BeanUtils.makeVo(user, UserVo.class, USER_EXCLUDES),
+                () -> ReflectiveVoMapper.makeVo(user, UserVo.class, USER_EXCLUDES));
+
+        double wordPlanMs = measure(count, () -> BeanUtils.makeVo(word, WordVo.class, WORD_EXCLUDES));
+        double wordReflectMs = measure(count, () -> ReflectiveVoMapper.makeVo(word, WordVo.class, WORD_EXCLUDES));
+        double userPlanMs = measure(count, () -> BeanUtils.makeVo(user, UserVo.class, USER_EXCLUDES));
+        double userReflectMs = measure(count, () -> ReflectiveVoMapper.makeVo(user, UserVo.class, USER_EXCLUDES));
+
+        System.out.printf("每轮转换次数: %d%n", count);
+        System.out.printf("%-16s %16s %16s %10s%n", "转换", "反射(us/次)", "映射计划(us/次)", "加速比");
+        print("Word->WordVo", count, wordReflectMs, wordPlanMs);
+        print("User->UserVo", count, userReflectMs, userPlanMs);
+    }
+
+    private static void print(String name, int count, double reflectMs, double planMs) {
+        System.out.printf("%-16s %16.2f %16.2f %10.1f%n", name, reflectMs * 1000 / count, planMs * 1000 / count, reflectMs / planMs);
+    }
+
+    private static void checkSame(Supplier<Object> planned, Supplier<Object> reflective) {
+        String expected = JsonUtils.toJson(reflective.get());
+        String actual = JsonUtils.toJson(planned.get());
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("映射计划的转换结果与反射转换不一致:\n" + expected + "\n" + actual);
+        }
+    }
+
+    /**
+     * 预热后多次执行，返回每轮（count次转换）的平均耗时（毫秒）
+     */
+    private static double measure(int count, Supplier<Object> task) {
+        Object sink = null;
+        for (int i = 0; i < WARMUP_ROUNDS * count; i++) {
+            sink = task.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS * count; i++) {
+            sink = task.get();
+        }
+        double elapsedMs = (System.nanoTime() - start) / 1e6 / MEASURE_ROUNDS;
+        if (sink == null) {
+            throw new IllegalStateException();
+        }
+        return elapsedMs;
+    }
+
+    /**
+     * 与词库中典型单词相近的对象图：3个释义，每个释义2个例句（含作者）
+     */
+    private static Word makeWord() {
+        Date now = new Date();
+        Word word = new Word();
+        word.setId("word-benchmark");
+        word.setSpell("benchmark");
+        word.setBritishPronounce("ˈbentʃmɑːk");
+        word.setAmericaPronounce("ˈbentʃmɑːrk");
+        word.setPronounce("ˈbentʃmɑːk");
+        word.setPopularity(3000);
+        word.setShortDesc("a standard by which something can be measured or judged");
+        word.setCreateTime(now);
+        word.setUpdateTime(now);
+
+        User author = makeUser("15119");
+        List<MeaningItem> meaningItems = new ArrayList<>();
+        for (int m = 0; m < 3; m++) {
+            MeaningItem meaningItem = new MeaningItem(m == 2 ? "v." : "n.", "基准；标准；参照" + m);
+            meaningItem.setId("mi-" + m);
+            meaningItem.setWord(word);
+            meaningItem.setPopularity(m);
+            meaningItem.setCreateTime(now);
+            List<Sentence> sentences = new ArrayList<>();
+            for (int s = 0; s < 2; s++) {
+                Sentence sentence = new Sentence("This benchmark sentence number " + s + " shows the word in context.", author);
+                sentence.setId("s-" + m + "-" + s);
+                sentence.setChinese("这是基准测试例句" + s);
+                sentence.setTheType("human_audio");
+                sentence.setHandCount(s);
+                sentence.setFootCount(0);
+                sentence.setMeaningItem(meaningItem);
+                sentence.setCreateTime(now);
+                sentences.add(sentence);
+            }
+            meaningItem.setSentences(sentences);
+            meaningItems.add(meaningItem);
+        }
+        word.setMeaningItems(meaningItems);
+        word.setImages(new ArrayList<>());
+        word.setWordShortDescChineses(new ArrayList<>());
+        word.setSimilarWords(new ArrayList<>());
+        return word;
+    }
+
+    private static User makeUser(String id) {
+        Date now = new Date();
+        User user = new User(id);
+        user.setUserName("user" + id);
+        user.setNickName("用户" + id);
+        user.setEmail("user" + id + "@example.com");
+        user.setGameScore(1200);
+        user.setDakaScore(300);
+        user.setDakaDayCount(120);
+        user.setContinuousDakaDayCount(15);
+        user.setMaxContinuousDakaDayCount(40);
+        user.setLastDakaDate(now);
+        user.setLastLoginTime(now);
+        user.setLastLearningDate(now);
+        user.setLearnedDays(150);
+        user.setWordsPerDay(50);
+        user.setMasteredWordsCount(2500);
+        user.setCowDung(80);
+        user.setThrowDiceChance(1);
+        user.setIsAdmin(false);
+        user.setIsSuperAdmin(false);
+        user.setIsInputor(false);
+        user.setAutoPlaySentence(true);
+        user.setAutoPlayWord(true);
+        user.setShowAnswersDirectly(false);
+        user.setEnableAllWrong(false);
+        user.setCreateTime(now);
+        Level level = new Level();
+        level.setLevel(5);
+        level.setName("学士");
+        level.setFigure("bachelor");
+        level.setMinScore(1000);
+        level.setMaxScore(2000);
+        user.setLevel(level);
+        user.setStudyGroups(new ArrayList<>());
+        user.setUserGames(new ArrayList<>());
+        return user;
+    }
+}
@@ -0,0 +1,230 @@
+package beidanci.service.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import beidanci.api.Result;
+import beidanci.api.model.DictDto;
+import beidanci.api.model.DictRes;
+import beidanci.api.model.DictWordDto;
+import beidanci.api.model.MeaningItemDto;
+import beidanci.api.model.SentenceDto;
+import beidanci.api.model.SimilarWordDto;
+import beidanci.api.model.SynonymDto;
+import beidanci.api.model.WordDto;
+import beidanci.api.model.WordImageDto;
+
+/**
+ * 比较词典资源的两种传输格式：现有的 Jackson JSON + GZIP 与 {@link DictResBinaryCodec} 二进制列存储 + GZIP。<br>
+ * 统计编码耗时、传输字节数以及客户端解码耗时（JSON 以解析为 JsonNode 树近似客户端的通用JSON解码）。
+ * 用法：java beidanci.service.util.DictResBinaryCodecBenchmark [单词数]
+ */
+public class DictResBinaryCodecBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURE_ROUNDS = 10;
+
+    private static final String[] CI_XINGS = {"n.", "v.", "adj.", "adv.", "prep.", "conj.", "pron."};
+
+    public static void main(String[] args) throws IOException {
+        int wordCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        DictRes dictRes = makeDictRes(wordCount);
+        JsonResponseWriter jsonWriter = new JsonResponseWriter();
+        ObjectMapper clientMapper = new ObjectMapper();
+
+        long[] jsonSizes = new long[2];
+        long[] binarySizes = new long[2];
+        byte[][] jsonGzip = new byte[1][];
+        byte[][] binaryGzip = new byte[1][];
+
+        double jsonEncodeMs = measure(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonResponseWriter.WriteStats stats = jsonWriter.writeGzip(Result.success(dictRes), out);
+            jsonSizes[0] = stats.getOriginalBytes();
+            jsonSizes[1] = stats.getTransferredBytes();
+            jsonGzip[0] = out.toByteArray();
+        });
+        double binaryEncodeMs = measure(() -> {
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            DictResBinaryCodec.encodeDictRes(dictRes, raw);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+                raw.writeTo(gzipOut);
+            }
+            binarySizes[0] = raw.size();
+            binarySizes[1] = out.size();
+            binaryGzip[0] = out.toByteArray();
+        });
+
+        double jsonDecodeMs = measure(() -> {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(jsonGzip[0]))) {
+                JsonNode tree = clientMapper.readTree(in);
+                if (tree.get("data").get("words").size() != wordCount) {
+                    throw new IllegalStateException("JSON解码结果不正确");
+                }
+            }
+        });
+        double binaryDecodeMs = measure(() -> {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(binaryGzip[0]))) {
+                DictRes decoded = DictResBinaryCodec.decodeDictRes(in);
+                if (decoded.getWords().size() != wordCount) {
+                    throw new IllegalStateException("二进制解码结果不正确");
+                }
+            }
+        });
+
+        System.out.printf("单词数: %d, 释义数: %d, 例句数: %d, 图片数: %d%n", wordCount, dictRes.getMeaningItems().size(),
+                dictRes.getSentences().size(), dictRes.getImages().size());
+        System.out.printf("%-14s %14s %14s %14s %14s%n", "格式", "原始字节", "gzip后字节", "编码(ms)", "解码(ms)");
+        System.out.printf("%-14s %14d %14d %14.1f %14.1f%n", "JSON+GZIP", jsonSizes[0], jsonSizes[1], jsonEncodeMs, jsonDecodeMs);
+        System.out.printf("%-14s %14d %14d %14.1f %14.1f%n", "Columnar+GZIP", binarySizes[0], binarySizes[1], binaryEncodeMs, binaryDecodeMs);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    /**
+     * 预热后多次执行，返回平均耗时（毫秒）
+     */
+    private static double measure(Task task) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / MEASURE_ROUNDS;
+    }
+
+    /**
+     * 生成与真实词书规模和取值分布相近的测试数据（每个单词2个释义、3个例句，三分之一的单词有图片）
+     */
+    private static DictRes makeDictRes(int wordCount) {
+        Random random = new Random(42);
+        String dictId = "dict-benchmark";
+        long baseTime = 1_600_000_000_000L;
+
+        DictDto dict = new DictDto();
+        dict.setId(dictId);
+        dict.setName("基准测试词书");
+        dict.setOwnerId("15118");
+        dict.setIsReady(true);
+        dict.setIsShared(true);
+        dict.setVisible(true);
+        dict.setWordCount(wordCount);
+        dict.setCreateTime(new Date(baseTime));
+
+        List<DictWordDto> dictWords = new ArrayList<>();
+        List<WordDto> words = new ArrayList<>();
+        List<MeaningItemDto> meaningItems = new ArrayList<>();
+        List<SimilarWordDto> similarWords = new ArrayList<>();
+        List<SynonymDto> synonyms = new ArrayList<>();
+        List<SentenceDto> sentences = new ArrayList<>();
+        List<WordImageDto> images = new ArrayList<>();
+        for (int i = 0; i < wordCount; i++) {
+            String wordId = String.valueOf(100000 + i);
+            String spell = randomWord(random);
+            Date createTime = new Date(baseTime + random.nextInt(1_000_000_000));
+
+            DictWordDto dictWord = new DictWordDto();
+            dictWord.setDictId(dictId);
+            dictWord.setWordId(wordId);
+            dictWord.setSeq(i + 1);
+            dictWord.setCreateTime(createTime);
+            dictWords.add(dictWord);
+
+            WordDto word = new WordDto();
+            word.setId(wordId);
+            word.setSpell(spell);
+            word.setBritishPronounce("ˈ" + spell);
+            word.setAmericaPronounce("ˈ" + spell);
+            word.setPronounce("ˈ" + spell);
+            word.setPopularity(random.nextInt(20000));
+            word.setShortDesc("n. 示例释义" + i);
+            word.setCreateTime(createTime);
+            word.setUpdateTime(createTime);
+            words.add(word);
+
+            for (int m = 0; m < 2; m++) {
+                String meaningItemId = wordId + "-" + m;
+                MeaningItemDto meaningItem = new MeaningItemDto();
+                meaningItem.setId(meaningItemId);
+                meaningItem.setWordId(wordId);
+                meaningItem.setDictId(dictId);
+                meaningItem.setCiXing(CI_XINGS[random.nextInt(CI_XINGS.length)]);
+                meaningItem.setMeaning("示例释义，" + spell + "的第" + (m + 1) + "个意思");
+                meaningItem.setPopularity(m);
+                meaningItem.setCreateTime(createTime);
+                meaningItem.setUpdateTime(createTime);
+                meaningItems.add(meaningItem);
+
+                SynonymDto synonym = new SynonymDto();
+                synonym.setMeaningItemId(meaningItemId);
+                synonym.setWordId(wordId);
+                synonym.setSpell(randomWord(random));
+                synonym.setCreateTime(createTime);
+                synonyms.add(synonym);
+
+                for (int s = 0; s < (m == 0 ? 2 : 1); s++) {
+                    SentenceDto sentence = new SentenceDto();
+                    sentence.setId(meaningItemId + "-s" + s);
+                    sentence.setEnglish("This is an example sentence using the word " + spell + " in context.");
+                    sentence.setChinese("这是一个使用单词" + spell + "的例句。");
+                    sentence.setEnglishDigest(Integer.toHexString(random.nextInt()));
+                    sentence.setTheType("human_audio");
+                    sentence.setHandCount(random.nextInt(10));
+                    sentence.setFootCount(random.nextInt(3));
+                    sentence.setNeedTts(false);
+                    sentence.setMeaningItemId(meaningItemId);
+                    sentence.setAuthorId(String.valueOf(15118 + random.nextInt(50)));
+                    sentence.setCreateTime(createTime);
+                    sentence.setUpdateTime(createTime);
+                    sentences.add(sentence);
+                }
+            }
+
+            SimilarWordDto similarWord = new SimilarWordDto();
+            similarWord.setWordId(wordId);
+            similarWord.setSimilarWordId(String.valueOf(100000 + random.nextInt(wordCount)));
+            similarWord.setSimilarWordSpell(randomWord(random));
+            similarWord.setDistance(1 + random.nextInt(3));
+            similarWords.add(similarWord);
+
+            if (i % 3 == 0) {
+                WordImageDto image = new WordImageDto();
+                image.setId("img-" + wordId);
+                image.setWordId(wordId);
+                image.setImageFile(wordId + ".jpg");
+                image.setHand(random.nextInt(10));
+                image.setFoot(random.nextInt(3));
+                image.setAuthorId(String.valueOf(15118 + random.nextInt(50)));
+                image.setCreateTime(createTime);
+                images.add(image);
+            }
+        }
+        return new DictRes(dict, dictWords, words, meaningItems, similarWords, synonyms, sentences, images);
+    }
+
+    private static String randomWord(Random random) {
+        int length = 3 + random.nextInt(9);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,197 @@
+package beidanci.service.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import beidanci.api.model.DictDto;
+import beidanci.api.model.DictRes;
+import beidanci.api.model.DictWordDto;
+import beidanci.api.model.MeaningItemDto;
+import beidanci.api.model.SentenceDto;
+import beidanci.api.model.SimilarWordDto;
+import beidanci.api.model.SynonymDto;
+import beidanci.api.model.UserDbLogDto;
+import beidanci.api.model.WordDto;
+import beidanci.api.model.WordImageDto;
+
+/**
+ * {@link DictResBinaryCodec} 编码后再解码，结果应与原对象一致（以 Jackson 序列化后的JSON树比较）
+ */
+class DictResBinaryCodecTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final long BASE_TIME = 1_600_000_000_000L;
+
+    @Test
+    void dictResRoundTrip() throws IOException {
+        // 单词数超过一个块（4096行），覆盖多块编码和符号表的复用
+        DictRes dictRes = makeDictRes(5000);
+
+        DictRes decoded = roundTrip(dictRes);
+
+        assertEquals(dictRes.getWords().size(), decoded.getWords().size());
+        assertEquals(MAPPER.valueToTree(dictRes), MAPPER.valueToTree(decoded));
+    }
+
+    @Test
+    void emptyDictResRoundTrip() throws IOException {
+        DictRes dictRes = new DictRes(null, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+
+        DictRes decoded = roundTrip(dictRes);
+
+        assertNull(decoded.getDict());
+        assertTrue(decoded.getWords().isEmpty());
+        assertEquals(MAPPER.valueToTree(dictRes), MAPPER.valueToTree(decoded));
+    }
+
+    @Test
+    void userDbLogsRoundTrip() throws IOException {
+        List<UserDbLogDto> logs = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Date createTime = new Date(BASE_TIME - i * 1000L);
+            logs.add(new UserDbLogDto("log-" + i, "15118", i, i % 3 == 0 ? "DELETE" : "INSERT", "learning_word",
+                    "15118_" + i, i % 3 == 0 ? null : "{\"wordId\":\"" + i + "\",\"备注\":\"例句\"}", createTime,
+                    i % 2 == 0 ? null : createTime));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DictResBinaryCodec.encodeUserDbLogs(logs, out);
+        List<UserDbLogDto> decoded = DictResBinaryCodec.decodeUserDbLogs(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(MAPPER.valueToTree(logs), MAPPER.valueToTree(decoded));
+    }
+
+    private static DictRes roundTrip(DictRes dictRes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DictResBinaryCodec.encodeDictRes(dictRes, out);
+        return DictResBinaryCodec.decodeDictRes(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+     * 生成覆盖各种取值的测试数据：null、负数、非ASCII文本、乱序时间、重复出现的符号
+     */
+    private static DictRes makeDictRes(int wordCount) {
+        String dictId = "dict-test";
+
+        DictDto dict = new DictDto();
+        dict.setId(dictId);
+        dict.setName("测试词书");
+        dict.setOwnerId("15118");
+        dict.setIsReady(true);
+        dict.setIsShared(false);
+        dict.setWordCount(wordCount);
+        dict.setCreateTime(new Date(BASE_TIME));
+
+        List<DictWordDto> dictWords = new ArrayList<>();
+        List<WordDto> words = new ArrayList<>();
+        List<MeaningItemDto> meaningItems = new ArrayList<>();
+        List<SimilarWordDto> similarWords = new ArrayList<>();
+        List<SynonymDto> synonyms = new ArrayList<>();
+        List<SentenceDto> sentences = new ArrayList<>();
+        List<WordImageDto> images = new ArrayList<>();
+        for (int i = 0; i < wordCount; i++) {
+            String wordId = String.valueOf(100000 + i);
+            String spell = "word" + i;
+            // 时间时早时晚，覆盖负的时间差
+            Date createTime = new Date(BASE_TIME + (i % 2 == 0 ? i : -i) * 60_000L);
+            Date updateTime = i % 4 == 0 ? null : new Date(createTime.getTime() + 1);
+
+            DictWordDto dictWord = new DictWordDto();
+            dictWord.setDictId(dictId);
+            dictWord.setWordId(wordId);
+            dictWord.setSeq(i + 1);
+            dictWord.setCreateTime(createTime);
+            dictWord.setUpdateTime(updateTime);
+            dictWords.add(dictWord);
+
+            WordDto word = new WordDto();
+            word.setId(wordId);
+            word.setSpell(spell);
+            word.setBritishPronounce("ˈ" + spell);
+            word.setAmericaPronounce(i % 5 == 0 ? null : "ˈ" + spell);
+            word.setPronounce("ˈ" + spell);
+            word.setPopularity(i % 7 == 0 ? null : i - wordCount / 2);
+            word.setGroupInfo(i % 3 == 0 ? "CET4" : null);
+            word.setShortDesc("n. 释义" + i);
+            word.setLongDesc(i % 10 == 0 ? "" : null);
+            word.setCreateTime(createTime);
+            word.setUpdateTime(updateTime);
+            words.add(word);
+
+            String meaningItemId = wordId + "-0";
+            MeaningItemDto meaningItem = new MeaningItemDto();
+            meaningItem.setId(meaningItemId);
+            meaningItem.setWordId(wordId);
+            meaningItem.setDictId(i % 2 == 0 ? dictId : null);
+            meaningItem.setCiXing(i % 2 == 0 ? "n." : "v.");
+            meaningItem.setMeaning(spell + "的意思😀");
+            meaningItem.setPopularity(i % 3);
+            meaningItem.setUpdating(i % 11 == 0);
+            meaningItem.setUpdatingStartAt(i % 11 == 0 ? createTime : null);
+            meaningItem.setCreateTime(createTime);
+            meaningItem.setUpdateTime(updateTime);
+            meaningItems.add(meaningItem);
+
+            SynonymDto synonym = new SynonymDto();
+            synonym.setMeaningItemId(meaningItemId);
+            synonym.setWordId(wordId);
+            synonym.setSpell("syn" + i);
+            synonym.setCreateTime(createTime);
+            synonyms.add(synonym);
+
+            SentenceDto sentence = new SentenceDto();
+            sentence.setId(meaningItemId + "-s0");
+            sentence.setEnglish("An example sentence with " + spell + ".");
+            sentence.setChinese("包含" + spell + "的例句。");
+            sentence.setWordMeaning(i % 2 == 0 ? "意思" : null);
+            sentence.setEnglishDigest(Integer.toHexString(spell.hashCode()));
+            sentence.setLastDiyUpdateTime(i % 6 == 0 ? updateTime : null);
+            sentence.setTheType("human_audio");
+            sentence.setFootCount(i % 3);
+            sentence.setHandCount(i % 10);
+            sentence.setProducer(i % 2 == 0 ? "tts" : null);
+            sentence.setNeedTts(i % 3 == 0 ? null : i % 3 == 1);
+            sentence.setMeaningItemId(meaningItemId);
+            sentence.setAuthorId("15118");
+            sentence.setCreateTime(createTime);
+            sentence.setUpdateTime(updateTime);
+            sentences.add(sentence);
+
+            SimilarWordDto similarWord = new SimilarWordDto();
+            similarWord.setWordId(wordId);
+            similarWord.setSimilarWordId(String.valueOf(100000 + (i + 1) % wordCount));
+            similarWord.setSimilarWordSpell("word" + (i + 1) % wordCount);
+            similarWord.setDistance(1 + i % 3);
+            similarWords.add(similarWord);
+
+            if (i % 3 == 0) {
+                WordImageDto image = new WordImageDto();
+                image.setId("img-" + wordId);
+                image.setWordId(wordId);
+                image.setImageFile(wordId + ".jpg");
+                image.setHand(i % 10);
+                image.setFoot(null);
+                image.setAuthorId("15118");
+                image.setCreateTime(createTime);
+                images.add(image);
+            }
+        }
+        Collections.reverse(similarWords);
+        return new DictRes(dict, dictWords, words, meaningItems, similarWords, synonyms, sentences, images);
+    }
+}
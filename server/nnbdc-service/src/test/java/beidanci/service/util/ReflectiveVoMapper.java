@@ -0,0 +1,144 @@
+package beidanci.service.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+
+import com.esotericsoftware.reflectasm.MethodAccess;
+
+import beidanci.api.model.Vo;
+import beidanci.service.po.Po;
+
+/**
+ * 逐个对象通过反射和字段名匹配把<code>Po</code>转换为<code>Vo</code>，是 {@link BeanUtils#makeVo} 引入映射计划之前的实现，
+ * 仅作为对照用于性能测试和结果核对
+ */
+class ReflectiveVoMapper {
+    private static final Logger log = LoggerFactory.getLogger(ReflectiveVoMapper.class);
+
+    /**
+     * 函数调用深度（用于检测无穷递归）
+     */
+    private static final ThreadLocal<Integer> callDeep = new ThreadLocal<>();
+
+    private ReflectiveVoMapper() {
+    }
+
+    /**
+     * 不使用映射计划，逐个对象通过反射和字段名匹配完成转换（转换结果与 {@link BeanUtils#makeVo} 相同，用于对比测试）
+     */
+    static <T extends Vo> T makeVo(Po po, Class<T> voClass, String[] excludeFields) {
+        HashSet<String> excludes = excludeFields == null ? new HashSet<>() : new HashSet<>(Arrays.asList(excludeFields));
+        callDeep.set(0);
+        T vo = doMakeVo(po, voClass, excludes, "");
+        assert (callDeep.get().equals(0));
+        return vo;
+    }
+
+    @SuppressWarnings({"deprecation", "unchecked"})
+    private static <T extends Vo> T doMakeVo(Po po, Class<T> voClass, HashSet<String> excludeFields, String fullFieldName) {
+        if (po == null) {
+            return null;
+        }
+
+        // 进入函数，增加调用深度
+        callDeep.set(callDeep.get() + 1);
+        if (callDeep.get() > BeanUtils.MAX_CALL_DEEP) {
+            throw new RuntimeException("函数调用深度大于" + BeanUtils.MAX_CALL_DEEP + ": " + fullFieldName);
+        }
+
+        T vo;
+        try {
+            vo = voClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+
+        MethodAccess destMethodAccess = BeanUtils.methodMap.get(voClass);
+        if (destMethodAccess == null) {
+            destMethodAccess = BeanUtils.cache(vo);
+        }
+
+        // 由于PO对象可能为动态包装的Proxy(Hibernate会把lazy load的属性包装为Proxy)，所以需要特殊处理
+        String poClassName = po.getClass().getName();
+        int suffix = poClassName.indexOf("_$$");
+        if (suffix != -1) {
+            po = BeanUtils.initializeAndUnproxy(po);
+        }
+        MethodAccess srcMethodAccess = BeanUtils.methodMap.get(po.getClass());
+        if (srcMethodAccess == null) {
+            srcMethodAccess = BeanUtils.cache(po);
+        }
+
+        List<Field> fieldList = BeanUtils.fieldMap.get(voClass);
+        for (Field field : fieldList) {
+            try {
+                final String fullName = fullFieldName + "." + field.getName();
+                if (BeanUtils.isFieldExcluded(voClass.getSimpleName(), field.getName(), fullName, excludeFields)) {
+                    continue;
+                }
+                String fieldName = StringUtils.capitalize(field.getName());
+                String getKey = po.getClass().getName() + "." + "get" + fieldName;
+                String setkey = vo.getClass().getName() + "." + "set" + fieldName;
+                Integer getIndex = BeanUtils.methodIndexMap.get(getKey);
+                if (getIndex != null) {
+                    int setIndex = BeanUtils.methodIndexMap.get(setkey);
+                    Object srcValue = srcMethodAccess.invoke(po, getIndex);
+
+                    Object destValue = srcValue;
+                    if (Vo.class.isAssignableFrom(field.getType())) {
+                        if (log.isTraceEnabled()) {
+                            log.trace(String.format("voClass[%s] fieldName[%s] fieldType[%s]", voClass.getSimpleName(),
+                                    field.getName(), field.getType().getSimpleName()));
+                        }
+                        if (srcValue != null && !(srcValue instanceof Po)) {
+                            throw new RuntimeException(String.format("期望是Po但实际是%s--", srcValue.getClass())
+                                    + String.format("voClass[%s] fieldName[%s] fieldType[%s]", voClass.getSimpleName(),
+                                    field.getName(), field.getType().getSimpleName()));
+                        }
+                        destValue = doMakeVo((Po) srcValue, (Class<T>) field.getType(), excludeFields, fullName);
+                    } else if (List.class.isAssignableFrom(field.getType())) {
+                        Type fc = field.getGenericType();
+                        if (fc instanceof ParameterizedType pt) {
+                            Class<?> genericClazz = (Class<?>) pt.getActualTypeArguments()[0];
+                            if (log.isTraceEnabled()) {
+                                log.trace(String.format("voClass[%s] fieldName[%s] fieldType[%s] genericClazz[%s]",
+                                        voClass.getSimpleName(), field.getName(), field.getType().getSimpleName(),
+                                        genericClazz.getSimpleName()));
+                            }
+                            List<Po> srcList = (List<Po>) srcValue;
+                            destValue = new ArrayList<>();
+                            if (srcList != null) {
+                                if (!Vo.class.isAssignableFrom(genericClazz)) {
+                                    throw new RuntimeException("List generic type is not a Vo: " + genericClazz.getName());
+                                }
+                                Class<? extends Vo> voType = (Class<? extends Vo>) genericClazz;
+                                for (Po srcListItem : srcList) {
+                                    Vo childVo = doMakeVo(srcListItem, voType, excludeFields, fullName);
+                                    ((List<Vo>) destValue).add(childVo);
+                                }
+                            }
+                        }
+                    }
+
+                    destMethodAccess.invoke(vo, setIndex, destValue);
+                }
+            } catch (RuntimeException e) {
+                log.error(String.format("处理%s.%s时发生异常", poClassName, field.getName()));
+                throw e;
+            }
+        }
+
+        // 离开函数，减少调用深度
+        callDeep.set(callDeep.get() - 1);
+        return vo;
+    }
+}